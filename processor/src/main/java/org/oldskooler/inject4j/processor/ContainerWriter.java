@@ -0,0 +1,220 @@
+package org.oldskooler.inject4j.processor;
+
+import javax.lang.model.element.TypeElement;
+import java.util.List;
+
+/**
+ * Emits the Java source of a generated container for a resolved {@link ModuleGraph}.
+ * <p>
+ * Each registration {@code i} becomes a {@code get<i>(Scope)} method that applies its lifetime and a
+ * {@code create<i>(Scope)} method that calls the chosen constructor with the {@code get<j>} results
+ * of its dependencies. Singletons live in volatile fields of the container, scoped instances in
+ * volatile fields of the nested {@code Scope}. {@code getService} dispatches on the requested class name.
+ * </p>
+ *
+ * <p>
+ * Each singleton and each scoped instance is created under its own lock, so building one never
+ * blocks requests for unrelated registrations. Singletons are created without a scope:
+ * {@link ModuleGraph} rejects singletons that reach a scoped registration, so a singleton never
+ * captures a scope's instance or takes a scoped lock. Locks are only acquired along dependency edges
+ * of the acyclic graph, so they cannot deadlock. The scope's monitor only guards its list of
+ * {@link AutoCloseable} instances, which are closed in reverse order of creation.
+ * </p>
+ */
+final class ContainerWriter {
+    private final ModuleGraph graph;
+    private final String pkg;
+    private final String name;
+    private final StringBuilder out = new StringBuilder();
+
+    ContainerWriter(ModuleGraph graph, String pkg, String name) {
+        this.graph = graph;
+        this.pkg = pkg;
+        this.name = name;
+    }
+
+    String write() {
+        if (!pkg.isEmpty()) line("package " + pkg + ";").line("");
+        line("/**");
+        line(" * Generated by inject4j-processor from {@link " + graph.module().getQualifiedName() + "}. Do not edit.");
+        line(" * <p>");
+        line(" * Resolves the module's registrations with direct constructor calls and no runtime reflection.");
+        line(" * Only plain class and interface constructor parameters are injected.");
+        line(" * </p>");
+        line(" */");
+        line("@SuppressWarnings({\"unchecked\", \"rawtypes\"})");
+        line("public final class " + name + " {");
+        for (ModuleGraph.Registration r : graph.registrations) {
+            if (!r.lifetime.equals("SINGLETON")) continue;
+            line("    private final Object singletonLock" + r.index + " = new Object();");
+            line("    private volatile " + type(r.impl) + " singleton" + r.index + ";");
+        }
+        line("");
+        line("    /** Resolves a service, or returns {@code null} if none is registered. */");
+        line("    public <T> T getService(Class<T> type) {");
+        line("        return (T) lookup(type, null);");
+        line("    }");
+        line("");
+        line("    /** Resolves a service or throws if none is registered. */");
+        line("    public <T> T getRequiredService(Class<T> type) {");
+        line("        T instance = getService(type);");
+        line("        if (instance != null) return instance;");
+        line("        throw new org.oldskooler.inject4j.ServiceNotFoundException(type);");
+        line("    }");
+        line("");
+        line("    /** Creates a new scope for scoped resolutions. */");
+        line("    public Scope createScope() {");
+        line("        return new Scope();");
+        line("    }");
+        line("");
+        writeLookup();
+        for (ModuleGraph.Registration r : graph.registrations) writeRegistration(r);
+        writeScope();
+        line("}");
+        return out.toString();
+    }
+
+    private void writeLookup() {
+        line("    private Object lookup(Class<?> type, Scope scope) {");
+        line("        switch (type.getName()) {");
+        for (ModuleGraph.Lookup l : graph.lookups.values()) {
+            line("            case " + literal(graph.elements().getBinaryName(l.type).toString()) + ":");
+            if (l.error != null) {
+                line("                if (type == " + type(l.type) + ".class) throw new IllegalStateException(" + literal(l.error) + ");");
+            } else {
+                line("                if (type == " + type(l.type) + ".class) return get" + l.target.index + "(scope);");
+            }
+            line("                break;");
+        }
+        line("            default:");
+        line("                break;");
+        line("        }");
+        line("        return null;");
+        line("    }");
+        line("");
+    }
+
+    private void writeRegistration(ModuleGraph.Registration r) {
+        String impl = type(r.impl);
+        int i = r.index;
+        line("    private " + impl + " get" + i + "(Scope scope) {");
+        switch (r.lifetime) {
+            case "SINGLETON":
+                line("        " + impl + " v = singleton" + i + ";");
+                line("        if (v == null) {");
+                line("            synchronized (singletonLock" + i + ") {");
+                line("                v = singleton" + i + ";");
+                line("                if (v == null) singleton" + i + " = v = create" + i + "(null);");
+                line("            }");
+                line("        }");
+                line("        return v;");
+                break;
+            case "SCOPED":
+                line("        if (scope == null) throw new IllegalStateException(\"Scoped service requested from root provider: \" + "
+                        + type(r.service) + ".class);");
+                line("        return scope.scoped" + i + "();");
+                break;
+            default:
+                line("        return create" + i + "(scope);");
+                break;
+        }
+        line("    }");
+        line("");
+
+        StringBuilder args = new StringBuilder();
+        List<ModuleGraph.Registration> deps = r.dependencies;
+        for (int d = 0; d < deps.size(); d++) {
+            if (d > 0) args.append(", ");
+            args.append("get").append(deps.get(d).index).append("(scope)");
+        }
+        line("    private " + impl + " create" + i + "(Scope scope) {");
+        line("        return new " + impl + "(" + args + ");");
+        line("    }");
+        line("");
+    }
+
+    private void writeScope() {
+        line("    /** A resolution scope; its scoped {@link AutoCloseable} instances are closed with it, newest first. */");
+        line("    public final class Scope implements AutoCloseable {");
+        for (ModuleGraph.Registration r : graph.registrations) {
+            if (!r.lifetime.equals("SCOPED")) continue;
+            line("        private final Object scopedLock" + r.index + " = new Object();");
+            line("        private volatile " + type(r.impl) + " scoped" + r.index + ";");
+        }
+        line("        private final java.util.List<AutoCloseable> disposables = new java.util.ArrayList<>();");
+        line("");
+        line("        private Scope() {}");
+        line("");
+        line("        /** Resolves a service, or returns {@code null} if none is registered. */");
+        line("        public <T> T getService(Class<T> type) {");
+        line("            return (T) lookup(type, this);");
+        line("        }");
+        line("");
+        line("        /** Resolves a service or throws if none is registered. */");
+        line("        public <T> T getRequiredService(Class<T> type) {");
+        line("            T instance = getService(type);");
+        line("            if (instance != null) return instance;");
+        line("            throw new org.oldskooler.inject4j.ServiceNotFoundException(type);");
+        line("        }");
+        line("");
+        for (ModuleGraph.Registration r : graph.registrations) {
+            if (!r.lifetime.equals("SCOPED")) continue;
+            String impl = type(r.impl);
+            int i = r.index;
+            line("        private " + impl + " scoped" + i + "() {");
+            line("            " + impl + " v = scoped" + i + ";");
+            line("            if (v == null) {");
+            line("                synchronized (scopedLock" + i + ") {");
+            line("                    v = scoped" + i + ";");
+            line("                    if (v == null) scoped" + i + " = v = track(create" + i + "(this));");
+            line("                }");
+            line("            }");
+            line("            return v;");
+            line("        }");
+            line("");
+        }
+        line("        private <T> T track(T instance) {");
+        line("            if (instance instanceof AutoCloseable) {");
+        line("                synchronized (this) {");
+        line("                    disposables.add((AutoCloseable) instance);");
+        line("                }");
+        line("            }");
+        line("            return instance;");
+        line("        }");
+        line("");
+        line("        @Override");
+        line("        public void close() {");
+        line("            AutoCloseable[] created;");
+        line("            synchronized (this) {");
+        for (ModuleGraph.Registration r : graph.registrations) {
+            if (r.lifetime.equals("SCOPED")) line("                scoped" + r.index + " = null;");
+        }
+        line("                created = disposables.toArray(new AutoCloseable[0]);");
+        line("                disposables.clear();");
+        line("            }");
+        line("            for (int i = created.length - 1; i >= 0; i--) {");
+        line("                try { created[i].close(); } catch (Exception ignored) {}");
+        line("            }");
+        line("        }");
+        line("    }");
+    }
+
+    private static String type(TypeElement t) {
+        return t.getQualifiedName().toString();
+    }
+
+    private static String literal(String s) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (char c : s.toCharArray()) {
+            if (c == '"' || c == '\\') sb.append('\\').append(c);
+            else if (c == '\n') sb.append("\\n");
+            else sb.append(c);
+        }
+        return sb.append('"').toString();
+    }
+
+    private ContainerWriter line(String s) {
+        out.append(s).append('\n');
+        return this;
+    }
+}
@@ -0,0 +1,353 @@
+package org.oldskooler.inject4j.processor;
+
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.*;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import java.util.*;
+
+/**
+ * The resolved object graph of one {@code @ServiceModule}.
+ * <p>
+ * Applies the runtime container's rules at compile time: exact registration first (first one wins),
+ * otherwise the single most specific registration whose implementation is assignable to the
+ * requested type; the greediest constructor whose parameters can all be satisfied, falling back to a
+ * no-arg constructor. Singletons may not depend, directly or through transients, on scoped
+ * registrations, since the container builds them outside any scope.
+ * </p>
+ *
+ * <p>
+ * Only plain class and interface parameters are injected. Constructor parameters the runtime binds
+ * specially ({@code Lazy<T>}, {@code Supplier<T>}, {@code List<T>}, arrays, {@code @FromKeyedServices})
+ * or by full generic type would silently bind to the wrong registration if matched by their erasure,
+ * so a constructor that takes one is rejected wherever the runtime could choose it.
+ * </p>
+ *
+ * <p>
+ * Problems are reported through the {@link Messager} on the annotation of the registration they
+ * concern, one error per annotation. Problems of repeated annotations, which javac cannot place, are
+ * reported together on the module class.
+ * </p>
+ */
+final class ModuleGraph {
+    /** One {@code @AddXxx} annotation on the module. */
+    static final class Registration {
+        final int index;
+        final String lifetime;
+        final TypeElement service;
+        final TypeElement impl;
+        /**
+         * The {@code @AddXxx} annotation, where problems with the registration are reported; {@code null}
+         * if it was repeated, in which case they are reported on the module class.
+         */
+        final AnnotationMirror annotation;
+        ExecutableElement constructor;
+        final List<Registration> dependencies = new ArrayList<>();
+
+        Registration(int index, String lifetime, TypeElement service, TypeElement impl, AnnotationMirror annotation) {
+            this.index = index;
+            this.lifetime = lifetime;
+            this.service = service;
+            this.impl = impl;
+            this.annotation = annotation;
+        }
+    }
+
+    /** Outcome of resolving a requested type: a registration, an ambiguity error, or nothing. */
+    static final class Lookup {
+        final TypeElement type;
+        final Registration target;
+        final String error;
+
+        Lookup(TypeElement type, Registration target, String error) {
+            this.type = type;
+            this.target = target;
+            this.error = error;
+        }
+    }
+
+    private final Types types;
+    private final Elements elements;
+    private final Messager messager;
+    private final TypeElement module;
+    private final String pkg;
+    final List<Registration> registrations;
+    /** Requested type -> outcome, for every type {@code getService} can answer. */
+    final Map<String, Lookup> lookups = new LinkedHashMap<>();
+    /**
+     * Problems found so far, per annotation they are reported on ({@code null} for the module class);
+     * joined into one message each because javac keeps one error per source position.
+     */
+    private final Map<AnnotationMirror, List<String>> problems = new LinkedHashMap<>();
+
+    ModuleGraph(ProcessingEnvironment env, TypeElement module, List<Registration> registrations) {
+        this.types = env.getTypeUtils();
+        this.elements = env.getElementUtils();
+        this.messager = env.getMessager();
+        this.module = module;
+        this.pkg = elements.getPackageOf(module).getQualifiedName().toString();
+        this.registrations = registrations;
+    }
+
+    TypeElement module() {
+        return module;
+    }
+
+    Elements elements() {
+        return elements;
+    }
+
+    /**
+     * Validates the registrations, chooses every constructor, checks for cycles and captive scoped
+     * dependencies and computes the lookup table.
+     *
+     * @return {@code true} if the graph is valid and a container can be generated.
+     */
+    boolean resolve() {
+        for (Registration r : registrations) validate(r);
+        if (problems.isEmpty()) {
+            for (Registration r : registrations) chooseConstructor(r);
+        }
+        if (problems.isEmpty()) detectCycles();
+        if (problems.isEmpty()) detectCaptiveScoped();
+        if (!problems.isEmpty()) {
+            for (Map.Entry<AnnotationMirror, List<String>> e : problems.entrySet()) {
+                messager.printMessage(Diagnostic.Kind.ERROR, String.join("\n\n", e.getValue()), module, e.getKey());
+            }
+            return false;
+        }
+
+        for (Registration r : registrations) addLookup(r.service);
+        for (Registration r : registrations) {
+            for (TypeElement supertype : supertypes(r.impl)) addLookup(supertype);
+        }
+        return true;
+    }
+
+    private void validate(Registration r) {
+        if (r.service == null || r.impl == null) {
+            error(r, "Registrations must name class or interface types");
+            return;
+        }
+        if (r.impl.getKind() != ElementKind.CLASS || r.impl.getModifiers().contains(Modifier.ABSTRACT)) {
+            error(r, "Cannot register service: " + r.impl.getQualifiedName() + " is an interface or abstract class.");
+        }
+        if (!types.isAssignable(types.erasure(r.impl.asType()), types.erasure(r.service.asType()))) {
+            error(r, r.impl.getQualifiedName() + " is not assignable to " + r.service.getQualifiedName());
+        }
+        if (!accessible(r.impl)) {
+            error(r, r.impl.getQualifiedName() + " is not accessible from package " + (pkg.isEmpty() ? "<default>" : pkg));
+        }
+    }
+
+    private void chooseConstructor(Registration r) {
+        List<ExecutableElement> ctors = new ArrayList<>();
+        for (ExecutableElement c : ElementFilter.constructorsIn(r.impl.getEnclosedElements())) {
+            if (accessible(c)) ctors.add(c);
+        }
+        ctors.sort((a, b) -> Integer.compare(b.getParameters().size(), a.getParameters().size()));
+
+        StringBuilder missingReport = new StringBuilder();
+        for (ExecutableElement c : ctors) {
+            for (VariableElement p : c.getParameters()) {
+                String unsupported = unsupported(p);
+                if (unsupported != null) {
+                    error(r, "Cannot generate " + signature(r.impl, c) + ": generated containers do not inject "
+                            + unsupported + " (parameter " + p.getSimpleName() + ")."
+                            + "\nRegister " + r.impl.getQualifiedName() + " with ServiceCollection instead, or give it a"
+                            + " constructor that takes only plain registered types.");
+                    return;
+                }
+            }
+            List<Registration> deps = new ArrayList<>();
+            List<String> missing = new ArrayList<>();
+            for (VariableElement p : c.getParameters()) {
+                Lookup l = lookup(p.asType());
+                if (l != null && l.error != null) {
+                    error(r, l.error);
+                    return;
+                }
+                if (l == null) missing.add(p.asType().toString());
+                else deps.add(l.target);
+            }
+            if (missing.isEmpty()) {
+                r.constructor = c;
+                r.dependencies.addAll(deps);
+                return;
+            }
+            missingReport.append("\n  - ").append(signature(r.impl, c)).append("  missing: ").append(missing);
+        }
+
+        error(r, "No resolvable constructor for " + r.impl.getQualifiedName() + "."
+                + "\nRegister the missing dependencies or add an accessible no-arg constructor."
+                + "\n\nConstructors and missing parameters:" + missingReport);
+    }
+
+    /**
+     * Describes why a constructor parameter cannot be injected by a generated container.
+     *
+     * @return The description, or {@code null} if the parameter is a plain class or interface type.
+     */
+    private static String unsupported(VariableElement p) {
+        for (AnnotationMirror a : p.getAnnotationMirrors()) {
+            TypeElement type = (TypeElement) a.getAnnotationType().asElement();
+            if (type.getQualifiedName().contentEquals(ServiceModuleProcessor.PACKAGE + ".FromKeyedServices")) {
+                return "keyed services (@FromKeyedServices)";
+            }
+        }
+        TypeMirror t = p.asType();
+        if (t.getKind() == TypeKind.ARRAY) return "arrays of services (" + t + ")";
+        if (t.getKind() == TypeKind.DECLARED && !((DeclaredType) t).getTypeArguments().isEmpty()) {
+            return "parameterized types such as Lazy<T>, Supplier<T> or List<T> (" + t + ")";
+        }
+        return null;
+    }
+
+    private void detectCycles() {
+        Map<Registration, Integer> state = new IdentityHashMap<>(); // 1 = visiting, 2 = done
+        Deque<Registration> path = new ArrayDeque<>();
+        for (Registration r : registrations) {
+            if (visit(r, state, path)) return;
+        }
+    }
+
+    private boolean visit(Registration r, Map<Registration, Integer> state, Deque<Registration> path) {
+        Integer s = state.get(r);
+        if (s != null && s == 2) return false;
+        if (s != null && s == 1) {
+            List<String> chain = new ArrayList<>();
+            boolean inCycle = false;
+            for (Iterator<Registration> it = path.descendingIterator(); it.hasNext(); ) {
+                Registration p = it.next();
+                if (p == r) inCycle = true;
+                if (inCycle) chain.add(p.impl.getSimpleName().toString());
+            }
+            chain.add(r.impl.getSimpleName().toString());
+            error(r, "Circular dependency detected: " + String.join(" -> ", chain));
+            return true;
+        }
+        state.put(r, 1);
+        path.push(r);
+        for (Registration d : r.dependencies) {
+            if (visit(d, state, path)) return true;
+        }
+        path.pop();
+        state.put(r, 2);
+        return false;
+    }
+
+    private void detectCaptiveScoped() {
+        for (Registration r : registrations) {
+            if (!r.lifetime.equals("SINGLETON")) continue;
+            Registration captive = findScoped(r, Collections.newSetFromMap(new IdentityHashMap<>()));
+            if (captive != null) {
+                error(r, "Cannot consume scoped service " + captive.service.getQualifiedName()
+                        + " from singleton " + r.service.getQualifiedName() + ".");
+            }
+        }
+    }
+
+    /** Finds a scoped registration reached from {@code r} directly or through transients. */
+    private static Registration findScoped(Registration r, Set<Registration> seen) {
+        if (!seen.add(r)) return null;
+        for (Registration d : r.dependencies) {
+            if (d.lifetime.equals("SCOPED")) return d;
+            if (d.lifetime.equals("TRANSIENT")) {
+                Registration captive = findScoped(d, seen);
+                if (captive != null) return captive;
+            }
+        }
+        return null;
+    }
+
+    private void addLookup(TypeElement type) {
+        String key = elements.getBinaryName(type).toString();
+        if (lookups.containsKey(key) || !accessible(type)) return;
+        if (type.getQualifiedName().contentEquals("java.lang.Object")) return;
+        Lookup l = lookup(type.asType());
+        if (l != null) lookups.put(key, l);
+    }
+
+    /**
+     * Resolves a requested type: exact registration, else most specific assignable registration.
+     *
+     * @return The outcome, or {@code null} if nothing can satisfy the request.
+     */
+    private Lookup lookup(TypeMirror requested) {
+        TypeMirror erased = types.erasure(requested);
+        if (erased.getKind() != TypeKind.DECLARED) return null;
+        TypeElement type = (TypeElement) ((DeclaredType) erased).asElement();
+
+        for (Registration r : registrations) {
+            if (r.service.getQualifiedName().contentEquals(type.getQualifiedName())) return new Lookup(type, r, null);
+        }
+
+        List<Registration> candidates = new ArrayList<>();
+        for (Registration r : registrations) {
+            if (types.isAssignable(types.erasure(r.impl.asType()), erased)) candidates.add(r);
+        }
+        if (candidates.isEmpty()) return null;
+
+        for (Registration c : candidates) {
+            boolean mostSpecific = true;
+            for (Registration o : candidates) {
+                if (!types.isAssignable(types.erasure(c.impl.asType()), types.erasure(o.impl.asType()))) {
+                    mostSpecific = false;
+                    break;
+                }
+            }
+            if (mostSpecific) return new Lookup(type, c, null);
+        }
+
+        StringBuilder sb = new StringBuilder("Ambiguous assignment for ")
+                .append(elements.getBinaryName(type)).append(". Candidates produce: ");
+        for (Registration c : candidates) sb.append(elements.getBinaryName(c.impl)).append(", ");
+        sb.setLength(sb.length() - 2);
+        sb.append(". Consider changing the parameter to the abstraction or registering a more specific mapping.");
+        return new Lookup(type, null, sb.toString());
+    }
+
+    private Set<TypeElement> supertypes(TypeElement type) {
+        Set<TypeElement> seen = new LinkedHashSet<>();
+        Deque<TypeMirror> pending = new ArrayDeque<>();
+        pending.push(type.asType());
+        while (!pending.isEmpty()) {
+            TypeMirror t = types.erasure(pending.pop());
+            if (t.getKind() != TypeKind.DECLARED) continue;
+            if (!seen.add((TypeElement) ((DeclaredType) t).asElement())) continue;
+            for (TypeMirror s : types.directSupertypes(t)) pending.push(s);
+        }
+        return seen;
+    }
+
+    private boolean accessible(Element e) {
+        for (Element c = e; c != null && c.getKind() != ElementKind.PACKAGE; c = c.getEnclosingElement()) {
+            Set<Modifier> m = c.getModifiers();
+            if (m.contains(Modifier.PRIVATE)) return false;
+            if (!m.contains(Modifier.PUBLIC) && !elements.getPackageOf(c).getQualifiedName().contentEquals(pkg)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String signature(TypeElement owner, ExecutableElement c) {
+        StringBuilder sb = new StringBuilder(owner.getSimpleName()).append("(");
+        List<? extends VariableElement> ps = c.getParameters();
+        for (int i = 0; i < ps.size(); i++) {
+            if (i > 0) sb.append(", ");
+            sb.append(ps.get(i).asType());
+        }
+        return sb.append(")").toString();
+    }
+
+    private void error(Registration r, String message) {
+        problems.computeIfAbsent(r.annotation, k -> new ArrayList<>()).add(message);
+    }
+}
@@ -0,0 +1,178 @@
+package org.oldskooler.inject4j.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+
+/**
+ * Annotation processor that turns every {@code @ServiceModule} class into a generated container.
+ * <p>
+ * For each module, the processor collects the {@code @AddSingleton}, {@code @AddScoped} and
+ * {@code @AddTransient} registrations in declaration order, resolves every constructor dependency
+ * with the same rules as {@code ServiceProvider} (exact registration first, then the most specific
+ * assignable registration, first registration wins on duplicates, greediest satisfiable constructor
+ * with a no-arg fallback), and writes {@code <Module>Container} into the module's package.
+ * </p>
+ *
+ * <p>The following are reported as compilation errors on the registration's annotation:</p>
+ * <ul>
+ *   <li>abstract or interface implementation types, or implementations not assignable to the service;</li>
+ *   <li>implementation types or constructors not accessible from the module's package;</li>
+ *   <li>constructors with unregistered or ambiguous parameter types;</li>
+ *   <li>constructors taking {@code Lazy<T>}, {@code Supplier<T>}, {@code List<T>}, arrays, other
+ *       parameterized types or {@code @FromKeyedServices} parameters, which only the runtime
+ *       container injects;</li>
+ *   <li>circular dependencies;</li>
+ *   <li>singletons that depend on scoped registrations, directly or through transients.</li>
+ * </ul>
+ */
+public class ServiceModuleProcessor extends AbstractProcessor {
+    static final String PACKAGE = "org.oldskooler.inject4j";
+    static final String SERVICE_MODULE = PACKAGE + ".ServiceModule";
+
+    private static final String[] LIFETIMES = {"Singleton", "Scoped", "Transient"};
+
+    private Messager messager;
+    private Filer filer;
+
+    @Override
+    public synchronized void init(ProcessingEnvironment env) {
+        super.init(env);
+        this.messager = env.getMessager();
+        this.filer = env.getFiler();
+    }
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        Set<String> types = new LinkedHashSet<>();
+        types.add(SERVICE_MODULE);
+        for (String l : LIFETIMES) {
+            types.add(PACKAGE + ".Add" + l);
+            types.add(PACKAGE + ".Add" + l + ".List");
+        }
+        return types;
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment round) {
+        TypeElement moduleAnnotation = processingEnv.getElementUtils().getTypeElement(SERVICE_MODULE);
+        if (moduleAnnotation == null) return false;
+
+        for (Element e : round.getElementsAnnotatedWith(moduleAnnotation)) {
+            if (e.getKind() != ElementKind.CLASS && e.getKind() != ElementKind.INTERFACE) {
+                messager.printMessage(Diagnostic.Kind.ERROR, "@ServiceModule must be placed on a class or interface", e);
+                continue;
+            }
+            processModule((TypeElement) e);
+        }
+        return false;
+    }
+
+    private void processModule(TypeElement module) {
+        List<ModuleGraph.Registration> registrations = readRegistrations(module);
+        ModuleGraph graph = new ModuleGraph(processingEnv, module, registrations);
+        if (!graph.resolve()) return; // errors already reported
+
+        String pkg = processingEnv.getElementUtils().getPackageOf(module).getQualifiedName().toString();
+        String name = containerName(module);
+        String fqcn = pkg.isEmpty() ? name : pkg + "." + name;
+        try {
+            JavaFileObject file = filer.createSourceFile(fqcn, module);
+            try (Writer w = file.openWriter()) {
+                w.write(new ContainerWriter(graph, pkg, name).write());
+            }
+        } catch (IOException ex) {
+            messager.printMessage(Diagnostic.Kind.ERROR, "Failed to write " + fqcn + ": " + ex.getMessage(), module);
+        }
+    }
+
+    private String containerName(TypeElement module) {
+        for (AnnotationMirror m : module.getAnnotationMirrors()) {
+            if (!nameOf(m).equals(SERVICE_MODULE)) continue;
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> e : m.getElementValues().entrySet()) {
+                if (e.getKey().getSimpleName().contentEquals("value")) {
+                    String v = String.valueOf(e.getValue().getValue());
+                    if (!v.isEmpty()) return v;
+                }
+            }
+        }
+        StringBuilder sb = new StringBuilder();
+        for (Element e = module; e instanceof TypeElement; e = e.getEnclosingElement()) {
+            sb.insert(0, sb.length() == 0 ? e.getSimpleName() : e.getSimpleName() + "_");
+        }
+        return sb + "Container";
+    }
+
+    /**
+     * Reads registrations in declaration order, unwrapping repeatable containers.
+     */
+    private List<ModuleGraph.Registration> readRegistrations(TypeElement module) {
+        List<ModuleGraph.Registration> out = new ArrayList<>();
+        for (AnnotationMirror m : module.getAnnotationMirrors()) {
+            String name = nameOf(m);
+            for (String lifetime : LIFETIMES) {
+                String single = PACKAGE + ".Add" + lifetime;
+                if (name.equals(single)) {
+                    out.add(readRegistration(m, m, lifetime.toUpperCase(Locale.ROOT), out.size()));
+                } else if (name.equals(single + ".List")) {
+                    // javac has no source position for annotations inside a repeatable container
+                    for (AnnotationMirror inner : nestedAnnotations(m)) {
+                        out.add(readRegistration(inner, null, lifetime.toUpperCase(Locale.ROOT), out.size()));
+                    }
+                }
+            }
+        }
+        return out;
+    }
+
+    private ModuleGraph.Registration readRegistration(AnnotationMirror m, AnnotationMirror reported, String lifetime, int index) {
+        TypeMirror service = null;
+        TypeMirror impl = null;
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> e : m.getElementValues().entrySet()) {
+            Object v = e.getValue().getValue();
+            if (!(v instanceof TypeMirror)) continue;
+            if (e.getKey().getSimpleName().contentEquals("value")) service = (TypeMirror) v;
+            if (e.getKey().getSimpleName().contentEquals("implementation")) impl = (TypeMirror) v;
+        }
+        if (impl == null || impl.getKind() == TypeKind.VOID) impl = service;
+        return new ModuleGraph.Registration(index, lifetime, asType(service), asType(impl), reported);
+    }
+
+    private static TypeElement asType(TypeMirror t) {
+        if (t instanceof DeclaredType) return (TypeElement) ((DeclaredType) t).asElement();
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<AnnotationMirror> nestedAnnotations(AnnotationMirror container) {
+        List<AnnotationMirror> out = new ArrayList<>();
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> e : container.getElementValues().entrySet()) {
+            if (!e.getKey().getSimpleName().contentEquals("value")) continue;
+            for (AnnotationValue v : (List<? extends AnnotationValue>) e.getValue().getValue()) {
+                out.add((AnnotationMirror) v.getValue());
+            }
+        }
+        return out;
+    }
+
+    private static String nameOf(AnnotationMirror m) {
+        return ((TypeElement) m.getAnnotationType().asElement()).getQualifiedName().toString();
+    }
+}
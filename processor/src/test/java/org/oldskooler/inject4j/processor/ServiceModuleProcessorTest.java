@@ -0,0 +1,271 @@
+package org.oldskooler.inject4j.processor;
+
+import com.google.testing.compile.Compilation;
+import com.google.testing.compile.JavaFileObjects;
+import org.junit.Test;
+
+import javax.tools.JavaFileObject;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.testing.compile.CompilationSubject.assertThat;
+import static com.google.testing.compile.Compiler.javac;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class ServiceModuleProcessorTest {
+    private static final JavaFileObject SERVICES = JavaFileObjects.forSourceLines("test.Services",
+            "package test;",
+            "",
+            "public class Services {",
+            "    public static class Clock {}",
+            "    public static class Session {}",
+            "    public static class Cache {",
+            "        public Cache(Clock clock) {}",
+            "    }",
+            "    public static class Handler {",
+            "        public final Session session;",
+            "        public final Cache cache;",
+            "        public Handler(Session session, Cache cache) { this.session = session; this.cache = cache; }",
+            "    }",
+            "    public static class SessionCache {",
+            "        public SessionCache(Session session) {}",
+            "    }",
+            "    public static class Audit {",
+            "        public Audit(Handler handler) {}",
+            "    }",
+            "    public static final java.util.List<String> CLOSED = new java.util.ArrayList<>();",
+            "    public static class Connection implements AutoCloseable {",
+            "        public void close() { CLOSED.add(\"Connection\"); }",
+            "    }",
+            "    public static class Repository implements AutoCloseable {",
+            "        public Repository(Connection connection) {}",
+            "        public void close() { CLOSED.add(\"Repository\"); }",
+            "    }",
+            "}");
+
+    private static JavaFileObject module(String... moduleAnnotations) {
+        String[] lines = new String[moduleAnnotations.length + 5];
+        lines[0] = "package test;";
+        lines[1] = "import org.oldskooler.inject4j.*;";
+        lines[2] = "import test.Services.*;";
+        lines[3] = "@ServiceModule";
+        System.arraycopy(moduleAnnotations, 0, lines, 4, moduleAnnotations.length);
+        lines[lines.length - 1] = "public class AppModule {}";
+        return JavaFileObjects.forSourceLines("test.AppModule", lines);
+    }
+
+    private static Compilation compile(JavaFileObject... sources) {
+        JavaFileObject[] all = Arrays.copyOf(sources, sources.length + 1);
+        all[sources.length] = SERVICES;
+        return javac().withProcessors(new ServiceModuleProcessor()).compile(all);
+    }
+
+    private static Compilation compile(String... moduleAnnotations) {
+        return compile(module(moduleAnnotations));
+    }
+
+    @Test
+    public void generatesPerSingletonLocksAndBuildsSingletonsWithoutScope() {
+        Compilation compilation = compile(
+                "@AddSingleton(Clock.class)",
+                "@AddSingleton(Cache.class)",
+                "@AddScoped(Session.class)",
+                "@AddTransient(Handler.class)");
+
+        assertThat(compilation).succeededWithoutWarnings();
+        assertThat(compilation).generatedSourceFile("test.AppModuleContainer")
+                .contentsAsUtf8String().contains("synchronized (singletonLock1)");
+        assertThat(compilation).generatedSourceFile("test.AppModuleContainer")
+                .contentsAsUtf8String().contains("singleton1 = v = create1(null);");
+        assertThat(compilation).generatedSourceFile("test.AppModuleContainer")
+                .contentsAsUtf8String().doesNotContain("singletonLock;");
+    }
+
+    @Test
+    public void generatedContainerSharesSingletonsAcrossScopes() throws Exception {
+        Compilation compilation = compile(
+                "@AddSingleton(Clock.class)",
+                "@AddSingleton(Cache.class)",
+                "@AddScoped(Session.class)",
+                "@AddTransient(Handler.class)");
+        assertThat(compilation).succeeded();
+
+        ClassLoader loader = new GeneratedClassLoader(compilation);
+        Class<?> containerType = loader.loadClass("test.AppModuleContainer");
+        Class<?> handlerType = loader.loadClass("test.Services$Handler");
+        Object container = containerType.getConstructor().newInstance();
+
+        Object scope1 = containerType.getMethod("createScope").invoke(container);
+        Object scope2 = containerType.getMethod("createScope").invoke(container);
+        Object a = scope1.getClass().getMethod("getService", Class.class).invoke(scope1, handlerType);
+        Object b = scope1.getClass().getMethod("getService", Class.class).invoke(scope1, handlerType);
+        Object c = scope2.getClass().getMethod("getService", Class.class).invoke(scope2, handlerType);
+
+        assertNotSame(a, b);
+        assertSame(field(a, "session"), field(b, "session"));
+        assertNotSame(field(a, "session"), field(c, "session"));
+        assertSame(field(a, "cache"), field(c, "cache"));
+    }
+
+    @Test
+    public void generatesPerSlotScopedLocks() {
+        Compilation compilation = compile(
+                "@AddScoped(Connection.class)",
+                "@AddScoped(Repository.class)");
+
+        assertThat(compilation).succeededWithoutWarnings();
+        assertThat(compilation).generatedSourceFile("test.AppModuleContainer")
+                .contentsAsUtf8String().contains("synchronized (scopedLock1)");
+        assertThat(compilation).generatedSourceFile("test.AppModuleContainer")
+                .contentsAsUtf8String().doesNotContain("private synchronized");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void generatedScopeClosesInReverseCreationOrder() throws Exception {
+        // registered before its dependent, so registration order is the wrong disposal order
+        Compilation compilation = compile(
+                "@AddScoped(Connection.class)",
+                "@AddScoped(Repository.class)");
+        assertThat(compilation).succeeded();
+
+        ClassLoader loader = new GeneratedClassLoader(compilation);
+        Class<?> containerType = loader.loadClass("test.AppModuleContainer");
+        List<String> closed = (List<String>) loader.loadClass("test.Services").getField("CLOSED").get(null);
+        Object container = containerType.getConstructor().newInstance();
+        Object scope = containerType.getMethod("createScope").invoke(container);
+        Method getService = scope.getClass().getMethod("getService", Class.class);
+        Method close = scope.getClass().getMethod("close");
+
+        getService.invoke(scope, loader.loadClass("test.Services$Repository"));
+        close.invoke(scope);
+        close.invoke(scope);
+        assertEquals(Arrays.asList("Repository", "Connection"), closed);
+    }
+
+    @Test
+    public void rejectsSingletonDependingOnScoped() {
+        JavaFileObject module = module(
+                "@AddScoped(Session.class)",
+                "@AddSingleton(SessionCache.class)");
+        Compilation compilation = compile(module);
+
+        assertThat(compilation).failed();
+        assertThat(compilation).hadErrorContaining(
+                "Cannot consume scoped service test.Services.Session from singleton test.Services.SessionCache.")
+                .inFile(module).onLineContaining("@AddSingleton(SessionCache.class)");
+    }
+
+    @Test
+    public void rejectsSingletonReachingScopedThroughTransient() {
+        Compilation compilation = compile(
+                "@AddSingleton(Clock.class)",
+                "@AddSingleton(Cache.class)",
+                "@AddScoped(Session.class)",
+                "@AddTransient(Handler.class)",
+                "@AddSingleton(Audit.class)");
+
+        assertThat(compilation).failed();
+        assertThat(compilation).hadErrorContaining(
+                "Cannot consume scoped service test.Services.Session from singleton test.Services.Audit.");
+    }
+
+    @Test
+    public void reportsMissingDependencies() {
+        JavaFileObject module = module(
+                "@AddSingleton(Clock.class)",
+                "@AddTransient(Cache.class)",
+                "@AddScoped(Audit.class)");
+        Compilation compilation = compile(module);
+
+        assertThat(compilation).failed();
+        assertThat(compilation).hadErrorCount(1);
+        assertThat(compilation).hadErrorContaining("No resolvable constructor for test.Services.Audit.")
+                .inFile(module).onLineContaining("@AddScoped(Audit.class)");
+    }
+
+    @Test
+    public void reportsProblemsOfRepeatedAnnotationsTogetherOnTheModule() {
+        JavaFileObject module = module(
+                "@AddSingleton(Cache.class)",
+                "@AddSingleton(Audit.class)");
+        Compilation compilation = compile(module);
+
+        assertThat(compilation).failed();
+        assertThat(compilation).hadErrorCount(1);
+        assertThat(compilation).hadErrorContaining("No resolvable constructor for test.Services.Cache.")
+                .inFile(module).onLineContaining("public class AppModule");
+        assertThat(compilation).hadErrorContaining("No resolvable constructor for test.Services.Audit.");
+    }
+
+    @Test
+    public void rejectsParametersOnlyTheRuntimeInjects() {
+        String[][] cases = {
+                {"org.oldskooler.inject4j.Lazy<Clock> clock", "parameterized types"},
+                {"java.util.function.Supplier<Clock> clock", "parameterized types"},
+                {"java.util.List<Clock> clocks", "parameterized types"},
+                {"java.lang.Comparable<Clock> clock", "parameterized types"},
+                {"Clock[] clocks", "arrays of services"},
+                {"@FromKeyedServices(\"utc\") Clock clock", "keyed services"},
+        };
+        for (String[] c : cases) {
+            JavaFileObject consumer = JavaFileObjects.forSourceLines("test.Consumer",
+                    "package test;",
+                    "import org.oldskooler.inject4j.*;",
+                    "import test.Services.*;",
+                    "public class Consumer {",
+                    "    public Consumer(" + c[0] + ") {}",
+                    "    public Consumer() {}",
+                    "}");
+            JavaFileObject module = module(
+                    "@AddSingleton(Clock.class)",
+                    "@AddTransient(Consumer.class)");
+            Compilation compilation = compile(consumer, module);
+
+            assertThat(compilation).failed();
+            assertThat(compilation).hadErrorContaining("generated containers do not inject " + c[1])
+                    .inFile(module).onLineContaining("@AddTransient(Consumer.class)");
+        }
+    }
+
+    private static Object field(Object target, String name) throws ReflectiveOperationException {
+        return target.getClass().getField(name).get(target);
+    }
+
+    /** Loads the class files of a compilation. */
+    private static final class GeneratedClassLoader extends ClassLoader {
+        private final Map<String, JavaFileObject> classes = new HashMap<>();
+
+        GeneratedClassLoader(Compilation compilation) {
+            super(ServiceModuleProcessorTest.class.getClassLoader());
+            for (JavaFileObject f : compilation.generatedFiles()) {
+                if (f.getKind() != JavaFileObject.Kind.CLASS) continue;
+                String path = f.toUri().getPath();
+                String name = path.substring(path.indexOf("/test/") + 1, path.length() - ".class".length());
+                classes.put(name.replace('/', '.'), f);
+            }
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            JavaFileObject f = classes.get(name);
+            if (f == null) throw new ClassNotFoundException(name);
+            try (InputStream in = f.openInputStream()) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                byte[] buffer = new byte[4096];
+                for (int n; (n = in.read(buffer)) > 0; ) bytes.write(buffer, 0, n);
+                return defineClass(name, bytes.toByteArray(), 0, bytes.size());
+            } catch (IOException e) {
+                throw new ClassNotFoundException(name, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package org.oldskooler.inject4j.benchmarks;
+
+import org.oldskooler.inject4j.ServiceCollection;
+
+import java.lang.reflect.Proxy;
+
+/**
+ * Service types shared by the benchmarks, plus padding registrations that grow the provider
+ * without touching the benchmarked graph. Public, so that every activation strategy can link to
+ * the constructors.
+ */
+public final class Fixtures {
+    private Fixtures() {}
+
+    public interface Clock { long now(); }
+
+    public static final class SystemClock implements Clock {
+        public long now() { return System.nanoTime(); }
+    }
+
+    public static final class Config {
+        public Config() {}
+    }
+
+    public static final class Repository {
+        final Config config;
+        public Repository(Config config) { this.config = config; }
+    }
+
+    public static final class Handler {
+        final Repository repository;
+        final Clock clock;
+        public Handler(Repository repository, Clock clock) { this.repository = repository; this.clock = clock; }
+    }
+
+    public static final class RequestContext implements AutoCloseable {
+        public RequestContext() {}
+        public void close() {}
+    }
+
+    public static final class ScopedHandler {
+        final RequestContext context;
+        final Repository repository;
+        public ScopedHandler(RequestContext context, Repository repository) { this.context = context; this.repository = repository; }
+    }
+
+    public static final class Report {
+        final Clock clock;
+        final String title;
+        public Report(Clock clock, String title) { this.clock = clock; this.title = title; }
+    }
+
+    // ---------- deep graph: Deep9 -> Deep8 -> ... -> Deep0 ----------
+
+    public static final class Deep0 { public Deep0() {} }
+    public static final class Deep1 { public Deep1(Deep0 d) {} }
+    public static final class Deep2 { public Deep2(Deep1 d) {} }
+    public static final class Deep3 { public Deep3(Deep2 d) {} }
+    public static final class Deep4 { public Deep4(Deep3 d) {} }
+    public static final class Deep5 { public Deep5(Deep4 d) {} }
+    public static final class Deep6 { public Deep6(Deep5 d) {} }
+    public static final class Deep7 { public Deep7(Deep6 d) {} }
+    public static final class Deep8 { public Deep8(Deep7 d) {} }
+    public static final class Deep9 { public Deep9(Deep8 d) {} }
+
+    static final Class<?>[] DEEP = {
+            Deep0.class, Deep1.class, Deep2.class, Deep3.class, Deep4.class,
+            Deep5.class, Deep6.class, Deep7.class, Deep8.class, Deep9.class
+    };
+
+    // ---------- wide graph: Wide depends on eight leaves ----------
+
+    public static final class Leaf0 { public Leaf0() {} }
+    public static final class Leaf1 { public Leaf1() {} }
+    public static final class Leaf2 { public Leaf2() {} }
+    public static final class Leaf3 { public Leaf3() {} }
+    public static final class Leaf4 { public Leaf4() {} }
+    public static final class Leaf5 { public Leaf5() {} }
+    public static final class Leaf6 { public Leaf6() {} }
+    public static final class Leaf7 { public Leaf7() {} }
+
+    public static final class Wide {
+        public Wide(Leaf0 a, Leaf1 b, Leaf2 c, Leaf3 d, Leaf4 e, Leaf5 f, Leaf6 g, Leaf7 h) {}
+    }
+
+    static final Class<?>[] LEAVES = {
+            Leaf0.class, Leaf1.class, Leaf2.class, Leaf3.class,
+            Leaf4.class, Leaf5.class, Leaf6.class, Leaf7.class
+    };
+
+    // ---------- padding ----------
+
+    /** Marker implemented by every padding registration. */
+    public interface Padding {}
+
+    /**
+     * Adds {@code count} singleton registrations, each keyed by its own generated class, so lookup
+     * tables grow the way they would in a large application.
+     *
+     * @param services The collection to add to.
+     * @param count    The number of registrations to add.
+     */
+    static void addPadding(ServiceCollection services, int count) {
+        for (int i = 0; i < count; i++) {
+            // A fresh loader yields a distinct proxy class per registration.
+            ClassLoader loader = new ClassLoader(Fixtures.class.getClassLoader()) { };
+            Object padding = Proxy.newProxyInstance(loader, new Class<?>[]{Padding.class}, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "hashCode": return System.identityHashCode(proxy);
+                    case "equals":   return proxy == args[0];
+                    default:         return "Padding";
+                }
+            });
+            register(services, padding.getClass(), padding);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> void register(ServiceCollection services, Class<T> type, Object instance) {
+        services.addSingleton(type, () -> (T) instance);
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> void addTransient(ServiceCollection services, Class<?> type) {
+        services.addTransient((Class<T>) type);
+    }
+}
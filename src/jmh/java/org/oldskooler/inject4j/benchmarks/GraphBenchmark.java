@@ -0,0 +1,55 @@
+package org.oldskooler.inject4j.benchmarks;
+
+import org.oldskooler.inject4j.ActivationStrategy;
+import org.oldskooler.inject4j.ServiceCollection;
+import org.oldskooler.inject4j.ServiceProvider;
+import org.oldskooler.inject4j.ServiceProviderOptions;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transient graphs that stress activation: a chain ten constructors deep and a constructor with eight
+ * dependencies, under every {@link ActivationStrategy}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GraphBenchmark {
+    /** Unrelated registrations added next to the benchmarked ones. */
+    @Param({"10", "1000"})
+    public int registrations;
+
+    @Param({"false", "true"})
+    public boolean compiled;
+
+    @Param({"REFLECTION", "METHOD_HANDLE", "LAMBDA_METAFACTORY"})
+    public ActivationStrategy activation;
+
+    private ServiceProvider provider;
+
+    @Setup
+    public void setUp() {
+        ServiceCollection services = new ServiceCollection();
+        Fixtures.addPadding(services, registrations);
+        for (Class<?> type : Fixtures.DEEP) Fixtures.addTransient(services, type);
+        for (Class<?> type : Fixtures.LEAVES) Fixtures.addTransient(services, type);
+        services.addTransient(Fixtures.Wide.class);
+        provider = services.buildServiceProvider(new ServiceProviderOptions()
+                .setCompiledResolution(compiled)
+                .setActivationStrategy(activation));
+    }
+
+    @Benchmark
+    public Object deep() {
+        return provider.getService(Fixtures.Deep9.class);
+    }
+
+    @Benchmark
+    public Object wide() {
+        return provider.getService(Fixtures.Wide.class);
+    }
+}
@@ -0,0 +1,61 @@
+package org.oldskooler.inject4j.benchmarks;
+
+import org.oldskooler.inject4j.ServiceCollection;
+import org.oldskooler.inject4j.ServiceProvider;
+import org.oldskooler.inject4j.ServiceProviderOptions;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Root-provider resolution: a cached singleton, a transient with a small dependency graph, an
+ * interface satisfied only through the assignable fallback, and {@code createInstance} with an
+ * explicit argument.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResolutionBenchmark {
+    /** Unrelated registrations added next to the benchmarked ones. */
+    @Param({"10", "100", "1000"})
+    public int registrations;
+
+    @Param({"false", "true"})
+    public boolean compiled;
+
+    private ServiceProvider provider;
+
+    @Setup
+    public void setUp() {
+        ServiceCollection services = new ServiceCollection();
+        Fixtures.addPadding(services, registrations);
+        services.addSingleton(Fixtures.Config.class);
+        services.addSingleton(Fixtures.SystemClock.class); // Clock is only reachable by assignability
+        services.addTransient(Fixtures.Repository.class);
+        services.addTransient(Fixtures.Handler.class);
+        provider = services.buildServiceProvider(new ServiceProviderOptions().setCompiledResolution(compiled));
+    }
+
+    @Benchmark
+    public Object singleton() {
+        return provider.getService(Fixtures.Config.class);
+    }
+
+    @Benchmark
+    public Object transientGraph() {
+        return provider.getService(Fixtures.Handler.class);
+    }
+
+    @Benchmark
+    public Object assignableFallback() {
+        return provider.getService(Fixtures.Clock.class);
+    }
+
+    @Benchmark
+    public Object createInstanceWithExplicitArgs() {
+        return provider.createInstance(Fixtures.Report.class, "quarterly");
+    }
+}
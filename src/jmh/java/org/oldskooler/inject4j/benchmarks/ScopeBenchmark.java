@@ -0,0 +1,53 @@
+package org.oldskooler.inject4j.benchmarks;
+
+import org.oldskooler.inject4j.ServiceCollection;
+import org.oldskooler.inject4j.ServiceProvider;
+import org.oldskooler.inject4j.ServiceProviderOptions;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scope lifecycle, as paid once per request: create and close an empty scope, and create a scope,
+ * resolve a scoped handler (with a scoped, closeable dependency) and close it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScopeBenchmark {
+    /** Unrelated registrations added next to the benchmarked ones. */
+    @Param({"10", "100", "1000"})
+    public int registrations;
+
+    @Param({"false", "true"})
+    public boolean compiled;
+
+    private ServiceProvider provider;
+
+    @Setup
+    public void setUp() {
+        ServiceCollection services = new ServiceCollection();
+        Fixtures.addPadding(services, registrations);
+        services.addSingleton(Fixtures.Config.class);
+        services.addTransient(Fixtures.Repository.class);
+        services.addScoped(Fixtures.RequestContext.class);
+        services.addScoped(Fixtures.ScopedHandler.class);
+        provider = services.buildServiceProvider(new ServiceProviderOptions().setCompiledResolution(compiled));
+    }
+
+    @Benchmark
+    public void createClose() {
+        org.oldskooler.inject4j.Scope scope = provider.createScope();
+        scope.close();
+    }
+
+    @Benchmark
+    public Object createResolveClose() {
+        try (org.oldskooler.inject4j.Scope scope = provider.createScope()) {
+            return scope.getService(Fixtures.ScopedHandler.class);
+        }
+    }
+}
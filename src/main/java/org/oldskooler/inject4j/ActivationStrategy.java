@@ -0,0 +1,43 @@
+package org.oldskooler.inject4j;
+
+/**
+ * Selects how the container invokes constructors once a constructor has been chosen.
+ *
+ * <p>The strategy only affects the final constructor call; constructor selection and parameter
+ * binding are identical for every strategy.</p>
+ *
+ * @see ServiceProviderOptions#setActivationStrategy(ActivationStrategy)
+ */
+public enum ActivationStrategy {
+    /**
+     * Invokes constructors through {@link java.lang.reflect.Constructor#newInstance(Object...)}.
+     * This is the default and works for every accessible or {@code setAccessible}-able constructor.
+     */
+    REFLECTION,
+
+    /**
+     * Converts each chosen constructor once into a cached {@link java.lang.invoke.MethodHandle}
+     * adapted to {@code (Object[])Object} and invokes it with {@code invokeExact}. This skips the
+     * per-call reflective access checks and argument copying of {@link #REFLECTION}.
+     * <p>
+     * The handle is held in a field of a per-constructor factory rather than in a constant, so the JIT
+     * does not constant-fold it: every call still goes through the handle's generic invoker and the
+     * constructor is not inlined into the caller. Use {@link #LAMBDA_METAFACTORY} for that.
+     * </p>
+     */
+    METHOD_HANDLE,
+
+    /**
+     * Uses {@link java.lang.invoke.LambdaMetafactory} to generate, once per constructor, a small class
+     * whose factory method is a direct {@code new T(...)} call, reached through one interface call
+     * per activation. That call site is shared by all constructors of the same arity, so the JIT does not
+     * inline the constructor into the container.
+     * <p>
+     * Applies to public constructors of public types with up to six reference-typed parameters; other
+     * constructors silently fall back to {@link #METHOD_HANDLE}. When selected for a registration (see
+     * {@link ServiceCollection#addTransient(Class, Class, ActivationStrategy)}), the factory is generated
+     * while the provider is being built.
+     * </p>
+     */
+    LAMBDA_METAFACTORY
+}
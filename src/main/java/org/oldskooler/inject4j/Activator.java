@@ -1,7 +1,6 @@
 package org.oldskooler.inject4j;
 
 import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
 import java.util.*;
 
 /**
@@ -38,6 +37,7 @@ final class Activator {
      *   <li>Fallback resolution via the {@link ServiceResolver}</li>
      * </ol>
      *
+     * @param index        the provider's index, which caches constructor invokers
      * @param resolver     callback to resolve services from a provider/scope
      * @param type         the concrete class to instantiate (never {@code null})
      * @param explicitArgs optional explicit arguments to bind before DI
@@ -46,29 +46,29 @@ final class Activator {
      * @throws ServiceNotFoundException if no constructor can be fully satisfied
      * @throws RuntimeException         if instantiation fails (reflection issues)
      */
-    static <T> T createInstance(ServiceResolver resolver, Class<T> type, Object... explicitArgs) {
+    static <T> T createInstance(ServiceIndex index, ServiceResolver resolver, Class<T> type, Object... explicitArgs) {
         Objects.requireNonNull(type, "type");
-        List<Object> remaining = new ArrayList<>(Arrays.asList(explicitArgs));
+        Object event = ContainerEvents.beginCreateInstance();
+        try {
+            List<Object> remaining = new ArrayList<>(Arrays.asList(explicitArgs));
 
-        Constructor<?>[] ctors = type.getDeclaredConstructors();
-        Arrays.sort(ctors, (a, b) -> Integer.compare(b.getParameterCount(), a.getParameterCount()));
+            Constructor<?>[] ctors = type.getDeclaredConstructors();
+            Arrays.sort(ctors, (a, b) -> Integer.compare(b.getParameterCount(), a.getParameterCount()));
 
-        for (Constructor<?> ctor : ctors) {
-            Object[] bound = tryBind(ctor, resolver, remaining);
-            if (bound != null) {
-                try {
-                    ctor.setAccessible(true);
+            for (Constructor<?> ctor : ctors) {
+                Object[] bound = tryBind(ctor, resolver, remaining);
+                if (bound != null) {
                     @SuppressWarnings("unchecked")
-                    T instance = (T) ctor.newInstance(bound);
+                    T instance = (T) index.instanceFactory(ctor).create(bound);
                     return instance;
-                } catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
-                    throw new RuntimeException("Failed to construct " + type.getName() + " via " + ctor, e);
                 }
             }
-        }
 
-        throw new ServiceNotFoundException("No constructor of " + type.getName()
-                + " could be satisfied by explicit arguments + services");
+            throw new ServiceNotFoundException("No constructor of " + type.getName()
+                    + " could be satisfied by explicit arguments + services");
+        } finally {
+            ContainerEvents.endCreateInstance(event, type);
+        }
     }
 
     /**
@@ -0,0 +1,52 @@
+package org.oldskooler.inject4j;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Repeatable;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Registers a scoped service: one instance per scope, closed with the scope if {@link AutoCloseable}.
+ * The compile-time counterpart of {@link ServiceCollection#addScoped(Class, Class)}, read from a
+ * {@link ServiceModule} class.
+ *
+ * <p>{@code @AddScoped(Foo.class)} registers {@code Foo} as both service and implementation;
+ * {@code @AddScoped(value = Foo.class, implementation = FooImpl.class)} maps an abstraction to an
+ * implementation.</p>
+ */
+@Documented
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+@Repeatable(AddScoped.List.class)
+public @interface AddScoped {
+    /**
+     * The service type being registered.
+     *
+     * @return The service type.
+     */
+    Class<?> value();
+
+    /**
+     * The concrete implementation type. Defaults to the service type itself.
+     *
+     * @return The implementation type, or {@code void.class} for self-binding.
+     */
+    Class<?> implementation() default void.class;
+
+    /**
+     * Container for repeated {@link AddScoped} annotations.
+     */
+    @Documented
+    @Retention(RetentionPolicy.SOURCE)
+    @Target(ElementType.TYPE)
+    @interface List {
+        /**
+         * The repeated registrations.
+         *
+         * @return The registrations, in declaration order.
+         */
+        AddScoped[] value();
+    }
+}
@@ -0,0 +1,52 @@
+package org.oldskooler.inject4j;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Repeatable;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Registers a singleton: one instance per container, shared by all scopes.
+ * The compile-time counterpart of {@link ServiceCollection#addSingleton(Class, Class)}, read from a
+ * {@link ServiceModule} class.
+ *
+ * <p>{@code @AddSingleton(Foo.class)} registers {@code Foo} as both service and implementation;
+ * {@code @AddSingleton(value = Foo.class, implementation = FooImpl.class)} maps an abstraction to an
+ * implementation.</p>
+ */
+@Documented
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+@Repeatable(AddSingleton.List.class)
+public @interface AddSingleton {
+    /**
+     * The service type being registered.
+     *
+     * @return The service type.
+     */
+    Class<?> value();
+
+    /**
+     * The concrete implementation type. Defaults to the service type itself.
+     *
+     * @return The implementation type, or {@code void.class} for self-binding.
+     */
+    Class<?> implementation() default void.class;
+
+    /**
+     * Container for repeated {@link AddSingleton} annotations.
+     */
+    @Documented
+    @Retention(RetentionPolicy.SOURCE)
+    @Target(ElementType.TYPE)
+    @interface List {
+        /**
+         * The repeated registrations.
+         *
+         * @return The registrations, in declaration order.
+         */
+        AddSingleton[] value();
+    }
+}
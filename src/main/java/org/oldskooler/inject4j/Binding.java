@@ -0,0 +1,187 @@
+package org.oldskooler.inject4j;
+
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.function.Supplier;
+
+/**
+ * How one constructor parameter of a {@link ConstructorPlan} is satisfied.
+ * <p>
+ * Bindings are decided once, when the plan is built: a parameter is either bound to the registration
+ * that satisfies its type ({@link Direct}), bound to a registration through a wrapper that resolves it
+ * later ({@link LazyOf}, {@link SupplierOf}), bound to every registration of an element type
+ * ({@link AllOf}), or left {@link #NONE unbound}. Activation only asks each binding for its argument.
+ * </p>
+ *
+ * @implNote This class is package-private and not intended for external use.
+ */
+abstract class Binding {
+    /** A parameter that is only self-bindable; it receives {@code null}. */
+    static final Binding NONE = new Binding((ServiceDescriptor<?>) null) {
+        @Override Object resolve(Resolver resolver) { return null; }
+        @Override Object resolve(Resolver resolver, CompiledService<?> node) { return null; }
+    };
+
+    private static final ServiceDescriptor<?>[] NO_TARGETS = new ServiceDescriptor<?>[0];
+
+    /** The registration the argument is produced from, or {@code null} for {@link #NONE} and {@link AllOf}. */
+    final ServiceDescriptor<?> target;
+    /** Every registration the argument is produced from, for graph walks: {@link #target}, or all elements. */
+    final ServiceDescriptor<?>[] targets;
+
+    Binding(ServiceDescriptor<?> target) {
+        this.target = target;
+        this.targets = target != null ? new ServiceDescriptor<?>[]{target} : NO_TARGETS;
+    }
+
+    Binding(ServiceDescriptor<?>[] targets) {
+        this.target = null;
+        this.targets = targets;
+    }
+
+    /**
+     * Produces the argument through the regular resolution path.
+     *
+     * @param resolver The provider or scope the owning instance is created in.
+     * @return The argument.
+     */
+    abstract Object resolve(Resolver resolver);
+
+    /**
+     * Produces the argument from {@link #target}'s compiled node.
+     *
+     * @param resolver The provider or scope the owning instance is created in.
+     * @param node     The compiled node of {@link #target}.
+     * @return The argument.
+     */
+    abstract Object resolve(Resolver resolver, CompiledService<?> node);
+
+    /**
+     * Indicates whether {@link #targets} are resolved after the constructor returns rather than before
+     * it runs. Deferred edges do not take part in cycle detection or warm-up ordering.
+     *
+     * @return {@code true} if resolution of the target is deferred.
+     */
+    boolean isDeferred() {
+        return false;
+    }
+
+    /** The argument is the target itself, resolved according to its lifetime. */
+    static final class Direct extends Binding {
+        Direct(ServiceDescriptor<?> target) { super(target); }
+
+        @Override
+        Object resolve(Resolver resolver) {
+            return resolver.resolve(target);
+        }
+
+        @Override
+        Object resolve(Resolver resolver, CompiledService<?> node) {
+            return node.resolve(resolver);
+        }
+    }
+
+    /** The argument is a {@link Lazy} that resolves the target on first {@link Lazy#get()}. */
+    static final class LazyOf extends Binding {
+        LazyOf(ServiceDescriptor<?> target) { super(target); }
+
+        @Override
+        Object resolve(Resolver resolver) {
+            ServiceDescriptor<?> d = target;
+            return new Lazy<>(() -> resolver.resolve(d));
+        }
+
+        @Override
+        Object resolve(Resolver resolver, CompiledService<?> node) {
+            return new Lazy<>(() -> node.resolve(resolver));
+        }
+
+        @Override
+        boolean isDeferred() {
+            return true;
+        }
+    }
+
+    /**
+     * The argument is a {@link Supplier} that resolves the target on every {@link Supplier#get()}.
+     * <p>
+     * For plain transient registrations, {@code get()} activates the target through
+     * {@link ConstructorFactory}, skipping the lookup and lifetime dispatch of a {@code getService}
+     * call but keeping its cycle check, depth guard and activation event.
+     * </p>
+     */
+    static final class SupplierOf extends Binding {
+        SupplierOf(ServiceDescriptor<?> target) { super(target); }
+
+        @Override
+        Object resolve(Resolver resolver) {
+            ServiceDescriptor<?> d = target;
+            if (d.lifetime != ServiceLifetime.TRANSIENT || d.instance != null || d.factory != null
+                    || resolver.index().counters(d) != null || resolver.index().isTracing()) {
+                // metrics and traces are recorded on the regular path
+                return (Supplier<Object>) () -> resolver.resolve(d);
+            }
+            return (Supplier<Object>) () -> ConstructorFactory.createWithInjection(d, resolver);
+        }
+
+        @Override
+        Object resolve(Resolver resolver, CompiledService<?> node) {
+            return (Supplier<Object>) () -> node.resolve(resolver);
+        }
+
+        @Override
+        boolean isDeferred() {
+            return true;
+        }
+    }
+
+    /**
+     * The argument is a {@code List} or array holding an instance of every registration of the element
+     * type, in registration order, each resolved according to its own lifetime. The registrations were
+     * collected when the index was built, so producing the argument never scans the registrations.
+     */
+    static final class AllOf extends Binding {
+        /** The element type of an array parameter, or {@code null} for a {@code List}. */
+        private final Class<?> arrayType;
+
+        AllOf(ServiceDescriptor<?>[] targets, Class<?> arrayType) {
+            super(targets);
+            this.arrayType = arrayType;
+        }
+
+        @Override
+        Object resolve(Resolver resolver) {
+            ServiceDescriptor<?>[] t = targets;
+            Object[] values = newArray(t.length);
+            for (int i = 0; i < t.length; i++) values[i] = resolver.resolve(t[i]);
+            return wrap(values);
+        }
+
+        @Override
+        Object resolve(Resolver resolver, CompiledService<?> node) {
+            return resolve(resolver); // compiled graphs link this binding as CompiledService.All instead
+        }
+
+        /**
+         * Produces the argument from the compiled node of each target.
+         *
+         * @param resolver The provider or scope the owning instance is created in.
+         * @param nodes    The compiled node of each of {@link #targets}, in the same order.
+         * @return The argument.
+         */
+        Object resolve(Resolver resolver, CompiledService<?>[] nodes) {
+            Object[] values = newArray(nodes.length);
+            for (int i = 0; i < nodes.length; i++) values[i] = nodes[i].resolve(resolver);
+            return wrap(values);
+        }
+
+        private Object[] newArray(int length) {
+            return arrayType != null ? (Object[]) Array.newInstance(arrayType, length) : new Object[length];
+        }
+
+        private Object wrap(Object[] values) {
+            return arrayType != null ? values : Collections.unmodifiableList(Arrays.asList(values));
+        }
+    }
+}
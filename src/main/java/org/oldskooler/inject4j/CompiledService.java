@@ -0,0 +1,202 @@
+package org.oldskooler.inject4j;
+
+/**
+ * A pre-linked resolver for one registration, used when the provider is built with
+ * {@linkplain ServiceProviderOptions#setCompiledResolution(boolean) compiled resolution}.
+ * <p>
+ * While the provider is built, every descriptor is turned into one of these nodes and each node is
+ * linked directly to the nodes of its constructor dependencies, which are held in a fixed array.
+ * Resolving a service is then a walk over that graph: no {@code getService} call, no descriptor
+ * lookup, no lifetime switch and no {@link ConstructorFactory} work happen at request time. Combined
+ * with {@link ActivationStrategy#LAMBDA_METAFACTORY}, constructing a transient is an interface call
+ * to a generated {@code new} with arguments read from the dependency slots.
+ * </p>
+ *
+ * <p>
+ * Registrations whose constructor cannot be satisfied when the provider is built are represented by a
+ * {@link Deferred} node that falls back to the regular resolution path, so the usual error is reported
+ * when (and only if) the service is requested. When the provider was not validated, so are
+ * registrations whose constructor graph has a cycle, and activations of the other nodes count against
+ * the same depth guard as the regular path, which stops cycles through {@code Lazy}, {@code Supplier}
+ * and factories.
+ * </p>
+ *
+ * @param <T> The service type.
+ * @implNote This class is package-private and not intended for external use.
+ */
+abstract class CompiledService<T> {
+    /** The registration this node was compiled from. */
+    final ServiceDescriptor<T> descriptor;
+    /** Invokes the implementation constructor; {@code null} for instance/factory registrations. */
+    InstanceFactory<T> factory;
+    /**
+     * Node bound to each constructor parameter ({@code null} slots resolve to {@code null}): the
+     * dependency's own node, a {@link Bound} node wrapping it for {@link Lazy} and
+     * {@link java.util.function.Supplier} parameters, or an {@link All} node for collection parameters.
+     */
+    CompiledService<?>[] dependencies;
+    /** Metrics of the registration; {@code null} unless metrics are enabled (and for wrapper nodes). */
+    ServiceCounters counters;
+    /**
+     * Whether activations count against the depth guard of {@link ConstructorFactory}: set when the
+     * provider was not validated, as on the regular path.
+     */
+    boolean guarded;
+
+    CompiledService(ServiceDescriptor<T> descriptor) {
+        this.descriptor = descriptor;
+    }
+
+    /**
+     * Returns an instance according to this node's lifetime.
+     *
+     * @param resolver The provider or scope the request was made on.
+     * @return The resolved instance.
+     */
+    abstract T resolve(Resolver resolver);
+
+    /**
+     * Creates a new instance, resolving constructor arguments from the linked dependency nodes.
+     *
+     * @param resolver The provider or scope the request was made on.
+     * @return A new instance (or the registered instance / factory result).
+     */
+    final T create(Resolver resolver) {
+        ServiceDescriptor<T> d = descriptor;
+        if (d.instance != null) return d.instance;
+        ServiceCounters c = counters;
+        if (c == null) return construct(resolver);
+        long start = System.nanoTime();
+        T instance = construct(resolver);
+        c.constructed(System.nanoTime() - start);
+        return instance;
+    }
+
+    private T construct(Resolver resolver) {
+        if (descriptor.factory != null) return descriptor.factory.apply(resolver);
+
+        Object event = ContainerEvents.beginActivation();
+        int[] depth = guarded ? ConstructorFactory.enterGuarded(descriptor.implType) : null;
+        try {
+            CompiledService<?>[] deps = dependencies;
+            Object[] args = new Object[deps.length];
+            for (int i = 0; i < deps.length; i++) {
+                if (deps[i] != null) args[i] = deps[i].resolve(resolver);
+            }
+            return factory.create(args);
+        } finally {
+            if (depth != null) depth[0]--;
+            ContainerEvents.endActivation(event, descriptor.serviceType, descriptor.implType, descriptor.lifetime);
+        }
+    }
+
+    /**
+     * Creates the (not yet linked) node matching the descriptor's lifetime.
+     *
+     * @param <T> The service type.
+     * @param d     The descriptor.
+     * @param index The index being compiled (owner of the singleton holders).
+     * @return A new node.
+     */
+    static <T> CompiledService<T> forLifetime(ServiceDescriptor<T> d, ServiceIndex index) {
+        CompiledService<T> node;
+        switch (d.lifetime) {
+            case SINGLETON: node = new Singleton<>(d, index.singleton(d)); break;
+            case SCOPED:    node = new Scoped<>(d, index.scopedSlot(d)); break;
+            case TRANSIENT: node = new Transient<>(d); break;
+            default:        throw new IllegalStateException("Unknown lifetime");
+        }
+        node.counters = index.counters(d);
+        node.guarded = !index.isValidated();
+        return node;
+    }
+
+    /** A new instance on every request. */
+    static final class Transient<T> extends CompiledService<T> {
+        Transient(ServiceDescriptor<T> d) { super(d); }
+
+        @Override
+        T resolve(Resolver resolver) {
+            if (counters != null) counters.resolved(false);
+            return create(resolver);
+        }
+    }
+
+    /** One instance per provider, kept in the registration's {@link InstanceHolder}. */
+    static final class Singleton<T> extends CompiledService<T> {
+        private final InstanceHolder<T> holder;
+
+        Singleton(ServiceDescriptor<T> d, InstanceHolder<T> holder) {
+            super(d);
+            this.holder = holder;
+        }
+
+        @Override
+        T resolve(Resolver resolver) {
+            T v = holder.peek();
+            if (counters != null) counters.resolved(v != null);
+            return v != null ? v : holder.getOrCreate(resolver, this::create);
+        }
+    }
+
+    /** One instance per scope, cached by the scope that requested it in the registration's slot. */
+    static final class Scoped<T> extends CompiledService<T> {
+        /** The registration's slot in every scope's storage ({@link ServiceIndex#scopedSlot}). */
+        final int slot;
+
+        Scoped(ServiceDescriptor<T> d, int slot) {
+            super(d);
+            this.slot = slot;
+        }
+
+        @Override
+        T resolve(Resolver resolver) {
+            return resolver.resolveScoped(this);
+        }
+    }
+
+    /** A parameter satisfied through a non-direct {@link Binding} (such as {@link Lazy}) over a linked node. */
+    static final class Bound extends CompiledService<Object> {
+        private final Binding binding;
+        private final CompiledService<?> target;
+
+        @SuppressWarnings("unchecked")
+        Bound(Binding binding, CompiledService<?> target) {
+            super((ServiceDescriptor<Object>) binding.target);
+            this.binding = binding;
+            this.target = target;
+        }
+
+        @Override
+        Object resolve(Resolver resolver) {
+            return binding.resolve(resolver, target);
+        }
+    }
+
+    /** A {@code List} or array parameter linked to the node of every registration of its element type. */
+    static final class All extends CompiledService<Object> {
+        private final Binding.AllOf binding;
+        private final CompiledService<?>[] elements;
+
+        All(Binding.AllOf binding, CompiledService<?>[] elements) {
+            super(null);
+            this.binding = binding;
+            this.elements = elements;
+        }
+
+        @Override
+        Object resolve(Resolver resolver) {
+            return binding.resolve(resolver, elements);
+        }
+    }
+
+    /** A registration that could not be compiled; resolves through the regular path. */
+    static final class Deferred<T> extends CompiledService<T> {
+        Deferred(ServiceDescriptor<T> d) { super(d); }
+
+        @Override
+        T resolve(Resolver resolver) {
+            return resolver.resolve(descriptor);
+        }
+    }
+}
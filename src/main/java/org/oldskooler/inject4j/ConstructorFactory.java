@@ -1,51 +1,220 @@
 package org.oldskooler.inject4j;
 
 
+import java.lang.annotation.Annotation;
 import java.lang.reflect.Constructor;
+import java.lang.reflect.GenericArrayType;
 import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
 import java.util.*;
+import java.util.function.Supplier;
 
 final class ConstructorFactory {
+    /**
+     * Deepest nesting of activations on one thread before a provider that was not validated gives up.
+     * Constructor cycles are found from the plans; this only stops cycles the plans cannot show, such
+     * as a factory that resolves a service depending on its own registration.
+     */
+    static final int MAX_DEPTH = 256;
+    /** Number of activations in progress on each thread (unvalidated providers only). */
+    private static final ThreadLocal<int[]> DEPTH = ThreadLocal.withInitial(() -> new int[1]);
+
     private ConstructorFactory() {}
 
-    static <T> T createWithInjection(Class<T> implType, Resolver resolver, Deque<Class<?>> externalStack) {
+    static <T> T createWithInjection(Class<T> implType, Resolver resolver) {
+        return activate(resolver.index().plan(implType), implType, null, resolver);
+    }
+
+    // Activates a registration's plan; for closed generics, that of the closed implementation type.
+    static <T> T createWithInjection(ServiceDescriptor<T> d, Resolver resolver) {
+        return activate(resolver.index().plan(d), d.serviceType, d.lifetime, resolver);
+    }
+
+    private static <T> T activate(ConstructorPlan<T> plan, Class<?> serviceType, ServiceLifetime lifetime,
+                                  Resolver resolver) {
+        ServiceIndex index = resolver.index();
+        Class<T> implType = plan.constructor.getDeclaringClass();
+        Object event = ContainerEvents.beginActivation();
+        try {
+            if (index.isValidated()) {
+                return plan.activate(resolver); // graph checked for cycles when the provider was built
+            }
+            return activateGuarded(plan, resolver);
+        } finally {
+            ContainerEvents.endActivation(event, serviceType, implType, lifetime);
+        }
+    }
+
+    // Activation for providers that were not validated: the plan's graph is checked for cycles on its
+    // first activation, and a depth guard stops cycles the plans cannot show.
+    private static <T> T activateGuarded(ConstructorPlan<T> plan, Resolver resolver) {
+        if (!plan.acyclic) resolver.index().checkAcyclic(plan);
+        int[] depth = enterGuarded(plan.constructor.getDeclaringClass());
+        try {
+            return plan.activate(resolver);
+        } finally {
+            depth[0]--;
+        }
+    }
+
+    /**
+     * Counts one more activation in progress on the calling thread, for providers that were not
+     * validated. The caller decrements the returned counter when the activation ends.
+     *
+     * @param implType The type being activated (for the error message).
+     * @return The calling thread's depth counter.
+     * @throws IllegalStateException if activations are nested more than {@link #MAX_DEPTH} deep.
+     */
+    static int[] enterGuarded(Class<?> implType) {
+        int[] depth = DEPTH.get();
+        if (depth[0] >= MAX_DEPTH) {
+            throw new IllegalStateException("Circular dependency detected: activating " + implType.getName()
+                    + " nested more than " + MAX_DEPTH + " levels deep (through a factory or createInstance?)");
+        }
+        depth[0]++;
+        return depth;
+    }
+
+    // Builds the cached plan for implType: choose the constructor once and bind each parameter
+    // to the descriptor that would satisfy it, so activation never repeats the discovery work.
+    static <T> ConstructorPlan<T> compilePlan(Class<T> implType, ServiceIndex index) {
+        return compilePlan(implType, null, index);
+    }
+
+    // As above, for the generic implType closed as closedType: its type variables are replaced by
+    // the closed type's arguments in every constructor parameter before it is bound.
+    static <T> ConstructorPlan<T> compilePlan(Class<T> implType, ParameterizedType closedType, ServiceIndex index) {
         if (implType.isInterface() || Modifier.isAbstract(implType.getModifiers())) {
             throw new IllegalStateException("Cannot instantiate abstract/interface: " + implType);
         }
 
-        Deque<Class<?>> stack = (externalStack != null) ? externalStack : new ArrayDeque<>();
-        if (stack.contains(implType)) {
-            throw new IllegalStateException("Circular dependency detected: " + renderCycle(stack, implType));
+        Map<TypeVariable<?>, Type> typeArguments = typeArguments(implType, closedType);
+        Constructor<T> ctor = chooseConstructor(implType, typeArguments, index);
+
+        Type[] params = parameterTypes(ctor, typeArguments);
+        Object[] keys = parameterKeys(ctor, params.length);
+        Binding[] bindings = new Binding[params.length];
+        for (int i = 0; i < params.length; i++) {
+            bindings[i] = bind(params[i], keys[i], index);
         }
-        stack.push(implType);
-        try {
-            Constructor<T> ctor = chooseConstructor(implType, resolver);
-            Object[] args = Arrays.stream(ctor.getParameterTypes())
-                    .map(resolver::getService)
-                    .toArray();
-            try {
-                ctor.setAccessible(true);
-                return ctor.newInstance(args);
-            } catch (ReflectiveOperationException e) {
-                throw new RuntimeException("Failed to construct " + implType + " via " + ctor, e);
+        return new ConstructorPlan<>(ctor, bindings, index.instanceFactory(ctor));
+    }
+
+    // Lazy<X> and Supplier<X> bind to X's registration (a Supplier only if X is registered);
+    // List<X> and X[] bind to every registration of X unless the parameter type itself is registered;
+    // anything else binds to the registration of its type. Parameterized types prefer registrations of
+    // exactly that type and fall back to their raw class. With a key, only registrations made under
+    // that key are considered.
+    private static Binding bind(Type param, Object key, ServiceIndex index) {
+        Type lazy = typeArgument(param, Lazy.class);
+        if (lazy != null) return new Binding.LazyOf(lookup(lazy, key, index));
+
+        ServiceDescriptor<?> supplied = suppliedDescriptor(param, key, index);
+        if (supplied != null) return new Binding.SupplierOf(supplied);
+
+        ServiceDescriptor<?> d = lookup(param, key, index);
+        if (d != null) return new Binding.Direct(d);
+
+        Type element = elementType(param);
+        if (element != null) {
+            ServiceDescriptor<?>[] all = key == null ? index.findAllByType(element) : index.findAllKeyed(rawType(element), key);
+            return new Binding.AllOf(all, rawType(param).isArray() ? rawType(element) : null);
+        }
+        return Binding.NONE;
+    }
+
+    private static boolean canBind(Type param, Object key, ServiceIndex index) {
+        Type lazy = typeArgument(param, Lazy.class);
+        if (lazy != null) return lookup(lazy, key, index) != null; // nothing to defer to otherwise
+        if (suppliedDescriptor(param, key, index) != null || elementType(param) != null) return true;
+        return lookup(param, key, index) != null || (key == null && index.canResolve(rawType(param)));
+    }
+
+    // The element type of a List<X> or X[] parameter (always satisfiable, possibly empty), else null.
+    private static Type elementType(Type param) {
+        Type listed = typeArgument(param, List.class);
+        if (listed != null) return listed;
+        Type component = param instanceof GenericArrayType ? ((GenericArrayType) param).getGenericComponentType()
+                : param instanceof Class ? ((Class<?>) param).getComponentType() : null;
+        if (component instanceof Class && ((Class<?>) component).isPrimitive()) return null;
+        return component instanceof Class || component instanceof ParameterizedType ? component : null;
+    }
+
+    private static ServiceDescriptor<?> suppliedDescriptor(Type param, Object key, ServiceIndex index) {
+        Type supplied = typeArgument(param, Supplier.class);
+        return supplied != null ? lookup(supplied, key, index) : null;
+    }
+
+    private static ServiceDescriptor<?> lookup(Type type, Object key, ServiceIndex index) {
+        return key == null ? index.findByType(type) : index.findKeyed(rawType(type), key);
+    }
+
+    // The @FromKeyedServices key of each parameter, or null. Annotations may be missing for synthetic
+    // leading parameters (e.g. the outer instance of an inner class), so they are aligned to the end.
+    private static Object[] parameterKeys(Constructor<?> c, int count) {
+        Annotation[][] annotations = c.getParameterAnnotations();
+        Object[] keys = new Object[count];
+        int offset = count - annotations.length;
+        for (int i = 0; i < annotations.length; i++) {
+            for (Annotation a : annotations[i]) {
+                if (a instanceof FromKeyedServices) keys[i + offset] = ((FromKeyedServices) a).value();
             }
-        } finally {
-            stack.pop();
         }
+        return keys;
+    }
+
+    // The type argument of wrapper<X> (a class or parameterized type), or null if param is not a
+    // parameterized wrapper.
+    private static Type typeArgument(Type param, Class<?> wrapper) {
+        if (!(param instanceof ParameterizedType)) return null;
+        ParameterizedType p = (ParameterizedType) param;
+        if (p.getRawType() != wrapper) return null;
+        Type arg = p.getActualTypeArguments()[0];
+        return arg instanceof Class || arg instanceof ParameterizedType ? arg : null;
+    }
+
+    private static Class<?> rawType(Type type) {
+        return Types.rawType(type);
+    }
+
+    // Generic parameter types, unless the compiler added synthetic parameters (e.g. inner classes).
+    private static Type[] parameterTypes(Constructor<?> c, Map<TypeVariable<?>, Type> typeArguments) {
+        Type[] types = parameterTypes(c);
+        if (typeArguments.isEmpty()) return types;
+        for (int i = 0; i < types.length; i++) types[i] = Types.substitute(types[i], typeArguments);
+        return types;
+    }
+
+    private static Map<TypeVariable<?>, Type> typeArguments(Class<?> implType, ParameterizedType closedType) {
+        if (closedType == null) return Collections.emptyMap();
+        Map<TypeVariable<?>, Type> arguments = new HashMap<>();
+        TypeVariable<?>[] vars = implType.getTypeParameters();
+        Type[] args = closedType.getActualTypeArguments();
+        for (int i = 0; i < vars.length; i++) arguments.put(vars[i], args[i]);
+        return arguments;
+    }
+
+    private static Type[] parameterTypes(Constructor<?> c) {
+        Type[] generic = c.getGenericParameterTypes();
+        return generic.length == c.getParameterCount() ? generic : c.getParameterTypes();
     }
 
     // Strategy: pick the "greediest" (most parameters) constructor
     // for which ALL parameter types are registered (no construction during probing).
-    private static <T> Constructor<T> chooseConstructor(Class<T> implType, Resolver resolver) {
+    private static <T> Constructor<T> chooseConstructor(Class<T> implType, Map<TypeVariable<?>, Type> typeArguments,
+                                                        ServiceIndex index) {
         @SuppressWarnings("unchecked")
         Constructor<T>[] ctors = (Constructor<T>[]) implType.getDeclaredConstructors();
 
         List<Constructor<T>> candidates = new ArrayList<>();
         for (Constructor<T> c : ctors) {
-            Class<?>[] params = c.getParameterTypes();
+            Type[] params = parameterTypes(c, typeArguments);
+            Object[] keys = parameterKeys(c, params.length);
             boolean allResolvable = true;
-            for (Class<?> p : params) {
-                if (!resolver.canResolve(p)) { // <-- no side effects
+            for (int i = 0; i < params.length; i++) {
+                if (!canBind(params[i], keys[i], index)) { // <-- no side effects
                     allResolvable = false;
                     break;
                 }
@@ -69,11 +238,12 @@ final class ConstructorFactory {
             msg.append("Constructors and missing parameters:\n");
 
             for (Constructor<T> c : ctors) {
-                Class<?>[] ps = c.getParameterTypes();
+                Type[] ps = parameterTypes(c, typeArguments);
+                Object[] keys = parameterKeys(c, ps.length);
                 List<String> missing = new ArrayList<>();
-                for (Class<?> p : ps) {
-                    if (!resolver.canResolve(p)) {
-                        missing.add(simple(p));
+                for (int i = 0; i < ps.length; i++) {
+                    if (!canBind(ps[i], keys[i], index)) {
+                        missing.add(keys[i] != null ? simple(ps[i]) + " [key: " + keys[i] + "]" : simple(ps[i]));
                     }
                 }
                 msg.append("  - ")
@@ -90,19 +260,22 @@ final class ConstructorFactory {
         }
     }
 
-    private static String renderCycle(Deque<Class<?>> stack, Class<?> repeat) {
-        List<String> chain = new ArrayList<>();
-        for (Class<?> c : stack) chain.add(c.getSimpleName());
-        chain.add(repeat.getSimpleName());
-        Collections.reverse(chain);
-        return String.join(" -> ", chain);
-    }
-
-    private static String simple(Class<?> c) {
+    private static String simple(Type t) {
+        if (t instanceof ParameterizedType) {
+            StringBuilder sb = new StringBuilder(simple(rawType(t))).append("<");
+            Type[] args = ((ParameterizedType) t).getActualTypeArguments();
+            for (int i = 0; i < args.length; i++) {
+                if (i > 0) sb.append(", ");
+                sb.append(simple(args[i]));
+            }
+            return sb.append(">").toString();
+        }
+        if (!(t instanceof Class)) return t.getTypeName();
+        Class<?> c = (Class<?>) t;
         return c.getSimpleName().isEmpty() ? c.getName() : c.getSimpleName();
     }
 
-    private static String signature(Class<?> owner, Class<?>[] params) {
+    private static String signature(Class<?> owner, Type[] params) {
         StringBuilder sb = new StringBuilder();
         sb.append(owner.getSimpleName()).append("(");
         for (int i = 0; i < params.length; i++) {
@@ -0,0 +1,54 @@
+package org.oldskooler.inject4j;
+
+import java.lang.reflect.Constructor;
+
+/**
+ * A precomputed recipe for constructing an implementation type.
+ * <p>
+ * A plan captures the constructor chosen by {@link ConstructorFactory} together with the
+ * {@link Binding} of each of its parameters and the {@link InstanceFactory} that invokes it. Plans are built
+ * once per implementation type and cached in the provider's {@link ServiceIndex}, so activating a type
+ * again performs no constructor discovery, no descriptor lookup and no reflection beyond the final
+ * constructor call.
+ * </p>
+ *
+ * @param <T> The implementation type.
+ * @implNote This class is package-private and not intended for external use.
+ */
+final class ConstructorPlan<T> {
+    /** The chosen ("greediest" satisfiable) constructor, already made accessible. */
+    final Constructor<T> constructor;
+    /**
+     * Binding of each constructor parameter; {@link Binding#NONE} where the parameter type is only
+     * self-bindable and therefore resolves to {@code null}.
+     */
+    final Binding[] bindings;
+    /** Invokes {@link #constructor} according to the provider's {@link ActivationStrategy}. */
+    final InstanceFactory<T> factory;
+    /**
+     * Whether the graph reachable from this plan is known to be free of constructor cycles, so
+     * activation needs no cycle bookkeeping ({@link ServiceIndex#checkAcyclic}).
+     */
+    volatile boolean acyclic;
+
+    ConstructorPlan(Constructor<T> constructor, Binding[] bindings, InstanceFactory<T> factory) {
+        this.constructor = constructor;
+        this.bindings = bindings;
+        this.factory = factory;
+    }
+
+    /**
+     * Resolves every bound parameter through {@code resolver} and invokes the constructor.
+     *
+     * @param resolver The provider or scope supplying dependencies (decides lifetimes).
+     * @return A new instance.
+     */
+    T activate(Resolver resolver) {
+        Binding[] b = bindings;
+        Object[] args = new Object[b.length];
+        for (int i = 0; i < b.length; i++) {
+            args[i] = b[i].resolve(resolver);
+        }
+        return factory.create(args);
+    }
+}
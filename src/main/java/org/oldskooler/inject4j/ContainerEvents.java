@@ -0,0 +1,106 @@
+package org.oldskooler.inject4j;
+
+/**
+ * Emits JDK Flight Recorder events for container activity: constructor activations, {@code createInstance}
+ * calls, scope creation and scope disposal.
+ * <p>
+ * The events themselves live in {@link JfrEvents}, which is only loaded when the running JDK ships
+ * {@code jdk.jfr} (8u262 and later, 11 and later); on other JDKs every method here is a no-op. Events
+ * are enabled, disabled and thresholded through standard JFR settings, under the names
+ * {@code org.oldskooler.inject4j.Activation}, {@code org.oldskooler.inject4j.CreateInstance},
+ * {@code org.oldskooler.inject4j.ScopeCreated} and {@code org.oldskooler.inject4j.ScopeClose}.
+ * </p>
+ *
+ * <p>
+ * Duration events are opened with a {@code begin} method and closed with the matching {@code end}
+ * method in a {@code finally} block. {@code begin} returns {@code null} unless a recording wants the
+ * event, so when nothing is recording the cost is an enabled check on the event's cached type and
+ * no event object is allocated.
+ * </p>
+ *
+ * @implNote This class is package-private and not intended for external use.
+ */
+final class ContainerEvents {
+    /** Whether {@code jdk.jfr} is present; without it, {@link JfrEvents} must never be loaded. */
+    private static final boolean AVAILABLE = isAvailable();
+
+    private ContainerEvents() {}
+
+    /**
+     * Opens an activation event.
+     *
+     * @return The event to pass to {@link #endActivation}, or {@code null} if it is not recorded.
+     */
+    static Object beginActivation() {
+        return AVAILABLE ? JfrEvents.beginActivation() : null;
+    }
+
+    /**
+     * Commits an activation event opened by {@link #beginActivation()}.
+     *
+     * @param event              The event, or {@code null} (ignored).
+     * @param serviceType        The requested service type.
+     * @param implementationType The class whose constructor ran.
+     * @param lifetime           The registration's lifetime, or {@code null} for unregistered types.
+     */
+    static void endActivation(Object event, Class<?> serviceType, Class<?> implementationType, ServiceLifetime lifetime) {
+        if (event != null) JfrEvents.endActivation(event, serviceType, implementationType, lifetime);
+    }
+
+    /**
+     * Opens a {@code createInstance} event.
+     *
+     * @return The event to pass to {@link #endCreateInstance}, or {@code null} if it is not recorded.
+     */
+    static Object beginCreateInstance() {
+        return AVAILABLE ? JfrEvents.beginCreateInstance() : null;
+    }
+
+    /**
+     * Commits a {@code createInstance} event opened by {@link #beginCreateInstance()}.
+     *
+     * @param event The event, or {@code null} (ignored).
+     * @param type  The type that was instantiated.
+     */
+    static void endCreateInstance(Object event, Class<?> type) {
+        if (event != null) JfrEvents.endCreateInstance(event, type);
+    }
+
+    /**
+     * Records the creation of a scope.
+     *
+     * @param scope The new scope.
+     */
+    static void scopeCreated(Scope scope) {
+        if (AVAILABLE) JfrEvents.scopeCreated(scope);
+    }
+
+    /**
+     * Opens a scope disposal event.
+     *
+     * @return The event to pass to {@link #endScopeClose}, or {@code null} if it is not recorded.
+     */
+    static Object beginScopeClose() {
+        return AVAILABLE ? JfrEvents.beginScopeClose() : null;
+    }
+
+    /**
+     * Commits a scope disposal event opened by {@link #beginScopeClose()}.
+     *
+     * @param event    The event, or {@code null} (ignored).
+     * @param scope    The scope that was closed.
+     * @param disposed The number of scoped instances that were closed.
+     */
+    static void endScopeClose(Object event, Scope scope, int disposed) {
+        if (event != null) JfrEvents.endScopeClose(event, scope, disposed);
+    }
+
+    private static boolean isAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event", false, ContainerEvents.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package org.oldskooler.inject4j;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Injects the service registered under a key into a constructor parameter.
+ * The parameter counterpart of {@link Resolver#getKeyedService(Class, Object)}, modeled after .NET's
+ * {@code [FromKeyedServices]}.
+ *
+ * <pre>
+ * public ReportJob(&#64;FromKeyedServices("reporting") DataSource dataSource) { ... }
+ * </pre>
+ *
+ * <p>The key also applies to {@link Lazy}, {@link java.util.function.Supplier}, {@code List} and array
+ * parameters, which then wrap or collect the keyed registrations of their element type. The parameter
+ * is bound to the keyed registration once, when the constructor is first planned.</p>
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.PARAMETER)
+public @interface FromKeyedServices {
+    /**
+     * The key the service was registered under.
+     *
+     * @return The key.
+     */
+    String value();
+}
@@ -0,0 +1,111 @@
+package org.oldskooler.inject4j;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * Invokes a single, already-chosen constructor with a fully bound argument array.
+ * <p>
+ * Instances are created once per constructor by {@link #forConstructor(Constructor, ActivationStrategy)}
+ * and cached by the provider, so the cost of preparing the call (access checks, method handle
+ * adaptation) is paid once.
+ * </p>
+ *
+ * @param <T> The type being constructed.
+ * @implNote This interface is package-private and not intended for external use.
+ */
+interface InstanceFactory<T> {
+
+    /**
+     * Invokes the constructor.
+     *
+     * @param args The constructor arguments, one per parameter.
+     * @return A new instance.
+     * @throws RuntimeException if the constructor cannot be invoked or throws.
+     */
+    T create(Object[] args);
+
+    /**
+     * Creates a factory for {@code ctor} using the given strategy.
+     *
+     * @param <T>      The type being constructed.
+     * @param ctor     The constructor to invoke.
+     * @param strategy How to invoke it.
+     * @return A reusable factory.
+     */
+    static <T> InstanceFactory<T> forConstructor(Constructor<T> ctor, ActivationStrategy strategy) {
+        ctor.setAccessible(true);
+        switch (strategy) {
+            case LAMBDA_METAFACTORY: {
+                InstanceFactory<T> generated = LambdaInstanceFactory.tryCreate(ctor);
+                return generated != null ? generated : new MethodHandleFactory<>(ctor);
+            }
+            case METHOD_HANDLE:
+                return new MethodHandleFactory<>(ctor);
+            case REFLECTION:
+            default:
+                return new ReflectionFactory<>(ctor);
+        }
+    }
+
+    /** Invokes the constructor through {@link Constructor#newInstance(Object...)}. */
+    final class ReflectionFactory<T> implements InstanceFactory<T> {
+        private final Constructor<T> ctor;
+
+        ReflectionFactory(Constructor<T> ctor) {
+            this.ctor = ctor;
+        }
+
+        @Override
+        public T create(Object[] args) {
+            try {
+                return ctor.newInstance(args);
+            } catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
+                throw new RuntimeException("Failed to construct " + ctor.getDeclaringClass().getName() + " via " + ctor, e);
+            }
+        }
+    }
+
+    /**
+     * Invokes the constructor through a {@link MethodHandle} adapted once to {@code (Object[])Object},
+     * so each call is a single {@code invokeExact} without reflective access checks.
+     * <p>
+     * The handle lives in an instance field, not a {@code static final} or a constant call site, so the
+     * JIT treats it as an ordinary receiver: the invocation is not constant-folded and the constructor
+     * is not inlined into the caller.
+     * </p>
+     */
+    final class MethodHandleFactory<T> implements InstanceFactory<T> {
+        private static final MethodType SPREAD_TYPE = MethodType.methodType(Object.class, Object[].class);
+
+        private final Constructor<T> ctor;
+        private final MethodHandle handle;
+
+        MethodHandleFactory(Constructor<T> ctor) {
+            this.ctor = ctor;
+            try {
+                this.handle = MethodHandles.lookup()
+                        .unreflectConstructor(ctor)
+                        .asSpreader(Object[].class, ctor.getParameterCount())
+                        .asType(SPREAD_TYPE);
+            } catch (IllegalAccessException e) {
+                throw new RuntimeException("Cannot create method handle for " + ctor, e);
+            }
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T create(Object[] args) {
+            try {
+                return (T) (Object) handle.invokeExact(args);
+            } catch (Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new RuntimeException("Failed to construct " + ctor.getDeclaringClass().getName() + " via " + ctor, t);
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package org.oldskooler.inject4j;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Holds the single instance of one registration for one provider (SINGLETON) or one scope (SCOPED).
+ * <p>
+ * Once the instance exists, reading it is a single volatile load ({@link #peek()}). Creation is
+ * claimed by one thread through a compare-and-set; concurrent requesters block on that creation's
+ * latch instead of building their own copy, so every caller observes the same instance and the
+ * (possibly expensive) constructor runs exactly once. No lock is shared between holders, and none is
+ * held while the instance is built: building one service never blocks resolution of unrelated
+ * services, and its dependencies may be created through other holders of the same cache.
+ * </p>
+ *
+ * <p>
+ * If creation fails, the claim is released and waiting threads retry the creation themselves. If
+ * creation produces {@code null}, nothing is cached. A thread that re-enters the holder while it is
+ * creating the instance has hit a dependency cycle and gets an {@link IllegalStateException}.
+ * </p>
+ *
+ * <p>
+ * A SINGLETON holder can also {@linkplain #share(Map) share} its instance through a map keyed by
+ * service type, for the deprecated {@link Scope#Scope(java.util.List, Map)} constructor.
+ * </p>
+ *
+ * @param <T> The service type.
+ * @implNote This class is package-private and not intended for external use.
+ */
+final class InstanceHolder<T> {
+    /** The registration this holder belongs to (for diagnostics). */
+    private final ServiceDescriptor<T> descriptor;
+    /** The created instance, or {@code null} until creation succeeds. */
+    private volatile T value;
+    /** The in-flight creation, or {@code null} if nobody is creating the instance. */
+    private final AtomicReference<Creation> creation = new AtomicReference<>();
+    /** The singleton map of a deprecated standalone scope, or {@code null}; only read when creating. */
+    private volatile Map<Class<?>, Object> shared;
+
+    InstanceHolder(ServiceDescriptor<T> descriptor) {
+        this.descriptor = descriptor;
+    }
+
+    /**
+     * Returns the instance if it has been created.
+     *
+     * @return The instance, or {@code null} if not created yet.
+     */
+    T peek() {
+        return value;
+    }
+
+    /**
+     * Makes creation consult {@code cache} first and publish the created instance into it, keyed by the
+     * service type, as the singleton cache of the original {@code Scope} did.
+     *
+     * @param cache The map shared with other providers and scopes.
+     */
+    void share(Map<Class<?>, Object> cache) {
+        shared = cache;
+    }
+
+    /**
+     * Returns the instance, creating it with {@code factory} if no other thread has done so.
+     *
+     * @param resolver The resolver passed to {@code factory}.
+     * @param factory  Creates the instance; invoked at most once per successful creation.
+     * @return The instance.
+     */
+    T getOrCreate(Resolver resolver, Function<Resolver, T> factory) {
+        boolean interrupted = false;
+        try {
+            for (;;) {
+                T v = value;
+                if (v != null) return v;
+
+                Creation current = creation.get();
+                if (current == null) {
+                    Creation mine = new Creation(Thread.currentThread());
+                    if (!creation.compareAndSet(null, mine)) continue;
+                    try {
+                        Map<Class<?>, Object> cache = shared;
+                        v = cache == null ? factory.apply(resolver) : createShared(cache, resolver, factory);
+                        value = v;
+                        return v;
+                    } finally {
+                        creation.set(null);
+                        mine.done.countDown();
+                    }
+                }
+
+                if (current.owner == Thread.currentThread()) {
+                    throw new IllegalStateException("Circular dependency detected: " + descriptor.typeName()
+                            + " was requested while it was being created");
+                }
+                try {
+                    current.done.await();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private T createShared(Map<Class<?>, Object> cache, Resolver resolver, Function<Resolver, T> factory) {
+        T v = (T) cache.get(descriptor.serviceType);
+        if (v != null) return v;
+        v = factory.apply(resolver);
+        if (v == null) return null;
+        Object prior = cache.putIfAbsent(descriptor.serviceType, v);
+        return prior != null ? (T) prior : v;
+    }
+
+    /** An in-flight creation: the creating thread and a latch released when it finishes. */
+    private static final class Creation {
+        final Thread owner;
+        final CountDownLatch done = new CountDownLatch(1);
+
+        Creation(Thread owner) {
+            this.owner = owner;
+        }
+    }
+}
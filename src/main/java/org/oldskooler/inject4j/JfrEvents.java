@@ -0,0 +1,158 @@
+package org.oldskooler.inject4j;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * The JDK Flight Recorder events behind {@link ContainerEvents}. Only loaded when {@code jdk.jfr} is
+ * present.
+ * <p>
+ * Defaults keep an always-on recording cheap: activations, {@code createInstance} calls and scope
+ * disposals are recorded when they take at least 1 ms, without stack traces for activations; scope
+ * creation is disabled. All of it can be changed in a {@code .jfc} settings file or on the command line
+ * (for example {@code org.oldskooler.inject4j.Activation#threshold=0 ms} on JDK 17 and later).
+ * </p>
+ *
+ * <p>
+ * Every method that opens or records an event first asks the event's cached {@link EventType} whether
+ * a running recording enables it, so nothing is allocated while the event is not recorded.
+ * </p>
+ *
+ * @implNote This class is package-private and not intended for external use.
+ */
+final class JfrEvents {
+    private static final String CATEGORY = "Inject4j";
+
+    /** Number of recorded activations in progress on each thread: the depth of the next one. */
+    private static final ThreadLocal<int[]> DEPTH = ThreadLocal.withInitial(() -> new int[1]);
+
+    private static final EventType ACTIVATION = EventType.getEventType(Activation.class);
+    private static final EventType CREATE_INSTANCE = EventType.getEventType(CreateInstance.class);
+    private static final EventType SCOPE_CREATED = EventType.getEventType(ScopeCreated.class);
+    private static final EventType SCOPE_CLOSE = EventType.getEventType(ScopeClose.class);
+
+    private JfrEvents() {}
+
+    static Object beginActivation() {
+        if (!ACTIVATION.isEnabled()) return null;
+        Activation event = new Activation();
+        event.depth = DEPTH.get()[0]++;
+        event.begin();
+        return event;
+    }
+
+    static void endActivation(Object e, Class<?> serviceType, Class<?> implementationType, ServiceLifetime lifetime) {
+        Activation event = (Activation) e;
+        event.end();
+        DEPTH.get()[0]--;
+        if (!event.shouldCommit()) return;
+        event.serviceType = serviceType;
+        event.implementationType = implementationType;
+        event.lifetime = lifetime != null ? lifetime.name() : null;
+        event.commit();
+    }
+
+    static Object beginCreateInstance() {
+        if (!CREATE_INSTANCE.isEnabled()) return null;
+        CreateInstance event = new CreateInstance();
+        event.depth = DEPTH.get()[0]++;
+        event.begin();
+        return event;
+    }
+
+    static void endCreateInstance(Object e, Class<?> type) {
+        CreateInstance event = (CreateInstance) e;
+        event.end();
+        DEPTH.get()[0]--;
+        if (!event.shouldCommit()) return;
+        event.type = type;
+        event.commit();
+    }
+
+    static void scopeCreated(Scope scope) {
+        if (!SCOPE_CREATED.isEnabled()) return;
+        ScopeCreated event = new ScopeCreated();
+        event.scopeId = System.identityHashCode(scope);
+        event.commit();
+    }
+
+    static Object beginScopeClose() {
+        if (!SCOPE_CLOSE.isEnabled()) return null;
+        ScopeClose event = new ScopeClose();
+        event.begin();
+        return event;
+    }
+
+    static void endScopeClose(Object e, Scope scope, int disposed) {
+        ScopeClose event = (ScopeClose) e;
+        event.end();
+        if (!event.shouldCommit()) return;
+        event.scopeId = System.identityHashCode(scope);
+        event.disposed = disposed;
+        event.commit();
+    }
+
+    @Name("org.oldskooler.inject4j.Activation")
+    @Label("Service Activation")
+    @Description("A constructor invoked by the container to create a service, including its dependencies")
+    @Category(CATEGORY)
+    @Threshold("1 ms")
+    @StackTrace(false)
+    static final class Activation extends Event {
+        @Label("Service Type")
+        Class<?> serviceType;
+        @Label("Implementation Type")
+        Class<?> implementationType;
+        @Label("Lifetime")
+        @Description("Lifetime of the registration; missing for unregistered types")
+        String lifetime;
+        @Label("Depth")
+        @Description("Number of recorded activations this one is nested in (0 for a top-level request)")
+        int depth;
+    }
+
+    @Name("org.oldskooler.inject4j.CreateInstance")
+    @Label("Create Instance")
+    @Description("A createInstance call on a provider or scope, including the services it resolved")
+    @Category(CATEGORY)
+    @Threshold("1 ms")
+    @StackTrace(false)
+    static final class CreateInstance extends Event {
+        @Label("Type")
+        Class<?> type;
+        @Label("Depth")
+        @Description("Number of recorded activations this one is nested in (0 for a top-level request)")
+        int depth;
+    }
+
+    @Name("org.oldskooler.inject4j.ScopeCreated")
+    @Label("Scope Created")
+    @Category(CATEGORY)
+    @Enabled(false)
+    static final class ScopeCreated extends Event {
+        @Label("Scope Id")
+        @Description("Identity hash of the scope, to match it with its ScopeClose event")
+        int scopeId;
+    }
+
+    @Name("org.oldskooler.inject4j.ScopeClose")
+    @Label("Scope Close")
+    @Description("Disposal of a scope and of the AutoCloseable scoped instances it owns")
+    @Category(CATEGORY)
+    @Threshold("1 ms")
+    static final class ScopeClose extends Event {
+        @Label("Scope Id")
+        @Description("Identity hash of the scope, to match it with its ScopeCreated event")
+        int scopeId;
+        @Label("Disposed")
+        @Description("Number of scoped instances that were closed")
+        int disposed;
+    }
+}
@@ -0,0 +1,127 @@
+package org.oldskooler.inject4j;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Modifier;
+
+/**
+ * Spins a {@link LambdaMetafactory} class per constructor so that activation is a plain
+ * {@code new T(...)} behind an interface call, with no reflection or method handle invocation.
+ * <p>
+ * One fixed-arity functional interface exists per supported parameter count. The generated lambda
+ * casts each {@code Object} argument to the declared parameter type and invokes the constructor
+ * directly.
+ * </p>
+ *
+ * <p>
+ * The generated class is reached through an {@link InstanceFactory} adapter that unpacks the argument
+ * array. There is one adapter body per arity, shared by every constructor of that arity, so its call to
+ * the generated class is megamorphic as soon as a few services are activated this way and the JIT does
+ * not inline the constructor into it. What this strategy saves over
+ * {@link ActivationStrategy#METHOD_HANDLE} is the method handle invoker and the argument spreading,
+ * not the virtual call.
+ * </p>
+ *
+ * <p>Only constructors the generated class can legally link against are eligible:</p>
+ * <ul>
+ *   <li>the constructor and every enclosing class must be {@code public};</li>
+ *   <li>the implementation type must be visible from this library's class loader;</li>
+ *   <li>no parameter may be primitive, and there may be at most {@value #MAX_ARITY} parameters.</li>
+ * </ul>
+ * <p>For anything else {@link #tryCreate(Constructor)} returns {@code null} and the caller falls back
+ * to {@link ActivationStrategy#METHOD_HANDLE}.</p>
+ *
+ * @implNote This class is package-private and not intended for external use.
+ */
+final class LambdaInstanceFactory {
+    /** Largest constructor arity with a dedicated functional interface. */
+    static final int MAX_ARITY = 6;
+
+    private static final Class<?>[] ARITY_TYPES = {
+            Arity0.class, Arity1.class, Arity2.class, Arity3.class, Arity4.class, Arity5.class, Arity6.class
+    };
+
+    private LambdaInstanceFactory() {}
+
+    /**
+     * Spins a factory for {@code ctor}, or returns {@code null} if the constructor is not eligible.
+     *
+     * @param <T>  The type being constructed.
+     * @param ctor The constructor to invoke.
+     * @return A generated factory, or {@code null} to request a fallback strategy.
+     */
+    static <T> InstanceFactory<T> tryCreate(Constructor<T> ctor) {
+        if (!isLinkable(ctor)) return null;
+
+        Class<?>[] params = ctor.getParameterTypes();
+        Class<?> arityType = ARITY_TYPES[params.length];
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            MethodHandle target = lookup.unreflectConstructor(ctor);
+            MethodType erased = MethodType.genericMethodType(params.length);
+            CallSite site = LambdaMetafactory.metafactory(
+                    lookup,
+                    "create",
+                    MethodType.methodType(arityType),
+                    erased,
+                    target,
+                    MethodType.methodType(ctor.getDeclaringClass(), params));
+            return adapt(ctor, site.getTarget().invoke());
+        } catch (Throwable t) {
+            return null; // not linkable on this JVM; fall back to method handles
+        }
+    }
+
+    private static boolean isLinkable(Constructor<?> ctor) {
+        if (ctor.getParameterCount() > MAX_ARITY) return false;
+        if (!Modifier.isPublic(ctor.getModifiers())) return false;
+        for (Class<?> c = ctor.getDeclaringClass(); c != null; c = c.getEnclosingClass()) {
+            if (!Modifier.isPublic(c.getModifiers())) return false;
+        }
+        for (Class<?> p : ctor.getParameterTypes()) {
+            if (p.isPrimitive()) return false;
+        }
+        Class<?> type = ctor.getDeclaringClass();
+        try {
+            return Class.forName(type.getName(), false, LambdaInstanceFactory.class.getClassLoader()) == type;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> InstanceFactory<T> adapt(Constructor<T> ctor, Object lambda) {
+        final InstanceFactory<Object> raw;
+        switch (ctor.getParameterCount()) {
+            case 0: { Arity0 f = (Arity0) lambda; raw = a -> f.create(); break; }
+            case 1: { Arity1 f = (Arity1) lambda; raw = a -> f.create(a[0]); break; }
+            case 2: { Arity2 f = (Arity2) lambda; raw = a -> f.create(a[0], a[1]); break; }
+            case 3: { Arity3 f = (Arity3) lambda; raw = a -> f.create(a[0], a[1], a[2]); break; }
+            case 4: { Arity4 f = (Arity4) lambda; raw = a -> f.create(a[0], a[1], a[2], a[3]); break; }
+            case 5: { Arity5 f = (Arity5) lambda; raw = a -> f.create(a[0], a[1], a[2], a[3], a[4]); break; }
+            case 6: { Arity6 f = (Arity6) lambda; raw = a -> f.create(a[0], a[1], a[2], a[3], a[4], a[5]); break; }
+            default: throw new IllegalArgumentException("Unsupported arity: " + ctor);
+        }
+        return args -> {
+            try {
+                return (T) raw.create(args);
+            } catch (Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new RuntimeException("Failed to construct " + ctor.getDeclaringClass().getName() + " via " + ctor, t);
+            }
+        };
+    }
+
+    interface Arity0 { Object create(); }
+    interface Arity1 { Object create(Object a0); }
+    interface Arity2 { Object create(Object a0, Object a1); }
+    interface Arity3 { Object create(Object a0, Object a1, Object a2); }
+    interface Arity4 { Object create(Object a0, Object a1, Object a2, Object a3); }
+    interface Arity5 { Object create(Object a0, Object a1, Object a2, Object a3, Object a4); }
+    interface Arity6 { Object create(Object a0, Object a1, Object a2, Object a3, Object a4, Object a5); }
+}
@@ -0,0 +1,75 @@
+package org.oldskooler.inject4j;
+
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * A value that is created on first access.
+ * <p>
+ * Modeled after .NET's {@code Lazy<T>}. Declaring a constructor parameter as {@code Lazy<Foo>} defers
+ * resolving {@code Foo} until {@link #get()} is first called, which keeps dependencies that are only
+ * needed on rare paths off the construction path. The container binds the parameter to {@code Foo}'s
+ * registration when the constructor's plan is built, so the first {@link #get()} resolves it directly,
+ * without a lookup, through the provider or scope that created the owning instance.
+ * </p>
+ *
+ * <pre>{@code
+ * public ReportService(Lazy<PdfRenderer> renderer) { this.renderer = renderer; }
+ * ...
+ * renderer.get().render(report); // PdfRenderer resolved here, once
+ * }</pre>
+ *
+ * <p>
+ * {@link #get()} is thread-safe: the value factory runs at most once, and every caller observes the
+ * same value (including {@code null}). Once the value exists, the factory, and with it any reference to
+ * the resolving scope, is released.
+ * </p>
+ *
+ * @param <T> The type of the value.
+ */
+public final class Lazy<T> {
+    /** Produces the value; {@code null} once the value has been created. */
+    private volatile Supplier<? extends T> valueFactory;
+    /** The value; published by the volatile write that clears {@link #valueFactory}. */
+    private T value;
+
+    /**
+     * Creates a lazy value.
+     *
+     * @param valueFactory Produces the value on first access.
+     */
+    public Lazy(Supplier<? extends T> valueFactory) {
+        this.valueFactory = Objects.requireNonNull(valueFactory, "valueFactory");
+    }
+
+    /**
+     * Returns the value, creating it on the first call.
+     *
+     * @return The value.
+     */
+    public T get() {
+        if (valueFactory == null) return value;
+        synchronized (this) {
+            Supplier<? extends T> f = valueFactory;
+            if (f != null) {
+                value = f.get();
+                valueFactory = null;
+            }
+            return value;
+        }
+    }
+
+    /**
+     * Indicates whether the value has been created.
+     *
+     * @return {@code true} once {@link #get()} has returned.
+     */
+    public boolean isValueCreated() {
+        return valueFactory == null;
+    }
+
+    @Override
+    public String toString() {
+        return isValueCreated() ? String.valueOf(value) : "Lazy[value not created]";
+    }
+}
@@ -0,0 +1,300 @@
+package org.oldskooler.inject4j;
+
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The tree of everything resolved for one request, returned by {@link Resolver#traceService(Class)}
+ * when the provider is built with
+ * {@linkplain ServiceProviderOptions#setResolutionTracing(boolean) resolution tracing}.
+ * <p>
+ * The root {@link Node} is the requested service; the dependencies of a node are the services
+ * resolved while it was created, in resolution order. Each node records the constructor chosen,
+ * the lifetime, whether the instance came from the singleton or scoped cache, and the nanoseconds
+ * spent on it including and excluding its dependencies. Render the tree with {@link #toText()} to
+ * read it, or with {@link #toJson()} to process it:
+ * </p>
+ * <pre>
+ * sm.Checkout (TRANSIENT) new Checkout(Cart, PriceService) 1843250 ns (self 9412 ns)
+ * +-- sm.Cart (SCOPED) cache hit 412 ns (self 412 ns)
+ * `-- sm.PriceService (TRANSIENT) new PriceService(RateTable) 1831077 ns (self 4806 ns)
+ *     `-- sm.RateTable (SINGLETON) new RateTable() 1826271 ns (self 1826271 ns)
+ * </pre>
+ *
+ * @param <T> The requested service type.
+ */
+public final class ResolutionTrace<T> {
+    /** How the instance of a {@link Node} was obtained. */
+    public enum Source {
+        /** A constructor of the implementation type was invoked. */
+        CONSTRUCTOR,
+        /** The registration's factory was invoked. */
+        FACTORY,
+        /** The registered instance was returned. */
+        INSTANCE,
+        /** The singleton or scoped instance already existed (or was created concurrently by another thread). */
+        CACHE
+    }
+
+    private final Class<T> requestedType;
+    private final T instance;
+    private final Node root;
+
+    ResolutionTrace(Class<T> requestedType, T instance, Node root) {
+        this.requestedType = requestedType;
+        this.instance = instance;
+        this.root = root;
+    }
+
+    /**
+     * Returns the type that was requested.
+     *
+     * @return The requested type.
+     */
+    public Class<T> getRequestedType() {
+        return requestedType;
+    }
+
+    /**
+     * Returns the resolved service, as {@code getService} would have.
+     *
+     * @return The instance, or {@code null} if no service could be resolved.
+     */
+    public T getInstance() {
+        return instance;
+    }
+
+    /**
+     * Returns the node of the requested service.
+     *
+     * @return The root node, or {@code null} if no registration was resolved.
+     */
+    public Node getRoot() {
+        return root;
+    }
+
+    /**
+     * Renders the tree as indented text, one node per line.
+     *
+     * @return The text.
+     */
+    public String toText() {
+        if (root == null) return requestedType.getName() + " (not resolved)\n";
+        StringBuilder sb = new StringBuilder();
+        root.appendText(sb, "", "");
+        return sb.toString();
+    }
+
+    /**
+     * Renders the tree as a JSON object with the requested type and the root node. Each node has the
+     * properties {@code service}, {@code key}, {@code lifetime}, {@code source}, {@code constructor},
+     * {@code cacheHit}, {@code nanos}, {@code selfNanos} and {@code dependencies}.
+     *
+     * @return The JSON text.
+     */
+    public String toJson() {
+        StringBuilder sb = new StringBuilder("{\"requested\":");
+        appendJsonString(sb, requestedType.getName());
+        sb.append(",\"root\":");
+        if (root == null) sb.append("null");
+        else root.appendJson(sb);
+        return sb.append('}').toString();
+    }
+
+    @Override
+    public String toString() {
+        return toText();
+    }
+
+    /** One resolved service in a {@link ResolutionTrace}. */
+    public static final class Node {
+        private final Class<?> serviceType;
+        private final String typeName;
+        private final Object key;
+        private final ServiceLifetime lifetime;
+        final List<Node> dependencies = new ArrayList<>();
+        Source source = Source.CACHE;
+        Constructor<?> constructor;
+        /** The start time while the node is open, its duration once closed. */
+        long nanos;
+
+        Node(Class<?> serviceType, String typeName, Object key, ServiceLifetime lifetime) {
+            this.serviceType = serviceType;
+            this.typeName = typeName;
+            this.key = key;
+            this.lifetime = lifetime;
+        }
+
+        /**
+         * Returns the registered service class.
+         *
+         * @return The service type.
+         */
+        public Class<?> getServiceType() {
+            return serviceType;
+        }
+
+        /**
+         * Returns the full name of the registered service type, including type arguments for generic
+         * registrations.
+         *
+         * @return The type name.
+         */
+        public String getTypeName() {
+            return typeName;
+        }
+
+        /**
+         * Returns the key of a keyed registration.
+         *
+         * @return The key, or {@code null} if the registration is not keyed.
+         */
+        public Object getKey() {
+            return key;
+        }
+
+        /**
+         * Returns the lifetime of the registration.
+         *
+         * @return The lifetime.
+         */
+        public ServiceLifetime getLifetime() {
+            return lifetime;
+        }
+
+        /**
+         * Returns how the instance was obtained.
+         *
+         * @return The source.
+         */
+        public Source getSource() {
+            return source;
+        }
+
+        /**
+         * Indicates whether the instance came from the singleton or scoped cache.
+         *
+         * @return {@code true} if nothing was created for this node.
+         */
+        public boolean isCacheHit() {
+            return source == Source.CACHE;
+        }
+
+        /**
+         * Returns the constructor that was invoked.
+         *
+         * @return The constructor, or {@code null} unless the source is {@link Source#CONSTRUCTOR}.
+         */
+        public Constructor<?> getConstructor() {
+            return constructor;
+        }
+
+        /**
+         * Returns the time spent resolving this service, including its dependencies.
+         *
+         * @return The duration in nanoseconds.
+         */
+        public long getNanos() {
+            return nanos;
+        }
+
+        /**
+         * Returns the time spent resolving this service, excluding its dependencies.
+         *
+         * @return The duration in nanoseconds.
+         */
+        public long getSelfNanos() {
+            long self = nanos;
+            for (Node d : dependencies) self -= d.nanos;
+            return Math.max(self, 0);
+        }
+
+        /**
+         * Returns the services resolved while this one was created, in resolution order.
+         *
+         * @return An unmodifiable list; empty for cache hits and for services without dependencies.
+         */
+        public List<Node> getDependencies() {
+            return Collections.unmodifiableList(dependencies);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(typeName);
+            if (key != null) sb.append(" [key: ").append(key).append(']');
+            sb.append(" (").append(lifetime).append(") ");
+            switch (source) {
+                case CONSTRUCTOR: sb.append("new ").append(signature(constructor, false)); break;
+                case FACTORY:     sb.append("factory"); break;
+                case INSTANCE:    sb.append("instance"); break;
+                default:          sb.append("cache hit"); break;
+            }
+            return sb.append(' ').append(nanos).append(" ns (self ").append(getSelfNanos()).append(" ns)").toString();
+        }
+
+        private void appendText(StringBuilder sb, String prefix, String childPrefix) {
+            sb.append(prefix).append(this).append('\n');
+            for (int i = 0; i < dependencies.size(); i++) {
+                boolean last = i == dependencies.size() - 1;
+                dependencies.get(i).appendText(sb, childPrefix + (last ? "`-- " : "+-- "),
+                        childPrefix + (last ? "    " : "|   "));
+            }
+        }
+
+        private void appendJson(StringBuilder sb) {
+            sb.append("{\"service\":");
+            appendJsonString(sb, typeName);
+            sb.append(",\"key\":");
+            if (key == null) sb.append("null");
+            else appendJsonString(sb, String.valueOf(key));
+            sb.append(",\"lifetime\":\"").append(lifetime).append('"');
+            sb.append(",\"source\":\"").append(source).append('"');
+            sb.append(",\"constructor\":");
+            if (constructor == null) sb.append("null");
+            else appendJsonString(sb, signature(constructor, true));
+            sb.append(",\"cacheHit\":").append(isCacheHit());
+            sb.append(",\"nanos\":").append(nanos);
+            sb.append(",\"selfNanos\":").append(getSelfNanos());
+            sb.append(",\"dependencies\":[");
+            for (int i = 0; i < dependencies.size(); i++) {
+                if (i > 0) sb.append(',');
+                dependencies.get(i).appendJson(sb);
+            }
+            sb.append("]}");
+        }
+    }
+
+    private static String signature(Constructor<?> c, boolean qualified) {
+        StringBuilder sb = new StringBuilder(name(c.getDeclaringClass(), qualified)).append('(');
+        Class<?>[] params = c.getParameterTypes();
+        for (int i = 0; i < params.length; i++) {
+            if (i > 0) sb.append(", ");
+            sb.append(name(params[i], qualified));
+        }
+        return sb.append(')').toString();
+    }
+
+    private static String name(Class<?> c, boolean qualified) {
+        return qualified || c.getSimpleName().isEmpty() ? c.getTypeName() : c.getSimpleName();
+    }
+
+    private static void appendJsonString(StringBuilder sb, String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char ch = s.charAt(i);
+            switch (ch) {
+                case '"':  sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (ch < 0x20) sb.append(String.format("\\u%04x", (int) ch));
+                    else sb.append(ch);
+            }
+        }
+        sb.append('"');
+    }
+}
@@ -0,0 +1,100 @@
+package org.oldskooler.inject4j;
+
+import java.lang.reflect.Constructor;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.Supplier;
+
+/**
+ * Records the {@link ResolutionTrace} of one {@link Resolver#traceService(Class)} call on the calling
+ * thread.
+ * <p>
+ * The provider and its scopes report every descriptor they resolve to the tracer of the current
+ * thread, if any, when the provider is built with
+ * {@linkplain ServiceProviderOptions#setResolutionTracing(boolean) resolution tracing}: {@link #enter}
+ * opens a node under the innermost open node, {@link #created} records how the instance was produced,
+ * and {@link #exit} closes the node and stamps its duration.
+ * </p>
+ *
+ * @implNote This class is package-private and not intended for external use.
+ */
+final class ResolutionTracer {
+    private static final ThreadLocal<ResolutionTracer> CURRENT = new ThreadLocal<>();
+
+    /** Nodes being resolved, innermost first. */
+    private final Deque<ResolutionTrace.Node> open = new ArrayDeque<>();
+    /** The first node entered: the service that was requested. */
+    private ResolutionTrace.Node root;
+
+    private ResolutionTracer() {}
+
+    /**
+     * Returns the tracer recording on the calling thread.
+     *
+     * @return The tracer, or {@code null} if no trace is being recorded.
+     */
+    static ResolutionTracer current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Runs {@code request} on the calling thread while recording every resolution it makes.
+     *
+     * @param <T>     The requested service type.
+     * @param type    The requested type (for the trace).
+     * @param request Performs the request.
+     * @return The trace, holding the result of {@code request}.
+     */
+    static <T> ResolutionTrace<T> trace(Class<T> type, Supplier<T> request) {
+        ResolutionTracer previous = CURRENT.get();
+        ResolutionTracer tracer = new ResolutionTracer();
+        CURRENT.set(tracer);
+        try {
+            T instance = request.get();
+            return new ResolutionTrace<>(type, instance, tracer.root);
+        } finally {
+            if (previous != null) CURRENT.set(previous);
+            else CURRENT.remove();
+        }
+    }
+
+    /**
+     * Opens a node for a descriptor about to be resolved.
+     *
+     * @param d The descriptor.
+     * @return The node to pass to {@link #exit}.
+     */
+    ResolutionTrace.Node enter(ServiceDescriptor<?> d) {
+        ResolutionTrace.Node node = new ResolutionTrace.Node(d.serviceType, d.typeName(), d.key, d.lifetime);
+        ResolutionTrace.Node parent = open.peek();
+        if (parent != null) parent.dependencies.add(node);
+        else if (root == null) root = node;
+        open.push(node);
+        node.nanos = System.nanoTime();
+        return node;
+    }
+
+    /**
+     * Records that the innermost open node's instance was produced in this resolution rather than
+     * taken from a cache.
+     *
+     * @param source      How the instance was produced.
+     * @param constructor The constructor invoked, or {@code null} if none was.
+     */
+    void created(ResolutionTrace.Source source, Constructor<?> constructor) {
+        ResolutionTrace.Node node = open.peek();
+        if (node == null) return;
+        node.source = source;
+        node.constructor = constructor;
+    }
+
+    /**
+     * Closes a node opened by {@link #enter}, also if its resolution failed.
+     *
+     * @param node The node.
+     */
+    void exit(ResolutionTrace.Node node) {
+        node.nanos = System.nanoTime() - node.nanos;
+        open.pop(); // enter and exit are paired by try/finally, so this is node
+    }
+}
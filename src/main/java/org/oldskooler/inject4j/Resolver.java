@@ -1,6 +1,193 @@
 package org.oldskooler.inject4j;
 
-interface Resolver {
-    <T> T getService(Class<T> type);
-    boolean canResolve(Class<?> type);
-}
\ No newline at end of file
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Common base of {@link ServiceProvider} and {@link Scope}: something services can be resolved from.
+ * <p>
+ * Factory registrations for transient services receive the resolver the request was made on, so
+ * they can pull their own dependencies through the same lookup tables and lifetime rules as
+ * constructor injection. The class cannot be extended outside this package.
+ * </p>
+ */
+public abstract class Resolver {
+    Resolver() {}
+
+    /**
+     * Resolves a service for the requested type.
+     *
+     * @param <T>  The requested service type.
+     * @param type The class object of the requested type.
+     * @return The resolved instance, or {@code null} if no service can be resolved.
+     */
+    public abstract <T> T getService(Class<T> type);
+
+    /**
+     * Resolves a service or throws if it cannot be found.
+     *
+     * @param <T>  The requested service type.
+     * @param type The class object of the requested type.
+     * @return The resolved instance (never {@code null}).
+     * @throws ServiceNotFoundException if no service can be resolved for {@code type}.
+     */
+    public <T> T getRequiredService(Class<T> type) {
+        T instance = getService(type);
+        if (instance != null) return instance;
+        throw new ServiceNotFoundException(type);
+    }
+
+    /**
+     * Resolves a service for a possibly generic type, such as {@code Repository<User>}: the service
+     * registered for exactly that type, or if there is none, the service satisfying its raw class.
+     *
+     * @param <T>  The requested service type.
+     * @param type The requested type.
+     * @return The resolved instance, or {@code null} if no service can be resolved.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getService(TypeToken<T> type) {
+        Type t = type.getType();
+        if (t instanceof Class) return getService((Class<T>) t);
+        ServiceDescriptor<?> d = index().findByType(t);
+        return d != null ? (T) resolve(d) : null;
+    }
+
+    /**
+     * Resolves a service for a possibly generic type or throws if it cannot be found.
+     *
+     * @param <T>  The requested service type.
+     * @param type The requested type.
+     * @return The resolved instance (never {@code null}).
+     * @throws ServiceNotFoundException if no service can be resolved for {@code type}.
+     */
+    public <T> T getRequiredService(TypeToken<T> type) {
+        T instance = getService(type);
+        if (instance != null) return instance;
+        throw new ServiceNotFoundException("No service registered for: " + type);
+    }
+
+    /**
+     * Resolves every service registered for exactly {@code type}, in registration order, each
+     * according to its own lifetime. Constructor parameters of type {@code List<T>} or {@code T[]}
+     * receive the same services.
+     *
+     * @param <T>  The requested service type.
+     * @param type The service type the services were registered as.
+     * @return An unmodifiable list of the instances; empty if {@code type} is not registered.
+     * @throws IllegalStateException if one of the registrations is SCOPED and this is the root provider.
+     */
+    public <T> List<T> getServices(Class<T> type) {
+        return resolveAll(index().findAll(type));
+    }
+
+    /**
+     * Resolves every service registered for a possibly generic type: the registrations of exactly
+     * that type if there are any, otherwise those of its raw class.
+     *
+     * @param <T>  The requested service type.
+     * @param type The requested type.
+     * @return An unmodifiable list of the instances; empty if nothing is registered.
+     */
+    public <T> List<T> getServices(TypeToken<T> type) {
+        return resolveAll(index().findAllByType(type.getType()));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> List<T> resolveAll(ServiceDescriptor<?>[] all) {
+        Object[] instances = new Object[all.length];
+        for (int i = 0; i < all.length; i++) instances[i] = resolve(all[i]);
+        return (List<T>) Collections.unmodifiableList(Arrays.asList(instances));
+    }
+
+    /**
+     * Resolves the service registered for exactly {@code type} under {@code key}. When several services
+     * share the type and key, the first registration wins.
+     *
+     * @param <T>  The requested service type.
+     * @param type The service type the service was registered as.
+     * @param key  The key the service was registered under (compared with {@code equals}).
+     * @return The resolved instance, or {@code null} if no service is registered under the key.
+     * @throws IllegalStateException if the service is SCOPED and this is the root provider.
+     */
+    public <T> T getKeyedService(Class<T> type, Object key) {
+        ServiceDescriptor<T> d = index().findKeyed(type, Objects.requireNonNull(key, "key"));
+        return d != null ? resolve(d) : null;
+    }
+
+    /**
+     * Resolves a keyed service or throws if it cannot be found.
+     *
+     * @param <T>  The requested service type.
+     * @param type The service type the service was registered as.
+     * @param key  The key the service was registered under.
+     * @return The resolved instance (never {@code null}).
+     * @throws ServiceNotFoundException if no service is registered for {@code type} under {@code key}.
+     */
+    public <T> T getRequiredKeyedService(Class<T> type, Object key) {
+        T instance = getKeyedService(type, key);
+        if (instance != null) return instance;
+        throw new ServiceNotFoundException("No service registered for: " + type.getName() + " with key: " + key);
+    }
+
+    /**
+     * Resolves every service registered for exactly {@code type} under {@code key}, in registration order.
+     *
+     * @param <T>  The requested service type.
+     * @param type The service type the services were registered as.
+     * @param key  The key the services were registered under.
+     * @return An unmodifiable list of the instances; empty if nothing is registered under the key.
+     */
+    public <T> List<T> getKeyedServices(Class<T> type, Object key) {
+        return resolveAll(index().findAllKeyed(type, Objects.requireNonNull(key, "key")));
+    }
+
+    /**
+     * Indicates whether a request for {@code type} could be satisfied.
+     *
+     * @param type The requested service type.
+     * @return {@code true} if resolution would succeed; otherwise {@code false}.
+     */
+    public abstract boolean canResolve(Class<?> type);
+
+    /**
+     * Resolves a service like {@link #getService(Class)} while recording the tree of every service
+     * resolved for it. Requires a provider built with
+     * {@linkplain ServiceProviderOptions#setResolutionTracing(boolean) resolution tracing}.
+     * <p>
+     * Only resolutions made on the calling thread are recorded. {@link Lazy} and
+     * {@link java.util.function.Supplier} dependencies appear where they are first called during the
+     * request, if at all.
+     * </p>
+     *
+     * @param <T>  The requested service type.
+     * @param type The class object of the requested type.
+     * @return The trace, holding the resolved instance (or {@code null} if none could be resolved).
+     * @throws IllegalStateException if resolution tracing is not enabled, or as {@code getService} does.
+     */
+    public <T> ResolutionTrace<T> traceService(Class<T> type) {
+        if (!index().isTracing()) {
+            throw new IllegalStateException("Resolution tracing is not enabled; see ServiceProviderOptions.setResolutionTracing");
+        }
+        return ResolutionTracer.trace(type, () -> getService(type));
+    }
+
+    /**
+     * The root provider. Singleton factories registered with {@code addSingletonFactory} receive it, so
+     * they never see a scope. Constructor-injected singletons are built with the resolver that first
+     * requests them, which may be a scope (see {@link Scope}).
+     */
+    abstract ServiceProvider root();
+
+    /** Lookup tables and cached construction plans shared by the root provider and its scopes. */
+    abstract ServiceIndex index();
+
+    /** Resolves an already-located descriptor according to its lifetime, skipping any lookup. */
+    abstract <T> T resolve(ServiceDescriptor<T> descriptor);
+
+    /** Returns the instance of a compiled SCOPED service for the current scope, creating it if needed. */
+    abstract <T> T resolveScoped(CompiledService.Scoped<T> service);
+}
@@ -1,8 +1,9 @@
 package org.oldskooler.inject4j;
 
-import java.lang.reflect.Modifier;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * A resolution scope that can construct and cache services according to their {@link ServiceLifetime}.
@@ -10,7 +11,11 @@ import java.util.concurrent.ConcurrentHashMap;
  * A {@code Scope} provides:
  * </p>
  * <ul>
- *   <li><b>Singleton</b> caching shared with the root provider (via {@code singletonCache}).</li>
+ *   <li><b>Singleton</b> instances shared with the root provider (held per registration by the
+ *       provider's index). A singleton first requested in a scope is built with that scope, so it can
+ *       capture the scope's scoped services; build the provider with
+ *       {@linkplain ServiceProviderOptions#setValidateOnBuild(boolean) validation} to reject such
+ *       singletons up front.</li>
  *   <li><b>Scoped</b> caching local to this scope (cleared on {@link #close()}).</li>
  *   <li><b>Transient</b> services created every time.</li>
  * </ul>
@@ -23,31 +28,65 @@ import java.util.concurrent.ConcurrentHashMap;
  *   <li><b>Assignable</b> match: find the most specific descriptor whose produced type is assignable to the
  *       requested type. If multiple unrelated types match, an ambiguity error is thrown.</li>
  *   <li><b>Self-binding</b>: if the requested type is concrete (not abstract, not an interface), attempt to
- *       construct it directly via {@link ConstructorFactory#createWithInjection(Class, Resolver, Deque)}.</li>
+ *       construct it directly via {@link ConstructorFactory#createWithInjection(Class, Resolver)}.</li>
  * </ol>
  *
  * <p>
  * Instances that implement {@link AutoCloseable} and are scoped-cached will be closed when the scope is
- * {@linkplain #close() closed}. Singletons are <em>not</em> owned by the scope and are not closed here.
+ * {@linkplain #close() closed}, in reverse order of creation. Singletons are <em>not</em> owned by the scope and are not closed here.
  * </p>
  */
-public class Scope implements Resolver, AutoCloseable {
-    /** All known service descriptors, typically from the root provider. */
-    private final List<ServiceDescriptor<?>> descriptors;
-    /** Cache for SINGLETON instances shared across all scopes created by the root provider. */
-    private final Map<Class<?>, Object> singletonCache;  // shared with root
-    /** Cache for SCOPED instances owned by this scope. Cleared and closed on {@link #close()}. */
-    private final Map<Class<?>, Object> scopedCache = new ConcurrentHashMap<>();
+public class Scope extends Resolver implements AutoCloseable {
+    /** The provider this scope was created from. */
+    private final ServiceProvider root;
+    /** Lookup tables over all known service descriptors, shared with the root provider. */
+    private final ServiceIndex index;
+    /**
+     * Holders of the SCOPED instances owned by this scope, indexed by {@link ServiceIndex#scopedSlot}.
+     * Allocated on the first scoped request, so scopes that never resolve a scoped service allocate
+     * nothing. Instances are built inside their holder, outside any lock, so nested scoped
+     * dependencies can be resolved through the same array. Cleared and closed on {@link #close()}.
+     */
+    private volatile AtomicReferenceArray<InstanceHolder<?>> scopedSlots;
+    /**
+     * Holders of SCOPED instances of closed generic registrations, which are created on demand and
+     * therefore have no slot. Allocated on first use, cleared and closed on {@link #close()}.
+     */
+    private volatile ConcurrentMap<ServiceDescriptor<?>, InstanceHolder<?>> closedScoped;
+    /**
+     * The {@link AutoCloseable} scoped instances created by this scope, in creation order. Allocated on
+     * the first one, guarded by {@code this}, disposed in reverse and cleared by {@link #close()}.
+     */
+    private List<AutoCloseable> disposables;
 
     /**
-     * Creates a new scope.
+     * Creates a new standalone scope over its own provider.
+     * <p>
+     * Singletons are still shared through {@code singletonCache}: an instance already in the map under
+     * its service type is used, and a singleton the scope creates is published into the map. Scopes
+     * built over the same map therefore share singletons, as before.
+     * </p>
      *
      * @param descriptors     The registered service descriptors to consider during resolution.
-     * @param singletonCache  A shared cache for SINGLETON services (owned by the root provider).
+     * @param singletonCache  A shared cache for SINGLETON services, keyed by service type.
+     * @deprecated Use {@link ServiceProvider#createScope()}, which shares the provider's singletons
+     *             without going through a map.
      */
+    @Deprecated
     public Scope(List<ServiceDescriptor<?>> descriptors, Map<Class<?>, Object> singletonCache) {
-        this.descriptors = descriptors;
-        this.singletonCache = singletonCache;
+        this(new ServiceProvider(descriptors));
+        index.shareSingletons(singletonCache);
+    }
+
+    /**
+     * Creates a new scope of the given root provider, sharing its index and singletons.
+     *
+     * @param root The provider the scope is created from.
+     */
+    Scope(ServiceProvider root) {
+        this.root = root;
+        this.index = root.index();
+        ContainerEvents.scopeCreated(this);
     }
 
     /**
@@ -63,23 +102,29 @@ public class Scope implements Resolver, AutoCloseable {
      */
     @Override
     public <T> T getService(Class<T> type) {
+        // 0) Compiled graph? A single lookup yields the pre-linked node.
+        if (index.isCompiled()) {
+            CompiledService<T> compiled = index.findCompiled(type);
+            return compiled != null ? compiled.resolve(this) : null;
+        }
+
         // 1) Exact registration?
-        ServiceDescriptor<T> exact = findDescriptorExact(type);
+        ServiceDescriptor<T> exact = index.findDescriptorExact(type);
         if (exact != null) {
             return resolveFromDescriptor(exact, this);
         }
 
         // 2) Assignable registration?
-        Match<T> m = findBestAssignableMatch(type);
-        if (m != null) {
-            return resolveFromDescriptor(m.descriptor, this);
+        ServiceDescriptor<T> match = index.findBestAssignableMatch(type);
+        if (match != null) {
+            return resolveFromDescriptor(match, this);
         }
 
         // Removed below because we shouldn't try to create types that aren't registered in the service collection!
 
         // 3) Self-binding for concrete, instantiable classes
         // if (isConcrete(type)) {
-        //    return ConstructorFactory.createWithInjection(type, this, null);
+        //    return ConstructorFactory.createWithInjection(type, this);
         // }
 
         // Nullable behavior: nothing found → return null (no exception here)
@@ -125,7 +170,7 @@ public class Scope implements Resolver, AutoCloseable {
      * @throws ServiceNotFoundException if no constructor can be satisfied
      */
     public <T> T createInstance(Class<T> type, Object... explicitArgs) {
-        return Activator.createInstance(new Activator.ServiceResolver() {
+        return Activator.createInstance(index, new Activator.ServiceResolver() {
             @Override public <U> U getService(Class<U> t) { return Scope.this.getService(t); }
         }, type, explicitArgs);
     }
@@ -142,117 +187,11 @@ public class Scope implements Resolver, AutoCloseable {
      */
     @Override
     public boolean canResolve(Class<?> type) {
-        if (findDescriptorExact(type) != null) return true;
-        if (findBestAssignableMatch(type) != null) return true;
-        return isConcrete(type);
+        return index.canResolve(type);
     }
 
     // ---------- internal helpers ----------
 
-    /**
-     * Finds a descriptor whose {@code serviceType} exactly equals the requested type.
-     *
-     * @param <T>  The service type.
-     * @param type The requested type.
-     * @return The exact matching descriptor, or {@code null} if none.
-     */
-    @SuppressWarnings("unchecked")
-    private <T> ServiceDescriptor<T> findDescriptorExact(Class<T> type) {
-        for (ServiceDescriptor<?> d : descriptors) {
-            if (d.serviceType.equals(type)) return (ServiceDescriptor<T>) d;
-        }
-        return null;
-    }
-
-    /**
-     * Checks whether a type is self-bindable, i.e., concrete (not interface/abstract).
-     *
-     * @param t The type to check.
-     * @return {@code true} if the type is concrete; otherwise {@code false}.
-     */
-    private boolean isConcrete(Class<?> t) {
-        int m = t.getModifiers();
-        return !t.isInterface() && !Modifier.isAbstract(m);
-    }
-
-    /**
-     * Lightweight container for a candidate match during assignable lookup.
-     *
-     * @param <T> The service type.
-     */
-    private static final class Match<T> {
-        final ServiceDescriptor<T> descriptor;
-        final Class<?> produced;
-        Match(ServiceDescriptor<T> d, Class<?> produced) { this.descriptor = d; this.produced = produced; }
-    }
-
-    /**
-     * Finds the best assignable match for the requested type among all descriptors.
-     *
-     * <p>A descriptor is a candidate if the type it <em>produces</em> (instance class or implementation class)
-     * is assignable to {@code paramType}. When multiple candidates exist, they are sorted so that the most
-     * specific type comes first (i.e., if A is assignable from B, B wins). If the top two candidates are
-     * unrelated (neither assignable from the other), the match is ambiguous and an exception is thrown.</p>
-     *
-     * @param <T>       The requested service type.
-     * @param paramType The requested class.
-     * @return The best {@link Match}, or {@code null} if none.
-     * @throws IllegalStateException if multiple unrelated candidates are found.
-     */
-    @SuppressWarnings("unchecked")
-    private <T> Match<T> findBestAssignableMatch(Class<T> paramType) {
-        List<Match<T>> candidates = new ArrayList<>();
-        for (ServiceDescriptor<?> d : descriptors) {
-            Class<?> produced = producedType(d);
-            if (produced == null) continue;
-            if (paramType.isAssignableFrom(produced)) {
-                candidates.add(new Match<>((ServiceDescriptor<T>) d, produced));
-            }
-        }
-        if (candidates.isEmpty()) return null;
-        if (candidates.size() == 1) return candidates.get(0);
-
-        // Prefer the most specific (deepest) type
-        candidates.sort((a, b) -> {
-            Class<?> A = a.produced, B = b.produced;
-            if (A == B) return 0;
-            if (A.isAssignableFrom(B)) return 1;   // B is more specific
-            if (B.isAssignableFrom(A)) return -1;  // A is more specific
-            return 0; // unrelated
-        });
-
-        Class<?> top = candidates.get(0).produced;
-        Class<?> second = candidates.get(1).produced;
-        boolean ambiguous = !(top.isAssignableFrom(second) || second.isAssignableFrom(top));
-        if (ambiguous) {
-            StringBuilder sb = new StringBuilder("Ambiguous assignment for ")
-                    .append(paramType.getName()).append(". Candidates produce: ");
-            for (Match<T> mm : candidates) sb.append(mm.produced.getName()).append(", ");
-            sb.setLength(sb.length() - 2);
-            sb.append(".");
-            throw new IllegalStateException(sb.toString());
-        }
-
-        return candidates.get(0);
-    }
-
-    /**
-     * Determines the runtime type a descriptor will produce for matching purposes:
-     * <ul>
-     *   <li>If {@code instance} is present → {@code instance.getClass()}</li>
-     *   <li>Else if {@code implType} is present → {@code implType}</li>
-     *   <li>Else → {@code null}</li>
-     * </ul>
-     *
-     * @param d The descriptor to inspect.
-     * @return The produced class, or {@code null} if indeterminate.
-     */
-    private Class<?> producedType(ServiceDescriptor<?> d) {
-        if (d.instance != null) return d.instance.getClass();
-        if (d.implType != null) return d.implType;
-        return null;
-    }
-
     /**
      * Resolves an instance from a descriptor according to its lifetime, using the given resolver
      * (typically {@code this}) for constructor injection.
@@ -264,14 +203,34 @@ public class Scope implements Resolver, AutoCloseable {
      * @throws IllegalStateException if a SCOPED service is requested from the root provider,
      *                               or if the lifetime is unknown.
      */
-    @SuppressWarnings("unchecked")
     private <T> T resolveFromDescriptor(ServiceDescriptor<T> d, Resolver resolver) {
+        ResolutionTracer tracer = index.isTracing() ? ResolutionTracer.current() : null;
+        if (tracer == null) return resolveUntraced(d, resolver);
+        ResolutionTrace.Node node = tracer.enter(d);
+        try {
+            return resolveUntraced(d, resolver);
+        } finally {
+            tracer.exit(node);
+        }
+    }
+
+    private <T> T resolveUntraced(ServiceDescriptor<T> d, Resolver resolver) {
+        ServiceCounters counters = index.counters(d);
         switch (d.lifetime) {
-            case SINGLETON:
-                return (T) singletonCache.computeIfAbsent(d.serviceType, x -> createFromDescriptor(d, resolver)); 
-            case SCOPED:
-                return (T) scopedCache.computeIfAbsent(d.serviceType, x -> createFromDescriptor(d, resolver));
+            case SINGLETON: {
+                InstanceHolder<T> holder = index.singleton(d);
+                T instance = holder.peek();
+                if (counters != null) counters.resolved(instance != null);
+                return instance != null ? instance : holder.getOrCreate(resolver, r -> createFromDescriptor(d, r));
+            }
+            case SCOPED: {
+                InstanceHolder<T> holder = scoped(d, index.scopedSlot(d));
+                T instance = holder.peek();
+                if (counters != null) counters.resolved(instance != null);
+                return instance != null ? instance : holder.getOrCreate(resolver, r -> track(createFromDescriptor(d, r)));
+            }
             case TRANSIENT:
+                if (counters != null) counters.resolved(false);
                 return createFromDescriptor(d, resolver);
 
             default:
@@ -283,7 +242,7 @@ public class Scope implements Resolver, AutoCloseable {
      * Creates an instance according to the descriptor's construction strategy:
      * <ul>
      *   <li>If an {@code instance} is specified, returns it as-is.</li>
-     *   <li>If a {@code supplier} is specified, invokes it to produce a new instance.</li>
+     *   <li>If a {@code factory} is specified, invokes it with the resolver to produce a new instance.</li>
      *   <li>Otherwise, constructs the {@code implType} via {@link ConstructorFactory} using the provided resolver.</li>
      * </ul>
      *
@@ -292,29 +251,145 @@ public class Scope implements Resolver, AutoCloseable {
      * @param resolver The resolver for dependency injection during construction.
      * @return A newly created instance (not cached here unless SINGLETON handling applies).
      */
-    private static <T> T createFromDescriptor(ServiceDescriptor<T> d, Resolver resolver) {
+    private <T> T createFromDescriptor(ServiceDescriptor<T> d, Resolver resolver) {
+        if (index.isTracing()) traced(d);
         if (d.instance != null) return d.instance;
-        if (d.supplier != null) return d.supplier.get();
-        @SuppressWarnings("unchecked")
-        Class<T> impl = (Class<T>) d.implType;
-        return ConstructorFactory.createWithInjection(impl, resolver, null);
+        ServiceCounters counters = index.counters(d);
+        if (counters == null) return construct(d, resolver);
+        long start = System.nanoTime();
+        T instance = construct(d, resolver);
+        counters.constructed(System.nanoTime() - start);
+        return instance;
+    }
+
+    // Tells the current trace, if any, how the descriptor's instance is about to be produced.
+    private void traced(ServiceDescriptor<?> d) {
+        ResolutionTracer tracer = ResolutionTracer.current();
+        if (tracer == null) return;
+        if (d.instance != null) tracer.created(ResolutionTrace.Source.INSTANCE, null);
+        else if (d.factory != null) tracer.created(ResolutionTrace.Source.FACTORY, null);
+        else tracer.created(ResolutionTrace.Source.CONSTRUCTOR, index.plan(d).constructor);
+    }
+
+    private static <T> T construct(ServiceDescriptor<T> d, Resolver resolver) {
+        if (d.factory != null) return d.factory.apply(resolver);
+        return ConstructorFactory.createWithInjection(d, resolver);
+    }
+
+    @Override
+    ServiceProvider root() {
+        return root;
+    }
+
+    @Override
+    ServiceIndex index() {
+        return index;
+    }
+
+    @Override
+    <T> T resolve(ServiceDescriptor<T> descriptor) {
+        return resolveFromDescriptor(descriptor, this);
+    }
+
+    @Override
+    <T> T resolveScoped(CompiledService.Scoped<T> service) {
+        InstanceHolder<T> holder = scoped(service.descriptor, service.slot);
+        T instance = holder.peek();
+        if (service.counters != null) service.counters.resolved(instance != null);
+        return instance != null ? instance : holder.getOrCreate(this, r -> track(service.create(r)));
+    }
+
+    // Records a new scoped instance for disposal if it is AutoCloseable.
+    private <T> T track(T instance) {
+        if (instance instanceof AutoCloseable) {
+            synchronized (this) {
+                if (disposables == null) disposables = new ArrayList<>();
+                disposables.add((AutoCloseable) instance);
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Returns this scope's holder for a SCOPED descriptor, registering an empty one on first use.
+     *
+     * @param <T>  The service type.
+     * @param d    The descriptor.
+     * @param slot The descriptor's slot ({@link ServiceIndex#scopedSlot}), or {@code -1} if it has none.
+     * @return The holder (never {@code null}).
+     */
+    @SuppressWarnings("unchecked")
+    private <T> InstanceHolder<T> scoped(ServiceDescriptor<T> d, int slot) {
+        if (slot < 0) return (InstanceHolder<T>) closedScoped().computeIfAbsent(d, InstanceHolder::new);
+        AtomicReferenceArray<InstanceHolder<?>> slots = scopedSlots;
+        if (slots == null) slots = allocateSlots();
+        InstanceHolder<?> holder = slots.get(slot);
+        if (holder == null) {
+            holder = new InstanceHolder<>(d);
+            if (!slots.compareAndSet(slot, null, holder)) holder = slots.get(slot);
+        }
+        return (InstanceHolder<T>) holder;
+    }
+
+    private synchronized AtomicReferenceArray<InstanceHolder<?>> allocateSlots() {
+        AtomicReferenceArray<InstanceHolder<?>> slots = scopedSlots;
+        if (slots == null) scopedSlots = slots = new AtomicReferenceArray<>(index.scopedCount());
+        return slots;
+    }
+
+    private ConcurrentMap<ServiceDescriptor<?>, InstanceHolder<?>> closedScoped() {
+        ConcurrentMap<ServiceDescriptor<?>, InstanceHolder<?>> map = closedScoped;
+        if (map == null) {
+            synchronized (this) {
+                map = closedScoped;
+                if (map == null) closedScoped = map = new ConcurrentHashMap<>();
+            }
+        }
+        return map;
+    }
+
+    /**
+     * Returns a snapshot of the resolution metrics of the provider this scope was created from.
+     *
+     * @return The same metrics as {@link ServiceProvider#getMetrics()}; empty if metrics are disabled.
+     */
+    public List<ServiceMetrics> getMetrics() {
+        return index.metrics();
     }
 
     /**
      * Closes the scope and disposes of any {@link AutoCloseable} instances held in the scoped cache.
      * <p>
-     * Each closeable is closed in an independent try/catch; exceptions are ignored to ensure all
-     * closeables get a chance to run. The scoped cache is cleared afterward.
+     * Instances are closed in reverse order of creation, so a scoped service is closed before the
+     * scoped services it was built from. Each closeable is closed in an independent try/catch;
+     * exceptions are ignored to ensure all closeables get a chance to run. The scoped cache is cleared,
+     * so closing the scope again disposes of nothing more.
      * </p>
      */
     @Override
     public void close() {
-        for (Object o : scopedCache.values()) {
-            if (o instanceof AutoCloseable) {
-                AutoCloseable c = (AutoCloseable) o;
-                try { c.close(); } catch (Exception ignored) {}
+        Object event = ContainerEvents.beginScopeClose();
+        int disposed = 0;
+        try {
+            List<AutoCloseable> created;
+            synchronized (this) {
+                created = disposables;
+                disposables = null;
+            }
+            AtomicReferenceArray<InstanceHolder<?>> slots = scopedSlots;
+            if (slots != null) {
+                for (int i = 0; i < slots.length(); i++) slots.set(i, null);
+            }
+            ConcurrentMap<ServiceDescriptor<?>, InstanceHolder<?>> closed = closedScoped;
+            if (closed != null) closed.clear();
+            if (created != null) {
+                for (int i = created.size() - 1; i >= 0; i--) {
+                    try { created.get(i).close(); } catch (Exception ignored) {}
+                    disposed++;
+                }
             }
+        } finally {
+            ContainerEvents.endScopeClose(event, this, disposed);
         }
-        scopedCache.clear();
     }
 }
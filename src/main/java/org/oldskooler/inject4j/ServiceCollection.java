@@ -1,9 +1,11 @@
 package org.oldskooler.inject4j;
 
 import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
 import java.util.function.Supplier;
 
 /**
@@ -66,6 +68,32 @@ public class ServiceCollection {
         serviceDescriptors.add(ServiceDescriptor.implementedBy(type, type, ServiceLifetime.SINGLETON));
     }
 
+    /**
+     * Registers a singleton using a factory that runs on first resolution.
+     * <p>
+     * Unlike {@link #addSingleton(Class, Supplier)}, nothing is created at registration time: the
+     * factory runs exactly once, when the service is first requested (or when the provider is built
+     * with {@linkplain ServiceProviderOptions#setWarmUpSingletons(boolean) singleton warm-up}), and
+     * receives the root {@link ServiceProvider} so it can resolve its own dependencies.
+     * </p>
+     * <p>
+     * The method has its own name so that a lambda or constructor reference is never ambiguous with
+     * {@link #addSingleton(Class, Supplier)}.
+     * </p>
+     *
+     * <pre>{@code
+     * services.addSingletonFactory(DataSource.class, provider -> new PooledDataSource(provider.getService(DbConfig.class)));
+     * }</pre>
+     *
+     * @param <T>         The service type.
+     * @param serviceType The service abstraction or interface.
+     * @param factory     Produces the singleton instance from the root provider.
+     */
+    public <T> void addSingletonFactory(Class<T> serviceType, Function<? super ServiceProvider, ? extends T> factory) {
+        Objects.requireNonNull(factory, "factory");
+        serviceDescriptors.add(ServiceDescriptor.factory(serviceType, r -> factory.apply(r.root()), ServiceLifetime.SINGLETON));
+    }
+
     /**
      * Registers a singleton using a factory that produces the instance eagerly at registration time.
      * The produced instance will always be reused for this service type.
@@ -73,6 +101,7 @@ public class ServiceCollection {
      * @param <T>         The service type.
      * @param serviceType The service abstraction or interface.
      * @param factory     A supplier that produces the singleton instance. It is invoked immediately.
+     * @see #addSingletonFactory(Class, Function) for a factory that runs on first resolution instead.
      */
     public <T> void addSingleton(Class<T> serviceType, Supplier<? extends T> factory) {
         T instance = factory.get(); // eager by design
@@ -96,6 +125,28 @@ public class ServiceCollection {
 
     // --- Scoped registrations ---
 
+    /**
+     * Registers a scoped service using a factory that receives the {@link Scope} the service is
+     * resolved in, as a {@link Resolver}, so it can resolve its own (scoped or singleton) dependencies
+     * from that scope.
+     * <p>
+     * The method has its own name so that a lambda or constructor reference is never ambiguous with
+     * {@link #addScoped(Class, Supplier)}.
+     * </p>
+     *
+     * <pre>{@code
+     * services.addScopedFactory(UnitOfWork.class, scope -> new UnitOfWork(scope.getService(Connection.class)));
+     * }</pre>
+     *
+     * @param <T>         The service type.
+     * @param serviceType The service abstraction or interface.
+     * @param factory     Produces one instance per scope from that scope.
+     */
+    public <T> void addScopedFactory(Class<T> serviceType, Function<? super Resolver, ? extends T> factory) {
+        Objects.requireNonNull(factory, "factory");
+        serviceDescriptors.add(ServiceDescriptor.factory(serviceType, factory::apply, ServiceLifetime.SCOPED));
+    }
+
     /**
      * Registers a scoped service using a factory.
      * A new instance is created per scope (e.g., per request in a web context).
@@ -138,8 +189,51 @@ public class ServiceCollection {
         serviceDescriptors.add(ServiceDescriptor.implementedBy(serviceType, implementationType, ServiceLifetime.SCOPED));
     }
 
+    /**
+     * Registers a scoped service by mapping an abstraction to an implementation type, constructing
+     * the implementation with the given {@link ActivationStrategy} instead of the provider default.
+     * A new instance is created per scope.
+     *
+     * <p>With {@link ActivationStrategy#LAMBDA_METAFACTORY} the constructor factory is generated when
+     * the provider is built, so the first request pays no generation cost.</p>
+     *
+     * @param <T>                The service type (abstraction).
+     * @param <I>                The implementation type.
+     * @param serviceType        The service abstraction or interface.
+     * @param implementationType The concrete class implementing the service.
+     * @param activationStrategy How the implementation's constructor is invoked.
+     * @throws IllegalArgumentException if {@code type} is an interface abstract class.
+     */
+    public <T, I extends T> void addScoped(Class<T> serviceType, Class<I> implementationType,
+                                           ActivationStrategy activationStrategy) {
+        validateInstantiable(implementationType);
+        Objects.requireNonNull(activationStrategy, "activationStrategy");
+        serviceDescriptors.add(ServiceDescriptor.implementedBy(serviceType, implementationType, ServiceLifetime.SCOPED, activationStrategy));
+    }
+
     // --- Transient registrations ---
 
+    /**
+     * Registers a transient service using a factory that receives the {@link Resolver} the request
+     * was made on: the {@link ServiceProvider}, or the {@link Scope} when resolved within one.
+     * <p>
+     * The method has its own name so that a lambda or constructor reference is never ambiguous with
+     * {@link #addTransient(Class, Supplier)}.
+     * </p>
+     *
+     * <pre>{@code
+     * services.addTransientFactory(Report.class, resolver -> new Report(resolver.getService(Clock.class), "daily"));
+     * }</pre>
+     *
+     * @param <T>         The service type.
+     * @param serviceType The service abstraction or interface.
+     * @param factory     Produces a new instance on each request.
+     */
+    public <T> void addTransientFactory(Class<T> serviceType, Function<? super Resolver, ? extends T> factory) {
+        Objects.requireNonNull(factory, "factory");
+        serviceDescriptors.add(ServiceDescriptor.factory(serviceType, factory::apply, ServiceLifetime.TRANSIENT));
+    }
+
     /**
      * Registers a transient service using a factory.
      * A new instance is created each time the service is requested.
@@ -167,6 +261,28 @@ public class ServiceCollection {
         serviceDescriptors.add(ServiceDescriptor.implementedBy(serviceType, implementationType, ServiceLifetime.TRANSIENT));
     }
 
+    /**
+     * Registers a transient service by mapping an abstraction to an implementation type, constructing
+     * the implementation with the given {@link ActivationStrategy} instead of the provider default.
+     * A new instance is created each time the service is requested.
+     *
+     * <p>With {@link ActivationStrategy#LAMBDA_METAFACTORY} the constructor factory is generated when
+     * the provider is built, so the first request pays no generation cost.</p>
+     *
+     * @param <T>                The service type (abstraction).
+     * @param <I>                The implementation type.
+     * @param serviceType        The service abstraction or interface.
+     * @param implementationType The concrete class implementing the service.
+     * @param activationStrategy How the implementation's constructor is invoked.
+     * @throws IllegalArgumentException if {@code type} is an interface abstract class.
+     */
+    public <T, I extends T> void addTransient(Class<T> serviceType, Class<I> implementationType,
+                                              ActivationStrategy activationStrategy) {
+        validateInstantiable(implementationType);
+        Objects.requireNonNull(activationStrategy, "activationStrategy");
+        serviceDescriptors.add(ServiceDescriptor.implementedBy(serviceType, implementationType, ServiceLifetime.TRANSIENT, activationStrategy));
+    }
+
     /**
      * Registers a transient service where the service type is the same as the implementation type.
      * A new instance is created each time the service is requested.
@@ -182,12 +298,240 @@ public class ServiceCollection {
         serviceDescriptors.add(ServiceDescriptor.implementedBy(type, type, ServiceLifetime.TRANSIENT));
     }
 
+    // --- Generic registrations ---
+
+    /**
+     * Registers a singleton for a full, possibly generic, service type. Requests for exactly that
+     * type ({@link Resolver#getService(TypeToken)}, or a constructor parameter declared with it) are
+     * satisfied by this registration, so {@code Repository<User>} and {@code Repository<Order>} can
+     * be registered side by side. Such registrations are not found through the raw class alone.
+     *
+     * <pre>{@code
+     * services.addSingleton(new TypeToken<Repository<User>>() {}, UserRepository.class);
+     * }</pre>
+     *
+     * @param <T>                The service type.
+     * @param <I>                The implementation type.
+     * @param serviceType        The full service type.
+     * @param implementationType The concrete class implementing the service.
+     * @throws IllegalArgumentException if {@code implementationType} is an interface or abstract class.
+     */
+    public <T, I extends T> void addSingleton(TypeToken<T> serviceType, Class<I> implementationType) {
+        validateInstantiable(implementationType);
+        addGeneric(serviceType, ServiceDescriptor.implementedBy(rawClass(serviceType), implementationType, ServiceLifetime.SINGLETON));
+    }
+
+    /**
+     * Registers a singleton for a full, possibly generic, service type using a factory that runs on
+     * first resolution and receives the root {@link ServiceProvider}.
+     *
+     * @param <T>         The service type.
+     * @param serviceType The full service type.
+     * @param factory     Produces the singleton instance from the root provider.
+     * @see #addSingleton(TypeToken, Class)
+     */
+    public <T> void addSingletonFactory(TypeToken<T> serviceType, Function<? super ServiceProvider, ? extends T> factory) {
+        Objects.requireNonNull(factory, "factory");
+        addGeneric(serviceType, ServiceDescriptor.factory(rawClass(serviceType), r -> factory.apply(r.root()), ServiceLifetime.SINGLETON));
+    }
+
+    /**
+     * Registers a scoped service for a full, possibly generic, service type.
+     *
+     * @param <T>                The service type.
+     * @param <I>                The implementation type.
+     * @param serviceType        The full service type.
+     * @param implementationType The concrete class implementing the service.
+     * @throws IllegalArgumentException if {@code implementationType} is an interface or abstract class.
+     * @see #addSingleton(TypeToken, Class)
+     */
+    public <T, I extends T> void addScoped(TypeToken<T> serviceType, Class<I> implementationType) {
+        validateInstantiable(implementationType);
+        addGeneric(serviceType, ServiceDescriptor.implementedBy(rawClass(serviceType), implementationType, ServiceLifetime.SCOPED));
+    }
+
+    /**
+     * Registers a scoped service for a full, possibly generic, service type using a factory that
+     * receives the {@link Scope} the service is resolved in, as a {@link Resolver}.
+     *
+     * @param <T>         The service type.
+     * @param serviceType The full service type.
+     * @param factory     Produces one instance per scope from that scope.
+     */
+    public <T> void addScopedFactory(TypeToken<T> serviceType, Function<? super Resolver, ? extends T> factory) {
+        Objects.requireNonNull(factory, "factory");
+        addGeneric(serviceType, ServiceDescriptor.factory(rawClass(serviceType), factory::apply, ServiceLifetime.SCOPED));
+    }
+
+    /**
+     * Registers a transient service for a full, possibly generic, service type.
+     *
+     * @param <T>                The service type.
+     * @param <I>                The implementation type.
+     * @param serviceType        The full service type.
+     * @param implementationType The concrete class implementing the service.
+     * @throws IllegalArgumentException if {@code implementationType} is an interface or abstract class.
+     * @see #addSingleton(TypeToken, Class)
+     */
+    public <T, I extends T> void addTransient(TypeToken<T> serviceType, Class<I> implementationType) {
+        validateInstantiable(implementationType);
+        addGeneric(serviceType, ServiceDescriptor.implementedBy(rawClass(serviceType), implementationType, ServiceLifetime.TRANSIENT));
+    }
+
+    /**
+     * Registers a transient service for a full, possibly generic, service type using a factory that
+     * receives the {@link Resolver} the request was made on.
+     *
+     * @param <T>         The service type.
+     * @param serviceType The full service type.
+     * @param factory     Produces a new instance on each request.
+     */
+    public <T> void addTransientFactory(TypeToken<T> serviceType, Function<? super Resolver, ? extends T> factory) {
+        Objects.requireNonNull(factory, "factory");
+        addGeneric(serviceType, ServiceDescriptor.factory(rawClass(serviceType), factory::apply, ServiceLifetime.TRANSIENT));
+    }
+
+    private void addGeneric(TypeToken<?> serviceType, ServiceDescriptor<?> descriptor) {
+        Type type = serviceType.getType();
+        serviceDescriptors.add(type instanceof Class ? descriptor : descriptor.generic(type));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Class<T> rawClass(TypeToken<T> serviceType) {
+        return (Class<T>) serviceType.getRawType();
+    }
+
+    // --- Keyed registrations ---
+
+    /**
+     * Registers a singleton implementation under a key. Keyed services are resolved only by their key,
+     * with {@link Resolver#getKeyedService(Class, Object)} or a {@link FromKeyedServices} constructor
+     * parameter; they are not returned by {@code getService} or {@code getServices}.
+     *
+     * <pre>{@code
+     * services.addKeyedSingleton(DataSource.class, "shard-1", Shard1DataSource.class);
+     * }</pre>
+     *
+     * @param <T>                The service type (abstraction).
+     * @param <I>                The implementation type.
+     * @param serviceType        The service abstraction or interface.
+     * @param key                The key the service is resolved by (compared with {@code equals}).
+     * @param implementationType The concrete class implementing the service.
+     * @throws IllegalArgumentException if {@code implementationType} is an interface or abstract class.
+     */
+    public <T, I extends T> void addKeyedSingleton(Class<T> serviceType, Object key, Class<I> implementationType) {
+        validateInstantiable(implementationType);
+        addKeyed(ServiceDescriptor.implementedBy(serviceType, implementationType, ServiceLifetime.SINGLETON), key);
+    }
+
+    /**
+     * Registers a singleton under a key using a factory that runs on first resolution and receives
+     * the root {@link ServiceProvider}.
+     *
+     * @param <T>         The service type.
+     * @param serviceType The service abstraction or interface.
+     * @param key         The key the service is resolved by.
+     * @param factory     Produces the singleton instance from the root provider.
+     * @see #addSingletonFactory(Class, Function)
+     */
+    public <T> void addKeyedSingletonFactory(Class<T> serviceType, Object key, Function<? super ServiceProvider, ? extends T> factory) {
+        Objects.requireNonNull(factory, "factory");
+        addKeyed(ServiceDescriptor.factory(serviceType, r -> factory.apply(r.root()), ServiceLifetime.SINGLETON), key);
+    }
+
+    /**
+     * Registers a scoped implementation under a key.
+     *
+     * @param <T>                The service type (abstraction).
+     * @param <I>                The implementation type.
+     * @param serviceType        The service abstraction or interface.
+     * @param key                The key the service is resolved by.
+     * @param implementationType The concrete class implementing the service.
+     * @throws IllegalArgumentException if {@code implementationType} is an interface or abstract class.
+     * @see #addKeyedSingleton(Class, Object, Class)
+     */
+    public <T, I extends T> void addKeyedScoped(Class<T> serviceType, Object key, Class<I> implementationType) {
+        validateInstantiable(implementationType);
+        addKeyed(ServiceDescriptor.implementedBy(serviceType, implementationType, ServiceLifetime.SCOPED), key);
+    }
+
+    /**
+     * Registers a scoped service under a key using a factory that receives the {@link Scope} the
+     * service is resolved in, as a {@link Resolver}.
+     *
+     * @param <T>         The service type.
+     * @param serviceType The service abstraction or interface.
+     * @param key         The key the service is resolved by.
+     * @param factory     Produces one instance per scope from that scope.
+     */
+    public <T> void addKeyedScopedFactory(Class<T> serviceType, Object key, Function<? super Resolver, ? extends T> factory) {
+        Objects.requireNonNull(factory, "factory");
+        addKeyed(ServiceDescriptor.factory(serviceType, factory::apply, ServiceLifetime.SCOPED), key);
+    }
+
+    /**
+     * Registers a transient implementation under a key.
+     *
+     * @param <T>                The service type (abstraction).
+     * @param <I>                The implementation type.
+     * @param serviceType        The service abstraction or interface.
+     * @param key                The key the service is resolved by.
+     * @param implementationType The concrete class implementing the service.
+     * @throws IllegalArgumentException if {@code implementationType} is an interface or abstract class.
+     * @see #addKeyedSingleton(Class, Object, Class)
+     */
+    public <T, I extends T> void addKeyedTransient(Class<T> serviceType, Object key, Class<I> implementationType) {
+        validateInstantiable(implementationType);
+        addKeyed(ServiceDescriptor.implementedBy(serviceType, implementationType, ServiceLifetime.TRANSIENT), key);
+    }
+
+    /**
+     * Registers a transient service under a key using a factory that receives the {@link Resolver}
+     * the request was made on.
+     *
+     * @param <T>         The service type.
+     * @param serviceType The service abstraction or interface.
+     * @param key         The key the service is resolved by.
+     * @param factory     Produces a new instance on each request.
+     */
+    public <T> void addKeyedTransientFactory(Class<T> serviceType, Object key, Function<? super Resolver, ? extends T> factory) {
+        Objects.requireNonNull(factory, "factory");
+        addKeyed(ServiceDescriptor.factory(serviceType, factory::apply, ServiceLifetime.TRANSIENT), key);
+    }
+
+    private void addKeyed(ServiceDescriptor<?> descriptor, Object key) {
+        serviceDescriptors.add(descriptor.keyed(Objects.requireNonNull(key, "key")));
+    }
+
     /**
      * Builds an immutable {@link ServiceProvider} based on the registered service descriptors.
+     * <p>
+     * The registrations are snapshotted and indexed once here; the resulting lookup tables are
+     * shared by the provider and every {@link Scope} it creates.
+     * </p>
      *
      * @return A {@link ServiceProvider} capable of resolving services defined in this collection.
      */
     public ServiceProvider buildServiceProvider() {
-        return new ServiceProvider(Collections.unmodifiableList(serviceDescriptors));
+        return buildServiceProvider(new ServiceProviderOptions());
+    }
+
+    /**
+     * Builds an immutable {@link ServiceProvider} based on the registered service descriptors,
+     * configured by the given options.
+     *
+     * @param options Options controlling how the provider resolves and activates services.
+     * @return A {@link ServiceProvider} capable of resolving services defined in this collection.
+     * @throws IllegalStateException if {@linkplain ServiceProviderOptions#setValidateOnBuild(boolean)
+     *                               validation on build} is enabled and a registration cannot be
+     *                               constructed, is part of a cycle or captures a scoped service.
+     * @throws RuntimeException      if {@linkplain ServiceProviderOptions#setWarmUpSingletons(boolean)
+     *                               singleton warm-up} is enabled and a singleton fails to construct.
+     */
+    public ServiceProvider buildServiceProvider(ServiceProviderOptions options) {
+        Objects.requireNonNull(options, "options");
+        ServiceProvider provider = new ServiceProvider(new ServiceIndex(serviceDescriptors, options));
+        if (options.isWarmUpSingletons()) provider.warmUp(options.getWarmUpPool());
+        return provider;
     }
 }
@@ -0,0 +1,86 @@
+package org.oldskooler.inject4j;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records resolution metrics for one registration while the provider is built with
+ * {@linkplain ServiceProviderOptions#setMetricsEnabled(boolean) metrics enabled}.
+ * <p>
+ * Counters are striped {@link LongAdder}s, so threads resolving the same service do not contend on a
+ * single field. Recording a resolution that is served from a cache is one or two adder increments and
+ * allocates nothing. Construction times are also kept in a log-linear histogram (four buckets per
+ * power of two, so each bucket is at most 25% wide) from which {@link ServiceMetrics} derives
+ * percentiles.
+ * </p>
+ *
+ * @implNote This class is package-private and not intended for external use.
+ */
+final class ServiceCounters {
+    /** Number of histogram buckets: {@code 0..3} ns exactly, then four per power of two up to 2^63. */
+    static final int BUCKETS = 248;
+
+    /** The registration these counters belong to. */
+    final ServiceDescriptor<?> descriptor;
+    private final LongAdder resolves = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder constructions = new LongAdder();
+    private final LongAdder constructionNanos = new LongAdder();
+    /** Construction count per {@link #bucket(long)}. */
+    private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+    ServiceCounters(ServiceDescriptor<?> descriptor) {
+        this.descriptor = descriptor;
+    }
+
+    /**
+     * Records one resolution of the service.
+     *
+     * @param hit {@code true} if the instance came from the singleton or scoped cache.
+     */
+    void resolved(boolean hit) {
+        resolves.increment();
+        if (hit) hits.increment();
+    }
+
+    /**
+     * Records one construction of the service.
+     *
+     * @param nanos How long the construction took, including the dependencies created for it.
+     */
+    void constructed(long nanos) {
+        constructions.increment();
+        constructionNanos.add(nanos);
+        histogram.incrementAndGet(bucket(nanos));
+    }
+
+    /**
+     * Copies the current values into an immutable snapshot. Counters keep changing while they are
+     * read, so the values of a snapshot taken under load may be off by the resolutions in flight.
+     *
+     * @return The snapshot.
+     */
+    ServiceMetrics snapshot() {
+        long[] buckets = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) buckets[i] = histogram.get(i);
+        return new ServiceMetrics(descriptor.serviceType, descriptor.typeName(), descriptor.key, descriptor.lifetime,
+                resolves.sum(), hits.sum(), constructions.sum(), constructionNanos.sum(), buckets);
+    }
+
+    // 0..3 map to themselves; above that, the exponent selects a group of four buckets and the two
+    // bits below the leading one select the bucket within it.
+    static int bucket(long nanos) {
+        if (nanos < 4) return (int) Math.max(nanos, 0);
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int mantissa = (int) (nanos >>> (exponent - 2)) & 3;
+        return 4 * (exponent - 1) + mantissa;
+    }
+
+    // The largest duration that falls into the bucket.
+    static long upperBound(int bucket) {
+        if (bucket < 4) return bucket;
+        int exponent = bucket / 4 + 1;
+        long lower = (long) (4 + bucket % 4) << (exponent - 2);
+        return lower + (1L << (exponent - 2)) - 1;
+    }
+}
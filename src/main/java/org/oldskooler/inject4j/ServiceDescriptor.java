@@ -1,33 +1,119 @@
 package org.oldskooler.inject4j;
 
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.function.Function;
 import java.util.function.Supplier;
 
 final class ServiceDescriptor<T> {
     final Class<T> serviceType;
     final Class<? extends T> implType;     // optional
-    final Supplier<? extends T> supplier;  // optional
+    final Function<Resolver, ? extends T> factory; // optional; receives the requesting resolver (singleton factories pass on its root)
     final T instance;                      // optional (for eager singletons / prebuilt)
     final ServiceLifetime lifetime;
+    final ActivationStrategy activationStrategy; // optional (provider default when null)
+    final Object key;                      // optional (keyed registrations only)
+    final Type genericType;                // optional (canonical parameterized service type)
+    final ParameterizedType closedImplType; // optional (open generic closed over genericType)
+    /** Construction plan of {@link #closedImplType}, compiled on first activation (closed generics only). */
+    private volatile ConstructorPlan<?> closedPlan;
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<ServiceDescriptor, ConstructorPlan> CLOSED_PLAN =
+            AtomicReferenceFieldUpdater.newUpdater(ServiceDescriptor.class, ConstructorPlan.class, "closedPlan");
+
+    private ServiceDescriptor(Class<T> serviceType,
+                              Class<? extends T> implType,
+                              Function<Resolver, ? extends T> factory,
+                              T instance,
+                              ServiceLifetime lifetime,
+                              ActivationStrategy activationStrategy) {
+        this(serviceType, implType, factory, instance, lifetime, activationStrategy, null, null, null);
+    }
 
     private ServiceDescriptor(Class<T> serviceType,
                               Class<? extends T> implType,
-                              Supplier<? extends T> supplier,
+                              Function<Resolver, ? extends T> factory,
                               T instance,
-                              ServiceLifetime lifetime) {
+                              ServiceLifetime lifetime,
+                              ActivationStrategy activationStrategy,
+                              Object key,
+                              Type genericType,
+                              ParameterizedType closedImplType) {
         this.serviceType = serviceType;
         this.implType = implType;
-        this.supplier = supplier;
+        this.factory = factory;
         this.instance = instance;
         this.lifetime = lifetime;
+        this.activationStrategy = activationStrategy;
+        this.key = key;
+        this.genericType = genericType;
+        this.closedImplType = closedImplType;
+    }
+
+    /** Returns a copy of this descriptor registered under {@code key}. */
+    ServiceDescriptor<T> keyed(Object key) {
+        return new ServiceDescriptor<>(serviceType, implType, factory, instance, lifetime, activationStrategy, key, genericType, closedImplType);
+    }
+
+    /** Returns a copy of this descriptor registered as the parameterized type {@code type} (canonical). */
+    ServiceDescriptor<T> generic(Type type) {
+        return new ServiceDescriptor<>(serviceType, implType, factory, instance, lifetime, activationStrategy, key, type, closedImplType);
+    }
+
+    /**
+     * Returns the closed instantiation of this open generic registration for the parameterized
+     * service type {@code type} (canonical), implemented by {@code implType}.
+     */
+    ServiceDescriptor<T> closed(Type type, ParameterizedType implType) {
+        return new ServiceDescriptor<>(serviceType, this.implType, null, null, lifetime, activationStrategy, key, type, implType);
+    }
+
+    /**
+     * Returns the cached plan of this closed generic descriptor.
+     *
+     * @return The plan, or {@code null} if it has not been compiled yet.
+     */
+    ConstructorPlan<?> closedPlan() {
+        return closedPlan;
+    }
+
+    /**
+     * Caches the plan of this closed generic descriptor unless another thread cached one first.
+     *
+     * @param plan A freshly compiled plan of {@link #closedImplType}.
+     * @return The cached plan: {@code plan}, or the one that won the race.
+     */
+    ConstructorPlan<?> cacheClosedPlan(ConstructorPlan<?> plan) {
+        return CLOSED_PLAN.compareAndSet(this, null, plan) ? plan : closedPlan;
+    }
+
+    /** Whether this registration can be closed over parameterized requests of its service type. */
+    boolean isOpenGeneric() {
+        return implType != null && instance == null && factory == null && closedImplType == null
+                && implType.getTypeParameters().length > 0 && serviceType.getTypeParameters().length > 0;
+    }
+
+    /** The registered service type as written: the parameterized type if any, else the class name. */
+    String typeName() {
+        return genericType != null ? genericType.getTypeName() : serviceType.getName();
     }
 
     static <T> ServiceDescriptor<T> instance(Class<T> serviceType, T instance, ServiceLifetime l) {
-        return new ServiceDescriptor<>(serviceType, null, null, instance, l);
+        return new ServiceDescriptor<>(serviceType, null, null, instance, l, null);
     }
     static <T> ServiceDescriptor<T> supplier(Class<T> serviceType, Supplier<? extends T> s, ServiceLifetime l) {
-        return new ServiceDescriptor<>(serviceType, null, s, null, l);
+        return new ServiceDescriptor<>(serviceType, null, r -> s.get(), null, l, null);
+    }
+    static <T> ServiceDescriptor<T> factory(Class<T> serviceType, Function<Resolver, ? extends T> f, ServiceLifetime l) {
+        return new ServiceDescriptor<>(serviceType, null, f, null, l, null);
     }
     static <T, I extends T> ServiceDescriptor<T> implementedBy(Class<T> serviceType, Class<I> implType, ServiceLifetime l) {
-        return new ServiceDescriptor<>(serviceType, implType, null, null, l);
+        return new ServiceDescriptor<>(serviceType, implType, null, null, l, null);
+    }
+    static <T, I extends T> ServiceDescriptor<T> implementedBy(Class<T> serviceType, Class<I> implType, ServiceLifetime l,
+                                                              ActivationStrategy a) {
+        return new ServiceDescriptor<>(serviceType, implType, null, null, l, a);
     }
 }
\ No newline at end of file
@@ -0,0 +1,956 @@
+package org.oldskooler.inject4j;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Lookup tables built once from a set of {@link ServiceDescriptor} registrations, together with the
+ * per-provider state those registrations need at resolution time.
+ * <p>
+ * A single index is created by {@link ServiceCollection#buildServiceProvider()} and shared by the
+ * root {@link ServiceProvider} and every {@link Scope} created from it, so the cost of organizing
+ * the registrations is paid once per provider rather than on every resolution.
+ * </p>
+ *
+ * <p><strong>Exact lookup</strong></p>
+ * <p>
+ * Descriptors are keyed by their {@code serviceType}. When the same service type is registered
+ * more than once, the <em>first</em> registration wins, matching the previous linear scan. Every
+ * registration of a service type is also kept, in order, in a per-type array, so enumerating all of
+ * them ({@link #findAll(Class)}) is a single table read.
+ * </p>
+ *
+ * <p><strong>Keyed lookup</strong></p>
+ * <p>
+ * Registrations made under a key are left out of the tables above and kept in a two-level table,
+ * by {@code serviceType} and then by key, so a keyed lookup is two hash reads and allocates nothing.
+ * Registrations of a parameterized type ({@link TypeToken}) are likewise kept apart, keyed by the
+ * canonical form of that type ({@link Types#canonicalize}), so {@code Repository<User>} and
+ * {@code Repository<Order>} never collide and a lookup hashes a cached value instead of walking
+ * type arguments.
+ * </p>
+ *
+ * <p><strong>Open generics</strong></p>
+ * <p>
+ * A registration whose implementation class declares type parameters (such as
+ * {@code Repository -> JpaRepository<T>}) is closed on demand when a fully specified parameterized
+ * type without a registration of its own is requested. The closed descriptors are memoized per
+ * requested type and carry their own construction plan, so matching type arguments and choosing a
+ * constructor happen once per closed type rather than on every resolution, and reading the plan
+ * again is a single volatile load. Closed descriptors own the identity of their singleton and scoped
+ * instances, so nothing is evicted: the tables grow by one entry per closed type requested.
+ * </p>
+ *
+ * <p><strong>Assignable lookup</strong></p>
+ * <p>
+ * For every descriptor whose produced type is known without construction, the produced type and its
+ * full superclass/interface closure are recorded, so the candidates for any requested abstraction are
+ * a single table read. The most specific candidate (or the ambiguity error) is then memoized per
+ * requested type, so repeated fallback resolutions do no reflection at all.
+ * </p>
+ *
+ * <p><strong>Singletons</strong></p>
+ * <p>
+ * Every SINGLETON descriptor gets its own {@link InstanceHolder}, created with the index. Because the
+ * index is shared, the provider and all of its scopes read and create singletons through the same
+ * holders: resolving an existing singleton is a table read plus one volatile load, and creating one
+ * never takes a lock shared with other registrations.
+ * </p>
+ *
+ * <p><strong>Scoped slots</strong></p>
+ * <p>
+ * Every SCOPED descriptor is assigned a dense slot number, so each {@link Scope} can keep its scoped
+ * instances in a plain array sized {@link #scopedCount()} instead of a map of its own.
+ * </p>
+ *
+ * <p><strong>Construction plans</strong></p>
+ * <p>
+ * The {@link ConstructorPlan} for each implementation type is compiled on first use and cached here,
+ * so constructor selection and parameter binding happen once per provider. The {@link InstanceFactory}
+ * for every constructor the provider invokes (including those chosen by {@link Activator}) is cached
+ * as well, built with the configured {@link ActivationStrategy} or the strategy requested by the
+ * registration of that implementation type. Plans for registrations that request
+ * {@link ActivationStrategy#LAMBDA_METAFACTORY} are compiled eagerly while the index is built.
+ * </p>
+ *
+ * <p><strong>Validation</strong></p>
+ * <p>
+ * With {@link ServiceProviderOptions#isValidateOnBuild()}, the plan of every registration is compiled
+ * while the index is built and the bound dependency graph is checked for cycles and captive scoped
+ * dependencies. All problems are reported in a single exception. Once validated, the plan cache is
+ * complete for registered services and activation skips the per-request cycle bookkeeping. Without
+ * validation, the graph reachable from a plan is checked for cycles once, on the plan's first
+ * activation ({@link #checkAcyclic}); later activations only bump a thread-local depth counter.
+ * </p>
+ *
+ * <p><strong>Compiled resolution</strong></p>
+ * <p>
+ * With {@link ServiceProviderOptions#isCompiledResolution()}, every descriptor is also compiled into a
+ * {@link CompiledService} node linked directly to the nodes of its dependencies, and requested types
+ * map straight to nodes.
+ * </p>
+ *
+ * <p><strong>Metrics</strong></p>
+ * <p>
+ * With {@link ServiceProviderOptions#isMetricsEnabled()}, every descriptor gets its own
+ * {@link ServiceCounters}, created with the index (closed generics on first use). The provider and its
+ * scopes look them up per resolution; compiled nodes hold theirs directly.
+ * </p>
+ *
+ * <p><strong>Tracing</strong></p>
+ * <p>
+ * With {@link ServiceProviderOptions#isResolutionTracing()}, the provider and its scopes report every
+ * descriptor they resolve to the calling thread's {@link ResolutionTracer}. Compiled resolution is not
+ * used then, so that the regular path is the only one to report.
+ * </p>
+ *
+ * @implNote This class is package-private and not intended for external use.
+ */
+final class ServiceIndex {
+    private static final ServiceDescriptor<?>[] NO_DESCRIPTORS = new ServiceDescriptor<?>[0];
+
+    /** Options the provider was built with. */
+    private final ServiceProviderOptions options;
+    /** All registered descriptors, in registration order. */
+    private final List<ServiceDescriptor<?>> descriptors;
+    /** Exact {@code serviceType -> descriptor} lookup table. */
+    private final Map<Class<?>, ServiceDescriptor<?>> exact;
+    /** {@code serviceType -> every descriptor registered for it}, in registration order. */
+    private final Map<Class<?>, ServiceDescriptor<?>[]> all;
+    /** {@code serviceType -> key -> every keyed descriptor registered for it}, in registration order. */
+    private final Map<Class<?>, Map<Object, ServiceDescriptor<?>[]>> keyed;
+    /** {@code canonical parameterized type -> every descriptor registered for it}, in registration order. */
+    private final Map<Type, ServiceDescriptor<?>[]> generic;
+    /** Whether any registration is an open generic ({@link ServiceDescriptor#isOpenGeneric()}). */
+    private final boolean hasOpenGenerics;
+    /**
+     * {@code canonical parameterized type -> registrations of its raw class}, with open generics closed
+     * over the type. Closed descriptors own the identity of their singleton and scoped instances, so
+     * entries are never evicted.
+     */
+    private final ConcurrentMap<Type, ServiceDescriptor<?>[]> closed = new ConcurrentHashMap<>();
+    /** Instance holder per closed SINGLETON descriptor (identity-keyed), created on first use. */
+    private final ConcurrentMap<ServiceDescriptor<?>, InstanceHolder<?>> closedSingletons = new ConcurrentHashMap<>();
+    /** {@code supertype -> descriptors whose produced type is assignable to it}, in registration order. */
+    private final Map<Class<?>, List<ServiceDescriptor<?>>> assignable;
+    /** Memoized outcome of {@link #findBestAssignableMatch(Class)} per requested type. */
+    private final ConcurrentMap<Class<?>, AssignableMatch> assignableMatches = new ConcurrentHashMap<>();
+    /** Instance holder per SINGLETON descriptor (identity-keyed). */
+    private final Map<ServiceDescriptor<?>, InstanceHolder<?>> singletons;
+    /** Slot number per SCOPED descriptor (identity-keyed), dense from zero. */
+    private final Map<ServiceDescriptor<?>, Integer> scopedSlots;
+    /** Activation strategies requested by individual registrations, per implementation type. */
+    private final Map<Class<?>, ActivationStrategy> strategies;
+    /** Compiled construction plans per implementation type. */
+    private final ConcurrentMap<Class<?>, ConstructorPlan<?>> plans = new ConcurrentHashMap<>();
+    /** Prepared constructor invokers, per constructor. */
+    private final ConcurrentMap<Constructor<?>, InstanceFactory<?>> instanceFactories = new ConcurrentHashMap<>();
+    /** Whether the dependency graph was validated (complete, acyclic) when the index was built. */
+    private final boolean validated;
+    /** Whether resolutions report to the calling thread's {@link ResolutionTracer}. */
+    private final boolean tracing;
+    /** Compiled node per descriptor; {@code null} unless compiled resolution is enabled. */
+    private final Map<ServiceDescriptor<?>, CompiledService<?>> compiled;
+    /** Compiled node per requested type (exact matches up front, assignable matches memoized). */
+    private final ConcurrentMap<Class<?>, CompiledService<?>> compiledByType = new ConcurrentHashMap<>();
+    /** Metrics per descriptor (identity-keyed); {@code null} unless metrics are enabled. */
+    private final Map<ServiceDescriptor<?>, ServiceCounters> counters;
+    /** Metrics per closed generic descriptor (identity-keyed), created on first use. */
+    private final ConcurrentMap<ServiceDescriptor<?>, ServiceCounters> closedCounters = new ConcurrentHashMap<>();
+
+    /**
+     * Builds the index for the given registrations with default options.
+     *
+     * @param descriptors The service descriptors available for resolution.
+     */
+    ServiceIndex(List<ServiceDescriptor<?>> descriptors) {
+        this(descriptors, new ServiceProviderOptions());
+    }
+
+    /**
+     * Builds the index for the given registrations.
+     *
+     * @param descriptors The service descriptors available for resolution.
+     * @param options     The options the provider is built with.
+     */
+    ServiceIndex(List<ServiceDescriptor<?>> descriptors, ServiceProviderOptions options) {
+        this.options = options;
+        this.descriptors = Collections.unmodifiableList(new ArrayList<>(descriptors));
+
+        Map<Class<?>, ServiceDescriptor<?>> map = new HashMap<>(Math.max(16, descriptors.size() * 2));
+        for (ServiceDescriptor<?> d : this.descriptors) {
+            if (isPlain(d)) map.putIfAbsent(d.serviceType, d); // first registration wins
+        }
+        this.exact = map;
+
+        Map<Class<?>, List<ServiceDescriptor<?>>> byType = new HashMap<>();
+        Map<Class<?>, Map<Object, List<ServiceDescriptor<?>>>> byKey = new HashMap<>();
+        Map<Type, List<ServiceDescriptor<?>>> byGenericType = new HashMap<>();
+        for (ServiceDescriptor<?> d : this.descriptors) {
+            if (d.key != null) {
+                byKey.computeIfAbsent(d.serviceType, k -> new HashMap<>()).computeIfAbsent(d.key, k -> new ArrayList<>()).add(d);
+            }
+            else if (d.genericType != null) byGenericType.computeIfAbsent(d.genericType, k -> new ArrayList<>()).add(d);
+            else byType.computeIfAbsent(d.serviceType, k -> new ArrayList<>()).add(d);
+        }
+        this.all = toArrays(byType);
+        Map<Class<?>, Map<Object, ServiceDescriptor<?>[]>> keyedByType = new HashMap<>(Math.max(16, byKey.size() * 2));
+        for (Map.Entry<Class<?>, Map<Object, List<ServiceDescriptor<?>>>> e : byKey.entrySet()) {
+            keyedByType.put(e.getKey(), toArrays(e.getValue()));
+        }
+        this.keyed = keyedByType;
+        this.generic = toArrays(byGenericType);
+
+        boolean open = false;
+        for (ServiceDescriptor<?> d : this.descriptors) open |= isPlain(d) && d.isOpenGeneric();
+        this.hasOpenGenerics = open;
+
+        Map<Class<?>, List<ServiceDescriptor<?>>> closure = new HashMap<>();
+        for (ServiceDescriptor<?> d : this.descriptors) {
+            if (!isPlain(d)) continue; // keyed and generic registrations are only found by key or full type
+            Class<?> produced = producedType(d);
+            if (produced == null) continue; // factory-only with unknown type; skip to avoid constructing
+            for (Class<?> supertype : supertypes(produced)) {
+                closure.computeIfAbsent(supertype, k -> new ArrayList<>()).add(d);
+            }
+        }
+        this.assignable = closure;
+
+        Map<ServiceDescriptor<?>, InstanceHolder<?>> holders = new IdentityHashMap<>();
+        for (ServiceDescriptor<?> d : this.descriptors) {
+            if (d.lifetime == ServiceLifetime.SINGLETON) holders.put(d, new InstanceHolder<>(d));
+        }
+        this.singletons = holders;
+
+        Map<ServiceDescriptor<?>, Integer> slots = new IdentityHashMap<>();
+        for (ServiceDescriptor<?> d : this.descriptors) {
+            if (d.lifetime == ServiceLifetime.SCOPED) slots.put(d, slots.size());
+        }
+        this.scopedSlots = slots;
+
+        Map<Class<?>, ActivationStrategy> requested = new HashMap<>();
+        for (ServiceDescriptor<?> d : this.descriptors) {
+            if (d.implType != null && d.activationStrategy != null) {
+                requested.putIfAbsent(d.implType, d.activationStrategy);
+            }
+        }
+        this.strategies = requested;
+
+        for (Map.Entry<Class<?>, ActivationStrategy> e : requested.entrySet()) {
+            if (e.getValue() != ActivationStrategy.LAMBDA_METAFACTORY) continue;
+            try {
+                plan(e.getKey()); // spin the factory now rather than on the first request
+            } catch (IllegalStateException unresolvable) {
+                // Leave it lazy: the same error is reported when the service is first requested.
+            }
+        }
+
+        Map<ServiceDescriptor<?>, ServiceCounters> metrics = null;
+        if (options.isMetricsEnabled()) {
+            metrics = new IdentityHashMap<>();
+            for (ServiceDescriptor<?> d : this.descriptors) metrics.put(d, new ServiceCounters(d));
+        }
+        this.counters = metrics;
+
+        if (options.isValidateOnBuild()) validate();
+        this.validated = options.isValidateOnBuild();
+
+        this.tracing = options.isResolutionTracing();
+        this.compiled = options.isCompiledResolution() && !tracing ? compile() : null; // traces show the regular path
+    }
+
+    /**
+     * Compiles the plan of every registration and checks the bound graph for cycles and for singletons
+     * that capture scoped services.
+     *
+     * @throws IllegalStateException listing every problem found.
+     */
+    private void validate() {
+        List<String> problems = new ArrayList<>();
+        Map<ServiceDescriptor<?>, ConstructorPlan<?>> graph = new IdentityHashMap<>();
+        for (ServiceDescriptor<?> d : descriptors) {
+            if (d.instance != null || d.factory != null) continue;
+            if (d.isOpenGeneric()) continue; // constructors may depend on type arguments; checked when closed
+            try {
+                graph.put(d, plan(d.implType));
+            } catch (IllegalStateException e) {
+                problems.add(describe(d) + ": " + e.getMessage());
+            }
+        }
+
+        if (problems.isEmpty()) {
+            Map<ServiceDescriptor<?>, Boolean> done = new IdentityHashMap<>(); // false = on the current path
+            for (ServiceDescriptor<?> d : descriptors) {
+                findCycle(d, graph, done, new ArrayDeque<>(), problems);
+            }
+        }
+
+        if (problems.isEmpty()) {
+            for (ServiceDescriptor<?> d : descriptors) {
+                if (d.lifetime != ServiceLifetime.SINGLETON) continue;
+                ServiceDescriptor<?> captive = findScoped(d, graph, Collections.newSetFromMap(new IdentityHashMap<>()));
+                if (captive != null) {
+                    problems.add(describe(d) + ": Cannot consume scoped service " + captive.typeName()
+                            + " from singleton " + d.typeName() + ".");
+                }
+            }
+        }
+
+        if (!problems.isEmpty()) {
+            throw new IllegalStateException("Some services are not able to be constructed:\n\n"
+                    + String.join("\n\n", problems));
+        }
+    }
+
+    private static void findCycle(ServiceDescriptor<?> d, Map<ServiceDescriptor<?>, ConstructorPlan<?>> graph,
+                                  Map<ServiceDescriptor<?>, Boolean> done, Deque<ServiceDescriptor<?>> path,
+                                  List<String> problems) {
+        Boolean state = done.get(d);
+        if (state != null) {
+            if (!state) {
+                List<String> chain = new ArrayList<>();
+                boolean inCycle = false;
+                for (Iterator<ServiceDescriptor<?>> it = path.descendingIterator(); it.hasNext(); ) {
+                    ServiceDescriptor<?> p = it.next();
+                    if (p == d) inCycle = true;
+                    if (inCycle) chain.add(producedType(p).getSimpleName());
+                }
+                chain.add(producedType(d).getSimpleName());
+                problems.add(describe(d) + ": Circular dependency detected: " + String.join(" -> ", chain));
+            }
+            return;
+        }
+        done.put(d, false);
+        path.push(d);
+        ConstructorPlan<?> plan = graph.get(d);
+        if (plan != null) {
+            for (Binding b : plan.bindings) {
+                if (b.isDeferred()) continue;
+                for (ServiceDescriptor<?> dep : b.targets) findCycle(dep, graph, done, path, problems);
+            }
+        }
+        path.pop();
+        done.put(d, true);
+    }
+
+    /**
+     * Checks the graph reachable from a plan for constructor cycles, compiling the plans of the
+     * registrations it reaches, and marks every plan visited as {@linkplain ConstructorPlan#acyclic
+     * acyclic}. This moves cycle detection of providers that were not validated on build from every
+     * activation to the first activation of each plan. Deferred bindings are not followed, and
+     * registrations whose plan cannot be compiled are leaves: they fail when they are reached.
+     *
+     * @param root A plan of this index.
+     * @throws IllegalStateException if the graph has a cycle.
+     */
+    void checkAcyclic(ConstructorPlan<?> root) {
+        Map<ConstructorPlan<?>, Boolean> done = new IdentityHashMap<>(); // false = on the current path
+        String cycle = findCycle(root, done, new ArrayDeque<>());
+        if (cycle != null) throw new IllegalStateException("Circular dependency detected: " + cycle);
+        for (ConstructorPlan<?> plan : done.keySet()) plan.acyclic = true;
+    }
+
+    private String findCycle(ConstructorPlan<?> plan, Map<ConstructorPlan<?>, Boolean> done,
+                             Deque<ConstructorPlan<?>> path) {
+        if (plan.acyclic) return null;
+        Boolean state = done.get(plan);
+        if (state != null) return state ? null : renderCycle(path, plan);
+        done.put(plan, false);
+        path.push(plan);
+        for (Binding b : plan.bindings) {
+            if (b.isDeferred()) continue;
+            for (ServiceDescriptor<?> dep : b.targets) {
+                if (dep.instance != null || dep.factory != null) continue;
+                ConstructorPlan<?> next;
+                try {
+                    next = plan(dep);
+                } catch (IllegalStateException unresolvable) {
+                    continue;
+                }
+                String cycle = findCycle(next, done, path);
+                if (cycle != null) return cycle;
+            }
+        }
+        path.pop();
+        done.put(plan, true);
+        return null;
+    }
+
+    private static String renderCycle(Deque<ConstructorPlan<?>> path, ConstructorPlan<?> repeat) {
+        List<String> chain = new ArrayList<>();
+        boolean inCycle = false;
+        for (Iterator<ConstructorPlan<?>> it = path.descendingIterator(); it.hasNext(); ) {
+            ConstructorPlan<?> p = it.next();
+            if (p == repeat) inCycle = true;
+            if (inCycle) chain.add(p.constructor.getDeclaringClass().getSimpleName());
+        }
+        chain.add(repeat.constructor.getDeclaringClass().getSimpleName());
+        return String.join(" -> ", chain);
+    }
+
+    /**
+     * Finds a SCOPED registration reachable from {@code d} through transient registrations, including
+     * through deferred bindings, which resolve from the same resolver later.
+     */
+    private static ServiceDescriptor<?> findScoped(ServiceDescriptor<?> d,
+                                                   Map<ServiceDescriptor<?>, ConstructorPlan<?>> graph,
+                                                   Set<ServiceDescriptor<?>> seen) {
+        ConstructorPlan<?> plan = graph.get(d);
+        if (plan == null || !seen.add(d)) return null;
+        for (Binding b : plan.bindings) {
+            for (ServiceDescriptor<?> dep : b.targets) {
+                if (dep.lifetime == ServiceLifetime.SCOPED) return dep;
+                if (dep.lifetime == ServiceLifetime.TRANSIENT) {
+                    ServiceDescriptor<?> captive = findScoped(dep, graph, seen);
+                    if (captive != null) return captive;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static String describe(ServiceDescriptor<?> d) {
+        Class<?> produced = producedType(d);
+        return d.typeName() + (d.key != null ? " [key: " + d.key + "]" : "") + (produced != null && produced != d.serviceType ? " -> " + produced.getName() : "")
+                + " (" + d.lifetime + ")";
+    }
+
+    /**
+     * Indicates whether the registrations were validated when the index was built.
+     *
+     * @return {@code true} if every registered plan is compiled and the graph is known to be acyclic.
+     */
+    boolean isValidated() {
+        return validated;
+    }
+
+    /**
+     * Compiles every descriptor into a {@link CompiledService} node and links each node to the nodes
+     * bound to its constructor parameters.
+     *
+     * @return The node per descriptor (identity-keyed).
+     */
+    private Map<ServiceDescriptor<?>, CompiledService<?>> compile() {
+        Map<ServiceDescriptor<?>, CompiledService<?>> nodes = new IdentityHashMap<>();
+        Map<CompiledService<?>, ConstructorPlan<?>> pending = new IdentityHashMap<>();
+
+        for (ServiceDescriptor<?> d : descriptors) {
+            if (d.instance != null || d.factory != null) {
+                nodes.put(d, CompiledService.forLifetime(d, this));
+                continue;
+            }
+            ConstructorPlan<?> plan;
+            try {
+                plan = plan(d.implType);
+                if (!validated) checkAcyclic(plan); // compiled nodes skip the check on activation
+            } catch (IllegalStateException unresolvableOrCyclic) {
+                nodes.put(d, new CompiledService.Deferred<>(d)); // reported on first request
+                continue;
+            }
+            CompiledService<?> node = CompiledService.forLifetime(d, this);
+            nodes.put(d, node);
+            pending.put(node, plan);
+        }
+
+        for (Map.Entry<CompiledService<?>, ConstructorPlan<?>> e : pending.entrySet()) {
+            link(e.getKey(), e.getValue(), nodes);
+        }
+
+        for (ServiceDescriptor<?> d : descriptors) {
+            if (isPlain(d)) compiledByType.putIfAbsent(d.serviceType, nodes.get(d)); // first registration wins
+        }
+        return nodes;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> void link(CompiledService<T> node, ConstructorPlan<?> plan,
+                                 Map<ServiceDescriptor<?>, CompiledService<?>> nodes) {
+        CompiledService<?>[] deps = new CompiledService<?>[plan.bindings.length];
+        for (int i = 0; i < deps.length; i++) {
+            Binding b = plan.bindings[i];
+            if (b instanceof Binding.Direct) deps[i] = nodeOf(b.target, nodes);
+            else if (b instanceof Binding.AllOf) deps[i] = new CompiledService.All((Binding.AllOf) b, nodesOf(b.targets, nodes));
+            else if (b.target != null) deps[i] = new CompiledService.Bound(b, nodeOf(b.target, nodes));
+        }
+        node.dependencies = deps;
+        node.factory = (InstanceFactory<T>) plan.factory;
+    }
+
+    private static CompiledService<?>[] nodesOf(ServiceDescriptor<?>[] targets,
+                                                Map<ServiceDescriptor<?>, CompiledService<?>> nodes) {
+        CompiledService<?>[] out = new CompiledService<?>[targets.length];
+        for (int i = 0; i < targets.length; i++) out[i] = nodeOf(targets[i], nodes);
+        return out;
+    }
+
+    // Closed generics are created on demand, not compiled; they resolve through the regular path.
+    private static CompiledService<?> nodeOf(ServiceDescriptor<?> target, Map<ServiceDescriptor<?>, CompiledService<?>> nodes) {
+        CompiledService<?> node = nodes.get(target);
+        return node != null ? node : new CompiledService.Deferred<>(target);
+    }
+
+    /**
+     * Returns the metrics of a descriptor.
+     *
+     * @param d A descriptor of this index.
+     * @return The counters to record its resolutions in, or {@code null} if metrics are disabled.
+     */
+    ServiceCounters counters(ServiceDescriptor<?> d) {
+        if (counters == null) return null;
+        ServiceCounters c = counters.get(d);
+        if (c != null) return c;
+        c = closedCounters.get(d); // closed generic
+        return c != null ? c : closedCounters.computeIfAbsent(d, ServiceCounters::new);
+    }
+
+    /**
+     * Takes a snapshot of the metrics of every registration.
+     *
+     * @return One entry per registration in registration order, followed by the closed generic types
+     *         resolved so far; empty if metrics are disabled.
+     */
+    List<ServiceMetrics> metrics() {
+        if (counters == null) return Collections.emptyList();
+        List<ServiceMetrics> out = new ArrayList<>(counters.size() + closedCounters.size());
+        for (ServiceDescriptor<?> d : descriptors) out.add(counters.get(d).snapshot());
+        for (ServiceCounters c : closedCounters.values()) out.add(c.snapshot());
+        return Collections.unmodifiableList(out);
+    }
+
+    /**
+     * Indicates whether this index was built with resolution tracing.
+     *
+     * @return {@code true} if resolutions must report to {@link ResolutionTracer#current()}.
+     */
+    boolean isTracing() {
+        return tracing;
+    }
+
+    /**
+     * Indicates whether this index was built with compiled resolution.
+     *
+     * @return {@code true} if {@link #findCompiled(Class)} may be used.
+     */
+    boolean isCompiled() {
+        return compiled != null;
+    }
+
+    /**
+     * Finds the compiled node that satisfies a request for {@code type}: the exact registration if
+     * present, otherwise the best assignable match (memoized).
+     *
+     * @param <T>  The requested service type.
+     * @param type The requested class.
+     * @return The node, or {@code null} if none.
+     * @throws IllegalStateException if the assignable match is ambiguous.
+     */
+    @SuppressWarnings("unchecked")
+    <T> CompiledService<T> findCompiled(Class<T> type) {
+        CompiledService<?> node = compiledByType.get(type);
+        if (node == null) {
+            ServiceDescriptor<T> d = findBestAssignableMatch(type);
+            if (d == null) return null;
+            node = compiled.get(d);
+            compiledByType.putIfAbsent(type, node);
+        }
+        return (CompiledService<T>) node;
+    }
+
+    /**
+     * Returns all registered descriptors in registration order.
+     *
+     * @return An unmodifiable list of descriptors.
+     */
+    List<ServiceDescriptor<?>> descriptors() {
+        return descriptors;
+    }
+
+    /**
+     * Returns the holder of a SINGLETON descriptor's instance.
+     *
+     * @param <T> The service type.
+     * @param d   A SINGLETON descriptor of this index.
+     * @return The holder shared by the provider and all of its scopes.
+     */
+    @SuppressWarnings("unchecked")
+    <T> InstanceHolder<T> singleton(ServiceDescriptor<T> d) {
+        InstanceHolder<?> holder = singletons.get(d);
+        if (holder == null) holder = closedSingletons.computeIfAbsent(d, InstanceHolder::new); // closed generic
+        return (InstanceHolder<T>) holder;
+    }
+
+    /**
+     * Makes every SINGLETON holder read and publish its instance through {@code cache}, keyed by
+     * service type. Supports the deprecated {@link Scope#Scope(List, Map)} constructor.
+     *
+     * @param cache The singleton map passed by the caller.
+     */
+    void shareSingletons(Map<Class<?>, Object> cache) {
+        for (InstanceHolder<?> holder : singletons.values()) holder.share(cache);
+    }
+
+    /**
+     * Returns the slot a SCOPED descriptor's instance occupies in every scope of this provider.
+     *
+     * @param d A SCOPED descriptor of this index.
+     * @return The slot, between {@code 0} and {@link #scopedCount()} (exclusive); {@code -1} for a
+     *         closed generic descriptor, which has no slot.
+     */
+    int scopedSlot(ServiceDescriptor<?> d) {
+        Integer slot = scopedSlots.get(d);
+        return slot != null ? slot : -1;
+    }
+
+    /**
+     * Returns the number of SCOPED registrations, i.e. the number of slots a scope needs.
+     *
+     * @return The slot count.
+     */
+    int scopedCount() {
+        return scopedSlots.size();
+    }
+
+    /**
+     * Finds a descriptor whose {@code serviceType} exactly equals the requested type.
+     *
+     * @param <T>  The service type.
+     * @param type The requested type.
+     * @return The exact descriptor, or {@code null} if none.
+     */
+    @SuppressWarnings("unchecked")
+    <T> ServiceDescriptor<T> findDescriptorExact(Class<T> type) {
+        return (ServiceDescriptor<T>) exact.get(type);
+    }
+
+    /**
+     * Returns every descriptor registered for exactly {@code type}, in registration order.
+     *
+     * @param type The requested service type.
+     * @return The descriptors; empty (never {@code null}) if there are none. Callers must not modify it.
+     */
+    ServiceDescriptor<?>[] findAll(Class<?> type) {
+        ServiceDescriptor<?>[] d = all.get(type);
+        return d != null ? d : NO_DESCRIPTORS;
+    }
+
+    /**
+     * Finds the first descriptor registered for exactly {@code type} under {@code key}.
+     *
+     * @param <T>  The service type.
+     * @param type The requested service type.
+     * @param key  The key the service was registered under.
+     * @return The keyed descriptor, or {@code null} if none.
+     */
+    @SuppressWarnings("unchecked")
+    <T> ServiceDescriptor<T> findKeyed(Class<T> type, Object key) {
+        ServiceDescriptor<?>[] d = keyedOf(type, key);
+        return d != null ? (ServiceDescriptor<T>) d[0] : null;
+    }
+
+    /**
+     * Returns every descriptor registered for exactly {@code type} under {@code key}, in registration order.
+     *
+     * @param type The requested service type.
+     * @param key  The key the services were registered under.
+     * @return The descriptors; empty (never {@code null}) if there are none. Callers must not modify it.
+     */
+    ServiceDescriptor<?>[] findAllKeyed(Class<?> type, Object key) {
+        ServiceDescriptor<?>[] d = keyedOf(type, key);
+        return d != null ? d : NO_DESCRIPTORS;
+    }
+
+    private ServiceDescriptor<?>[] keyedOf(Class<?> type, Object key) {
+        Map<Object, ServiceDescriptor<?>[]> byKey = keyed.get(type);
+        return byKey != null ? byKey.get(key) : null;
+    }
+
+    /**
+     * Finds the descriptor that would satisfy a request for a possibly generic {@code type}: the first
+     * registration of exactly that parameterized type if there is one, otherwise the registration
+     * that satisfies its raw class ({@link #findDescriptor(Class)}).
+     *
+     * @param type The requested type.
+     * @return The descriptor, or {@code null} if none.
+     * @throws IllegalStateException if the assignable match of the raw class is ambiguous.
+     */
+    ServiceDescriptor<?> findByType(Type type) {
+        if (type instanceof Class) return findDescriptor((Class<?>) type);
+        ServiceDescriptor<?>[] d = findAllByType(type);
+        return d.length > 0 ? d[0] : findDescriptor(Types.rawType(type));
+    }
+
+    /**
+     * Returns every descriptor registered for a possibly generic {@code type}: the registrations of
+     * exactly that parameterized type if there are any, otherwise those of its raw class.
+     *
+     * @param type The requested type.
+     * @return The descriptors; empty (never {@code null}) if there are none. Callers must not modify it.
+     */
+    ServiceDescriptor<?>[] findAllByType(Type type) {
+        if (type instanceof Class) return findAll((Class<?>) type);
+        Type canonical = Types.canonicalize(type);
+        if (!generic.isEmpty()) {
+            ServiceDescriptor<?>[] d = generic.get(canonical);
+            if (d != null) return d;
+        }
+        if (!hasOpenGenerics || !(canonical instanceof ParameterizedType) || !Types.isFullySpecified(canonical)) {
+            return findAll(Types.rawType(canonical));
+        }
+        ServiceDescriptor<?>[] d = closed.get(canonical);
+        if (d == null) {
+            d = close((ParameterizedType) canonical);
+            ServiceDescriptor<?>[] raced = closed.putIfAbsent(canonical, d);
+            if (raced != null) d = raced;
+        }
+        return d;
+    }
+
+    /**
+     * Returns the registrations of {@code type}'s raw class, with every open generic among them
+     * closed over {@code type}. Registrations that cannot be closed over it are kept as they are.
+     */
+    private ServiceDescriptor<?>[] close(ParameterizedType type) {
+        ServiceDescriptor<?>[] raw = findAll((Class<?>) type.getRawType());
+        ServiceDescriptor<?>[] out = raw;
+        for (int i = 0; i < raw.length; i++) {
+            ServiceDescriptor<?> d = raw[i];
+            if (!d.isOpenGeneric()) continue;
+            ParameterizedType implType = Types.closeOver(d.implType, type);
+            if (implType == null) continue;
+            if (out == raw) out = raw.clone();
+            out[i] = d.closed(type, implType);
+        }
+        return out;
+    }
+
+    /**
+     * Finds the descriptor that would satisfy a request for {@code type}: the exact registration if
+     * present, otherwise the best assignable match.
+     *
+     * @param <T>  The requested service type.
+     * @param type The requested class.
+     * @return The descriptor, or {@code null} if none.
+     * @throws IllegalStateException if the assignable match is ambiguous.
+     */
+    <T> ServiceDescriptor<T> findDescriptor(Class<T> type) {
+        ServiceDescriptor<T> d = findDescriptorExact(type);
+        return d != null ? d : findBestAssignableMatch(type);
+    }
+
+    /**
+     * Indicates whether a request for {@code type} could be satisfied.
+     *
+     * <p>Returns {@code true} if an exact descriptor exists, a non-ambiguous assignable match exists,
+     * or the type is concrete and eligible for self-binding.</p>
+     *
+     * @param type The requested service type.
+     * @return {@code true} if resolution would succeed; otherwise {@code false}.
+     */
+    boolean canResolve(Class<?> type) {
+        if (findDescriptorExact(type) != null) return true;
+        if (findBestAssignableMatch(type) != null) return true;
+        return isConcrete(type); // eligible for self-binding
+    }
+
+    /**
+     * Returns the construction plan of a registration: the plan of its implementation type, or for a
+     * closed generic, the plan of its closed implementation type.
+     *
+     * @param <T> The service type.
+     * @param d   A descriptor with an implementation type.
+     * @return The plan (never {@code null}).
+     * @throws IllegalStateException if the type is abstract or no constructor can be satisfied.
+     */
+    @SuppressWarnings("unchecked")
+    <T> ConstructorPlan<? extends T> plan(ServiceDescriptor<T> d) {
+        if (d.closedImplType == null) return plan(d.implType);
+        ConstructorPlan<?> plan = d.closedPlan();
+        if (plan == null) {
+            plan = d.cacheClosedPlan(ConstructorFactory.compilePlan(d.implType, d.closedImplType, this));
+        }
+        return (ConstructorPlan<? extends T>) plan;
+    }
+
+    /**
+     * Returns the cached construction plan for {@code implType}, compiling it on first use.
+     *
+     * @param <T>      The implementation type.
+     * @param implType The concrete class to construct.
+     * @return The plan (never {@code null}).
+     * @throws IllegalStateException if the type is abstract or no constructor can be satisfied.
+     */
+    @SuppressWarnings("unchecked")
+    <T> ConstructorPlan<T> plan(Class<T> implType) {
+        ConstructorPlan<?> plan = plans.get(implType);
+        if (plan == null) {
+            plan = ConstructorFactory.compilePlan(implType, this);
+            ConstructorPlan<?> raced = plans.putIfAbsent(implType, plan);
+            if (raced != null) plan = raced;
+        }
+        return (ConstructorPlan<T>) plan;
+    }
+
+    /**
+     * Returns the cached invoker for {@code ctor}, preparing it with the configured
+     * {@link ActivationStrategy} on first use.
+     *
+     * @param <T>  The type being constructed.
+     * @param ctor The constructor to invoke.
+     * @return The invoker (never {@code null}).
+     */
+    @SuppressWarnings("unchecked")
+    <T> InstanceFactory<T> instanceFactory(Constructor<T> ctor) {
+        InstanceFactory<?> factory = instanceFactories.get(ctor);
+        if (factory == null) {
+            factory = InstanceFactory.forConstructor(ctor, strategyFor(ctor.getDeclaringClass()));
+            InstanceFactory<?> raced = instanceFactories.putIfAbsent(ctor, factory);
+            if (raced != null) factory = raced;
+        }
+        return (InstanceFactory<T>) factory;
+    }
+
+    /**
+     * Returns the activation strategy for {@code implType}: the one requested by its registration,
+     * or the provider-wide default.
+     *
+     * @param implType The type being constructed.
+     * @return The strategy (never {@code null}).
+     */
+    private ActivationStrategy strategyFor(Class<?> implType) {
+        ActivationStrategy s = strategies.get(implType);
+        return s != null ? s : options.getActivationStrategy();
+    }
+
+    /**
+     * Finds the best descriptor whose produced type is assignable to {@code paramType}.
+     *
+     * <p>When multiple candidates exist, the most specific produced type (the one assignable to every
+     * other candidate) wins; among equally specific candidates the first registration wins. If no
+     * candidate is more specific than all others, the match is ambiguous and an exception is thrown.
+     * Both outcomes are memoized, so subsequent calls for the same type are a single map read.</p>
+     *
+     * @param <T>       The requested service type.
+     * @param paramType The requested class.
+     * @return The best matching descriptor, or {@code null} if none.
+     * @throws IllegalStateException if ambiguity is detected among unrelated candidates.
+     */
+    @SuppressWarnings("unchecked")
+    <T> ServiceDescriptor<T> findBestAssignableMatch(Class<T> paramType) {
+        AssignableMatch m = assignableMatches.get(paramType);
+        if (m == null) {
+            m = computeAssignableMatch(paramType);
+            AssignableMatch raced = assignableMatches.putIfAbsent(paramType, m);
+            if (raced != null) m = raced;
+        }
+        if (m.error != null) throw new IllegalStateException(m.error);
+        return (ServiceDescriptor<T>) m.descriptor;
+    }
+
+    /**
+     * Selects the most specific candidate for {@code paramType} from the closure table.
+     *
+     * @param paramType The requested class.
+     * @return The match outcome (never {@code null}).
+     */
+    private AssignableMatch computeAssignableMatch(Class<?> paramType) {
+        List<ServiceDescriptor<?>> candidates = assignable.get(paramType);
+        if (candidates == null) return AssignableMatch.NONE;
+        if (candidates.size() == 1) return new AssignableMatch(candidates.get(0), null);
+
+        for (ServiceDescriptor<?> candidate : candidates) {
+            Class<?> produced = producedType(candidate);
+            boolean mostSpecific = true;
+            for (ServiceDescriptor<?> other : candidates) {
+                if (!producedType(other).isAssignableFrom(produced)) {
+                    mostSpecific = false;
+                    break;
+                }
+            }
+            if (mostSpecific) return new AssignableMatch(candidate, null);
+        }
+
+        StringBuilder sb = new StringBuilder("Ambiguous assignment for ")
+                .append(paramType.getName()).append(". Candidates produce: ");
+        for (ServiceDescriptor<?> d : candidates) sb.append(producedType(d).getName()).append(", ");
+        sb.setLength(sb.length() - 2);
+        sb.append(". Consider changing the parameter to the abstraction or registering a more specific mapping.");
+        return new AssignableMatch(null, sb.toString());
+    }
+
+    /**
+     * Returns the class this descriptor will produce <em>without</em> creating instances.
+     * <ul>
+     *   <li>If {@code instance} is present, returns {@code instance.getClass()}.</li>
+     *   <li>Else if {@code implType} is present, returns it.</li>
+     *   <li>Else (factory-only with unknown type), returns {@code null}.</li>
+     * </ul>
+     *
+     * @param d The descriptor to inspect.
+     * @return The produced class, or {@code null} if indeterminate.
+     */
+    static Class<?> producedType(ServiceDescriptor<?> d) {
+        if (d.instance != null) return d.instance.getClass();
+        if (d.implType != null) return d.implType;
+        return null;
+    }
+
+    /**
+     * Determines whether a class is concrete (neither an interface nor abstract).
+     *
+     * @param t The class to test.
+     * @return {@code true} if concrete; otherwise {@code false}.
+     */
+    private static boolean isConcrete(Class<?> t) {
+        int m = t.getModifiers();
+        return !t.isInterface() && !Modifier.isAbstract(m);
+    }
+
+    /**
+     * Collects {@code type}, all of its superclasses and all interfaces it implements (directly or
+     * through any supertype).
+     *
+     * @param type The produced type.
+     * @return Every type {@code type} is assignable to.
+     */
+    private static Set<Class<?>> supertypes(Class<?> type) {
+        Set<Class<?>> seen = new LinkedHashSet<>();
+        Deque<Class<?>> pending = new ArrayDeque<>();
+        pending.push(type);
+        while (!pending.isEmpty()) {
+            Class<?> c = pending.pop();
+            if (!seen.add(c)) continue;
+            if (c.getSuperclass() != null) pending.push(c.getSuperclass());
+            for (Class<?> i : c.getInterfaces()) pending.push(i);
+        }
+        return seen;
+    }
+
+    /** Whether {@code d} is found by its class: neither keyed nor registered as a parameterized type. */
+    private static boolean isPlain(ServiceDescriptor<?> d) {
+        return d.key == null && d.genericType == null;
+    }
+
+    private static <K> Map<K, ServiceDescriptor<?>[]> toArrays(Map<K, List<ServiceDescriptor<?>>> lists) {
+        Map<K, ServiceDescriptor<?>[]> arrays = new HashMap<>(Math.max(16, lists.size() * 2));
+        for (Map.Entry<K, List<ServiceDescriptor<?>>> e : lists.entrySet()) {
+            arrays.put(e.getKey(), e.getValue().toArray(new ServiceDescriptor<?>[0]));
+        }
+        return arrays;
+    }
+
+    /**
+     * Memoized result of an assignable lookup: a descriptor, nothing, or an ambiguity error.
+     */
+    private static final class AssignableMatch {
+        static final AssignableMatch NONE = new AssignableMatch(null, null);
+
+        final ServiceDescriptor<?> descriptor;
+        final String error;
+        AssignableMatch(ServiceDescriptor<?> descriptor, String error) { this.descriptor = descriptor; this.error = error; }
+    }
+}
@@ -1,5 +1,13 @@
 package org.oldskooler.inject4j;
 
-enum ServiceLifetime {
-    SINGLETON, SCOPED, TRANSIENT
+/**
+ * How long an instance of a registered service lives. Modeled after .NET's {@code ServiceLifetime}.
+ */
+public enum ServiceLifetime {
+    /** One instance per provider, shared by the provider and all of its scopes. */
+    SINGLETON,
+    /** One instance per {@link Scope}, disposed with the scope. */
+    SCOPED,
+    /** A new instance on every request. */
+    TRANSIENT
 }
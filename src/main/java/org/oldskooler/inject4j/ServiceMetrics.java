@@ -0,0 +1,159 @@
+package org.oldskooler.inject4j;
+
+import java.time.Duration;
+
+/**
+ * A point-in-time snapshot of the resolution metrics of one registration, returned by
+ * {@link ServiceProvider#getMetrics()} when the provider is built with
+ * {@linkplain ServiceProviderOptions#setMetricsEnabled(boolean) metrics enabled}.
+ * <p>
+ * A <em>resolution</em> is any request for the service: a {@code getService} call, or the injection
+ * of the service into a constructor, {@code List}, {@link Lazy} or {@link java.util.function.Supplier}.
+ * A <em>construction</em> is a call of the registration's constructor or factory. For singletons and
+ * scoped services, resolutions served from the cache are <em>cache hits</em>; transient services never
+ * hit a cache. Construction times include the dependencies created for the service.
+ * </p>
+ */
+public final class ServiceMetrics {
+    private final Class<?> serviceType;
+    private final String typeName;
+    private final Object key;
+    private final ServiceLifetime lifetime;
+    private final long resolveCount;
+    private final long cacheHitCount;
+    private final long constructionCount;
+    private final long constructionNanos;
+    /** Construction count per histogram bucket (see {@link ServiceCounters#bucket(long)}). */
+    private final long[] histogram;
+
+    ServiceMetrics(Class<?> serviceType, String typeName, Object key, ServiceLifetime lifetime, long resolveCount,
+                   long cacheHitCount, long constructionCount, long constructionNanos, long[] histogram) {
+        this.serviceType = serviceType;
+        this.typeName = typeName;
+        this.key = key;
+        this.lifetime = lifetime;
+        this.resolveCount = resolveCount;
+        this.cacheHitCount = cacheHitCount;
+        this.constructionCount = constructionCount;
+        this.constructionNanos = constructionNanos;
+        this.histogram = histogram;
+    }
+
+    /**
+     * Returns the registered service class.
+     *
+     * @return The service type.
+     */
+    public Class<?> getServiceType() {
+        return serviceType;
+    }
+
+    /**
+     * Returns the full name of the registered service type, including type arguments for generic
+     * registrations (e.g. {@code com.example.Repository<com.example.User>}).
+     *
+     * @return The type name.
+     */
+    public String getTypeName() {
+        return typeName;
+    }
+
+    /**
+     * Returns the key of a keyed registration.
+     *
+     * @return The key, or {@code null} if the registration is not keyed.
+     */
+    public Object getKey() {
+        return key;
+    }
+
+    /**
+     * Returns the lifetime of the registration.
+     *
+     * @return The lifetime.
+     */
+    public ServiceLifetime getLifetime() {
+        return lifetime;
+    }
+
+    /**
+     * Returns how many times the service was resolved.
+     *
+     * @return The resolution count.
+     */
+    public long getResolveCount() {
+        return resolveCount;
+    }
+
+    /**
+     * Returns how many resolutions were served from the singleton or scoped cache.
+     *
+     * @return The cache hit count; always {@code 0} for transient services.
+     */
+    public long getCacheHitCount() {
+        return cacheHitCount;
+    }
+
+    /**
+     * Returns the fraction of resolutions served from the singleton or scoped cache.
+     *
+     * @return The hit ratio between {@code 0} and {@code 1}; {@code 0} if the service was never resolved.
+     */
+    public double getCacheHitRatio() {
+        return resolveCount == 0 ? 0 : (double) cacheHitCount / resolveCount;
+    }
+
+    /**
+     * Returns how many times the registration's constructor or factory was called.
+     *
+     * @return The construction count.
+     */
+    public long getConstructionCount() {
+        return constructionCount;
+    }
+
+    /**
+     * Returns the time spent in all constructions of the service.
+     *
+     * @return The cumulative construction time.
+     */
+    public Duration getTotalConstructionTime() {
+        return Duration.ofNanos(constructionNanos);
+    }
+
+    /**
+     * Returns the construction time below which the given percentage of constructions completed.
+     * <p>
+     * Times are recorded in buckets at most 25% wide; the upper bound of the bucket holding the
+     * percentile is returned, so the result never understates the actual time.
+     * </p>
+     *
+     * @param percentile The percentile, greater than {@code 0} and at most {@code 100} (e.g. {@code 99.9}).
+     * @return The construction time; {@link Duration#ZERO} if the service was never constructed.
+     * @throws IllegalArgumentException if {@code percentile} is out of range.
+     */
+    public Duration getConstructionTimePercentile(double percentile) {
+        if (!(percentile > 0 && percentile <= 100)) {
+            throw new IllegalArgumentException("Percentile must be in (0, 100]: " + percentile);
+        }
+        long total = 0;
+        for (long count : histogram) total += count;
+        if (total == 0) return Duration.ZERO;
+
+        long rank = (long) Math.ceil(percentile / 100 * total);
+        long seen = 0;
+        for (int i = 0; i < histogram.length; i++) {
+            seen += histogram[i];
+            if (seen >= rank) return Duration.ofNanos(ServiceCounters.upperBound(i));
+        }
+        return Duration.ofNanos(ServiceCounters.upperBound(histogram.length - 1));
+    }
+
+    @Override
+    public String toString() {
+        return typeName + (key != null ? " [key: " + key + "]" : "") + " (" + lifetime + "): "
+                + resolveCount + " resolves, " + cacheHitCount + " cache hits, "
+                + constructionCount + " constructions, total " + getTotalConstructionTime()
+                + ", p50 " + getConstructionTimePercentile(50) + ", p99 " + getConstructionTimePercentile(99);
+    }
+}
@@ -0,0 +1,52 @@
+package org.oldskooler.inject4j;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a class whose {@link AddSingleton}, {@link AddScoped} and {@link AddTransient} annotations
+ * describe a set of registrations to be wired at <em>compile time</em>.
+ * <p>
+ * When the {@code inject4j-processor} annotation processor is on the compiler's processor path, it
+ * reads the registrations of every {@code @ServiceModule} class and generates a plain Java container
+ * class next to it. The generated container offers the same API and semantics as
+ * {@link ServiceProvider} and {@link Scope} ({@code getService}, {@code getRequiredService},
+ * {@code createScope}, and an {@link AutoCloseable} scope), but calls constructors directly, so no
+ * reflection happens at runtime. Missing, ambiguous and circular dependencies are reported as
+ * compilation errors.
+ * </p>
+ *
+ * <pre>
+ * &#64;ServiceModule
+ * &#64;AddSingleton(value = Clock.class, implementation = SystemClock.class)
+ * &#64;AddScoped(RequestContext.class)
+ * &#64;AddTransient(Greeter.class)
+ * public class AppModule {}
+ *
+ * AppModuleContainer container = new AppModuleContainer();
+ * try (AppModuleContainer.Scope scope = container.createScope()) {
+ *     Greeter greeter = scope.getRequiredService(Greeter.class);
+ * }
+ * </pre>
+ *
+ * <p>
+ * Only class-based registrations can be expressed this way; factory and instance registrations
+ * still require a {@link ServiceCollection}. Implementation types and their constructors must be
+ * accessible from the module's package.
+ * </p>
+ */
+@Documented
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface ServiceModule {
+    /**
+     * Simple name of the generated container class. Defaults to the module's name followed by
+     * {@code Container}.
+     *
+     * @return The generated class name, or an empty string for the default.
+     */
+    String value() default "";
+}
@@ -1,23 +1,25 @@
 package org.oldskooler.inject4j;
 
-import java.lang.reflect.Modifier;
+import java.time.Duration;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Root service provider that resolves services from a set of {@link ServiceDescriptor}
- * registrations and manages a shared singleton cache.
+ * registrations and owns the singleton instances.
  *
  * <p><strong>Responsibilities</strong></p>
  * <ul>
  *   <li>Resolve services via exact match, best assignable match, or self-binding for concrete classes.</li>
- *   <li>Own and manage the application-wide <em>singleton</em> cache.</li>
+ *   <li>Own the application-wide <em>singleton</em> instances.</li>
  *   <li>Create child {@link Scope scopes} for per-scope (e.g., per-request) resolution.</li>
  * </ul>
  *
  * <p><strong>Lifetimes</strong></p>
  * <ul>
- *   <li><b>SINGLETON</b>: Cached here in {@code singletonCache} and reused across all resolutions/scopes.</li>
+ *   <li><b>SINGLETON</b>: Created once per provider and reused across all resolutions/scopes. Each
+ *       registration's instance lives in its own holder: once created, reading it is a single volatile
+ *       load, and concurrent first requests wait for one creation rather than racing.</li>
  *   <li><b>SCOPED</b>: Not resolvable at the root provider; requesting a scoped service here is an error.</li>
  *   <li><b>TRANSIENT</b>: Newly created on each request.</li>
  * </ul>
@@ -27,14 +29,14 @@ import java.util.concurrent.ConcurrentHashMap;
  *   <li>Exact descriptor match for the requested type.</li>
  *   <li>Assignable match: choose the most specific produced type; throw if ambiguous.</li>
  *   <li>Self-binding: if the requested type is concrete (not abstract/interface), construct it via
- *       {@link ConstructorFactory#createWithInjection(Class, Resolver, Deque)}.</li>
+ *       {@link ConstructorFactory#createWithInjection(Class, Resolver)}.</li>
  * </ol>
  */
-public class ServiceProvider implements Resolver {
-    /** All registered descriptors known to this provider. */
-    private final List<ServiceDescriptor<?>> descriptors;
-    /** Application-wide cache of SINGLETON instances, shared with child scopes. */
-    private final Map<Class<?>, Object> singletonCache = new ConcurrentHashMap<>();
+public class ServiceProvider extends Resolver {
+    /** Lookup tables over all registered descriptors, shared with child scopes. */
+    private final ServiceIndex index;
+    /** Construction times per singleton service type, recorded by {@link #warmUp(ForkJoinPool)}. */
+    private volatile Map<Class<?>, List<Duration>> warmUpTimings = Collections.emptyMap();
 
     /**
      * Creates a new root provider.
@@ -42,17 +44,65 @@ public class ServiceProvider implements Resolver {
      * @param descriptors The service descriptors available for resolution.
      */
     public ServiceProvider(List<ServiceDescriptor<?>> descriptors) {
-        this.descriptors = descriptors;
+        this(new ServiceIndex(descriptors));
     }
 
     /**
-     * Creates a new {@link Scope} that shares this provider's singleton cache,
+     * Creates a new root provider over a prebuilt index.
+     *
+     * @param index The lookup tables built from the registered descriptors.
+     */
+    ServiceProvider(ServiceIndex index) {
+        this.index = index;
+    }
+
+    /**
+     * Returns how long each singleton took to construct when the provider was built with
+     * {@linkplain ServiceProviderOptions#setWarmUpSingletons(boolean) singleton warm-up}.
+     * <p>
+     * Times cover the singleton's own constructor (and any transients created for it), not the
+     * singletons it depends on, which were built before it. A service type registered more than once,
+     * including under different keys or type arguments, has one time per registration.
+     * </p>
+     *
+     * @return Construction times per service type, each list and the map in registration order;
+     *         empty without warm-up.
+     */
+    public Map<Class<?>, List<Duration>> getWarmUpTimings() {
+        return warmUpTimings;
+    }
+
+    /**
+     * Returns a snapshot of the resolution metrics of every registration when the provider was built
+     * with {@linkplain ServiceProviderOptions#setMetricsEnabled(boolean) metrics enabled}.
+     * <p>
+     * Metrics cover resolutions made on this provider and on all of its scopes.
+     * </p>
+     *
+     * @return One entry per registration in registration order, followed by the closed generic types
+     *         resolved so far; empty if metrics are disabled.
+     */
+    public List<ServiceMetrics> getMetrics() {
+        return index.metrics();
+    }
+
+    /**
+     * Creates every singleton now, in dependency order, on the given pool.
+     *
+     * @param pool The pool to build independent singletons on in parallel.
+     */
+    void warmUp(ForkJoinPool pool) {
+        warmUpTimings = Collections.unmodifiableMap(SingletonWarmUp.run(this, index, pool));
+    }
+
+    /**
+     * Creates a new {@link Scope} that shares this provider's singletons,
      * but maintains its own scoped cache and disposal semantics.
      *
      * @return A new {@link Scope} for scoped resolutions.
      */
     public Scope createScope() {
-        return new Scope(descriptors, singletonCache);
+        return new Scope(this);
     }
 
     /**
@@ -68,23 +118,29 @@ public class ServiceProvider implements Resolver {
      */
     @Override
     public <T> T getService(Class<T> type) {
+        // 0) Compiled graph? A single lookup yields the pre-linked node.
+        if (index.isCompiled()) {
+            CompiledService<T> compiled = index.findCompiled(type);
+            return compiled != null ? compiled.resolve(this) : null;
+        }
+
         // 1) Exact registration?
-        ServiceDescriptor<T> exact = findDescriptorExact(type);
+        ServiceDescriptor<T> exact = index.findDescriptorExact(type);
         if (exact != null) {
             return resolveFromDescriptor(exact, this);
         }
 
         // 2) Assignable registration?
-        Match<T> m = findBestAssignableMatch(type);
-        if (m != null) {
-            return resolveFromDescriptor(m.descriptor, this);
+        ServiceDescriptor<T> match = index.findBestAssignableMatch(type);
+        if (match != null) {
+            return resolveFromDescriptor(match, this);
         }
 
         // Removed below because we shouldn't try to create types that aren't registered in the service collection!
 
         // 3) Self-binding for concrete, instantiable classes
         // if (isConcrete(type)) {
-        //    return ConstructorFactory.createWithInjection(type, this, null);
+        //    return ConstructorFactory.createWithInjection(type, this);
         // }
 
         // Nullable behavior: nothing found → return null (no exception here)
@@ -127,7 +183,7 @@ public class ServiceProvider implements Resolver {
      * @throws ServiceNotFoundException if no constructor can be satisfied
      */
     public <T> T createInstance(Class<T> type, Object... explicitArgs) {
-        return Activator.createInstance(new Activator.ServiceResolver() {
+        return Activator.createInstance(index, new Activator.ServiceResolver() {
             @Override public <U> U getService(Class<U> t) { return ServiceProvider.this.getService(t); }
         }, type, explicitArgs);
     }
@@ -143,129 +199,11 @@ public class ServiceProvider implements Resolver {
      */
     @Override
     public boolean canResolve(Class<?> type) {
-        if (findDescriptorExact(type) != null) return true;
-        if (findBestAssignableMatch(type) != null) return true;
-        return isConcrete(type); // eligible for self-binding
+        return index.canResolve(type);
     }
 
     // ---------- internal helpers ----------
 
-    /**
-     * Finds a descriptor whose {@code serviceType} exactly equals the requested type.
-     *
-     * @param <T>  The service type.
-     * @param type The requested type.
-     * @return The exact descriptor, or {@code null} if none.
-     */
-    @SuppressWarnings("unchecked")
-    private <T> ServiceDescriptor<T> findDescriptorExact(Class<T> type) {
-        for (ServiceDescriptor<?> d : descriptors) {
-            if (d.serviceType.equals(type)) {
-                return (ServiceDescriptor<T>) d;
-            }
-        }
-        return null;
-    }
-
-    /**
-     * Determines whether a class is concrete (neither an interface nor abstract).
-     *
-     * @param t The class to test.
-     * @return {@code true} if concrete; otherwise {@code false}.
-     */
-    private boolean isConcrete(Class<?> t) {
-        int m = t.getModifiers();
-        return !t.isInterface() && !Modifier.isAbstract(m);
-    }
-
-    /**
-     * Lightweight container representing an assignable candidate during matching.
-     *
-     * @param <T> The service type.
-     */
-    private static final class Match<T> {
-        final ServiceDescriptor<T> descriptor;
-        final Class<?> produced; // the concrete/known type it will produce
-        Match(ServiceDescriptor<T> d, Class<?> produced) { this.descriptor = d; this.produced = produced; }
-    }
-
-    /**
-     * Finds the best descriptor whose produced type is assignable to {@code paramType}.
-     *
-     * <p><strong>Produced type rules</strong> (no side effects):</p>
-     * <ul>
-     *   <li>If an {@code instance} is present, use {@code instance.getClass()}.</li>
-     *   <li>Else if {@code implType} is present, use it.</li>
-     *   <li>Else (supplier-only with unknown type), skip to avoid invoking suppliers.</li>
-     * </ul>
-     *
-     * <p>When multiple candidates exist, they are sorted so the most specific type (nearest subclass)
-     * comes first. If the top two candidates are unrelated (neither assignable from the other),
-     * the match is ambiguous and an exception is thrown.</p>
-     *
-     * @param <T>       The requested service type.
-     * @param paramType The requested class.
-     * @return The best matching candidate, or {@code null} if none.
-     * @throws IllegalStateException if ambiguity is detected among unrelated candidates.
-     */
-    @SuppressWarnings("unchecked")
-    private <T> Match<T> findBestAssignableMatch(Class<T> paramType) {
-        List<Match<T>> candidates = new ArrayList<>();
-
-        for (ServiceDescriptor<?> d : descriptors) {
-            Class<?> produced = producedType(d);
-            if (produced == null) continue; // supplier-only with unknown type; skip to avoid constructing
-            if (paramType.isAssignableFrom(produced)) {
-                candidates.add(new Match<>((ServiceDescriptor<T>) d, produced));
-            }
-        }
-
-        if (candidates.isEmpty()) return null;
-        if (candidates.size() == 1) return candidates.get(0);
-
-        // Prefer the most specific produced type (i.e., the one that is assignable to all others)
-        candidates.sort((a, b) -> {
-            Class<?> A = a.produced, B = b.produced;
-            if (A == B) return 0;
-            if (A.isAssignableFrom(B)) return 1;   // B is more specific than A
-            if (B.isAssignableFrom(A)) return -1;  // A is more specific than B
-            // Unrelated classes: keep stable but produce an ambiguity error below.
-            return 0;
-        });
-
-        // After sorting, check for ambiguity among top two if neither is subtype of the other
-        Class<?> top = candidates.get(0).produced;
-        Class<?> second = candidates.get(1).produced;
-        boolean ambiguous = !(top.isAssignableFrom(second) || second.isAssignableFrom(top));
-        if (ambiguous) {
-            StringBuilder sb = new StringBuilder("Ambiguous assignment for ")
-                    .append(paramType.getName()).append(". Candidates produce: ");
-            for (Match<T> m : candidates) sb.append(m.produced.getName()).append(", ");
-            sb.setLength(sb.length() - 2);
-            sb.append(". Consider changing the parameter to the abstraction or registering a more specific mapping.");
-            throw new IllegalStateException(sb.toString());
-        }
-
-        return candidates.get(0);
-    }
-
-    /**
-     * Returns the class this descriptor will produce <em>without</em> creating instances.
-     * <ul>
-     *   <li>If {@code instance} is present, returns {@code instance.getClass()}.</li>
-     *   <li>Else if {@code implType} is present, returns it.</li>
-     *   <li>Else (supplier-only with unknown type), returns {@code null}.</li>
-     * </ul>
-     *
-     * @param d The descriptor to inspect.
-     * @return The produced class, or {@code null} if indeterminate.
-     */
-    private Class<?> producedType(ServiceDescriptor<?> d) {
-        if (d.instance != null) return d.instance.getClass();
-        if (d.implType != null) return d.implType;
-        return null;
-    }
-
     /**
      * Resolves an instance from a descriptor according to its lifetime, using the given resolver
      * (typically {@code this}) for constructor injection.
@@ -277,23 +215,28 @@ public class ServiceProvider implements Resolver {
      * @throws IllegalStateException if a SCOPED service is requested from the root provider,
      *                               or if the lifetime is unknown.
      */
-    @SuppressWarnings("unchecked")
     private <T> T resolveFromDescriptor(ServiceDescriptor<T> d, Resolver resolver) {
+        ResolutionTracer tracer = index.isTracing() ? ResolutionTracer.current() : null;
+        if (tracer == null) return resolveUntraced(d, resolver);
+        ResolutionTrace.Node node = tracer.enter(d);
+        try {
+            return resolveUntraced(d, resolver);
+        } finally {
+            tracer.exit(node);
+        }
+    }
+
+    private <T> T resolveUntraced(ServiceDescriptor<T> d, Resolver resolver) {
+        ServiceCounters counters = index.counters(d);
         switch (d.lifetime) {
             case SINGLETON: {
-                T type = null;
-
-                if (!singletonCache.containsKey(d.serviceType)) {
-                    type = createFromDescriptor(d, resolver);
-                    singletonCache.putIfAbsent(d.serviceType, type);
-                }
-                else {
-                    type = (T) singletonCache.get(d.serviceType);
-                }
-
-                return type;
+                InstanceHolder<T> holder = index.singleton(d);
+                T instance = holder.peek();
+                if (counters != null) counters.resolved(instance != null);
+                return instance != null ? instance : holder.getOrCreate(resolver, r -> createFromDescriptor(d, r));
             }
             case TRANSIENT:
+                if (counters != null) counters.resolved(false);
                 return createFromDescriptor(d, resolver);
             case SCOPED:
                 throw new IllegalStateException("Scoped service requested from root provider: " + d.serviceType);
@@ -306,7 +249,7 @@ public class ServiceProvider implements Resolver {
      * Creates an instance according to the descriptor's construction strategy:
      * <ul>
      *   <li>If an {@code instance} is specified, returns it as-is.</li>
-     *   <li>If a {@code supplier} is specified, invokes it to produce a new instance.</li>
+     *   <li>If a {@code factory} is specified, invokes it with the resolver to produce a new instance.</li>
      *   <li>Otherwise, constructs the {@code implType} via {@link ConstructorFactory} using the provided resolver.</li>
      * </ul>
      *
@@ -315,11 +258,48 @@ public class ServiceProvider implements Resolver {
      * @param resolver The resolver for dependency injection during construction.
      * @return A newly created instance (not cached here unless SINGLETON handling applies).
      */
-    private static <T> T createFromDescriptor(ServiceDescriptor<T> d, Resolver resolver) {
+    private <T> T createFromDescriptor(ServiceDescriptor<T> d, Resolver resolver) {
+        if (index.isTracing()) traced(d);
         if (d.instance != null) return d.instance;
-        if (d.supplier != null) return d.supplier.get();
-        @SuppressWarnings("unchecked")
-        Class<T> impl = (Class<T>) d.implType;
-        return ConstructorFactory.createWithInjection(impl, resolver, null);
+        ServiceCounters counters = index.counters(d);
+        if (counters == null) return construct(d, resolver);
+        long start = System.nanoTime();
+        T instance = construct(d, resolver);
+        counters.constructed(System.nanoTime() - start);
+        return instance;
+    }
+
+    // Tells the current trace, if any, how the descriptor's instance is about to be produced.
+    private void traced(ServiceDescriptor<?> d) {
+        ResolutionTracer tracer = ResolutionTracer.current();
+        if (tracer == null) return;
+        if (d.instance != null) tracer.created(ResolutionTrace.Source.INSTANCE, null);
+        else if (d.factory != null) tracer.created(ResolutionTrace.Source.FACTORY, null);
+        else tracer.created(ResolutionTrace.Source.CONSTRUCTOR, index.plan(d).constructor);
+    }
+
+    private static <T> T construct(ServiceDescriptor<T> d, Resolver resolver) {
+        if (d.factory != null) return d.factory.apply(resolver);
+        return ConstructorFactory.createWithInjection(d, resolver);
+    }
+
+    @Override
+    ServiceProvider root() {
+        return this;
+    }
+
+    @Override
+    ServiceIndex index() {
+        return index;
+    }
+
+    @Override
+    <T> T resolve(ServiceDescriptor<T> descriptor) {
+        return resolveFromDescriptor(descriptor, this);
+    }
+
+    @Override
+    <T> T resolveScoped(CompiledService.Scoped<T> service) {
+        throw new IllegalStateException("Scoped service requested from root provider: " + service.descriptor.serviceType);
     }
 }
@@ -0,0 +1,213 @@
+package org.oldskooler.inject4j;
+
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Options that control how {@link ServiceCollection#buildServiceProvider(ServiceProviderOptions)}
+ * builds a {@link ServiceProvider}.
+ * <p>
+ * Modeled after .NET's {@code ServiceProviderOptions}. Setters return {@code this} so options can be
+ * configured inline:
+ * </p>
+ * <pre>{@code
+ * ServiceProvider provider = services.buildServiceProvider(
+ *         new ServiceProviderOptions().setActivationStrategy(ActivationStrategy.METHOD_HANDLE));
+ * }</pre>
+ */
+public class ServiceProviderOptions {
+    private ActivationStrategy activationStrategy;
+    private boolean compiledResolution;
+    private boolean validateOnBuild;
+    private boolean warmUpSingletons;
+    private ForkJoinPool warmUpPool;
+    private boolean metricsEnabled;
+    private boolean resolutionTracing;
+
+    /**
+     * Returns the strategy used to invoke constructors.
+     * <p>
+     * Unless one has been set explicitly, this is {@link ActivationStrategy#LAMBDA_METAFACTORY} when
+     * {@linkplain #isCompiledResolution() compiled resolution} is enabled and
+     * {@link ActivationStrategy#REFLECTION} otherwise.
+     * </p>
+     *
+     * @return The activation strategy (never {@code null}).
+     */
+    public ActivationStrategy getActivationStrategy() {
+        if (activationStrategy != null) return activationStrategy;
+        return compiledResolution ? ActivationStrategy.LAMBDA_METAFACTORY : ActivationStrategy.REFLECTION;
+    }
+
+    /**
+     * Sets the strategy used to invoke constructors of implementation types and of types created via
+     * {@code createInstance}. Defaults to {@link ActivationStrategy#REFLECTION}, or to
+     * {@link ActivationStrategy#LAMBDA_METAFACTORY} with compiled resolution.
+     *
+     * @param activationStrategy The activation strategy.
+     * @return These options.
+     */
+    public ServiceProviderOptions setActivationStrategy(ActivationStrategy activationStrategy) {
+        this.activationStrategy = Objects.requireNonNull(activationStrategy, "activationStrategy");
+        return this;
+    }
+
+    /**
+     * Returns whether the provider compiles its registrations into a pre-linked resolution graph.
+     *
+     * @return {@code true} if compiled resolution is enabled.
+     */
+    public boolean isCompiledResolution() {
+        return compiledResolution;
+    }
+
+    /**
+     * Enables or disables compiled resolution. Disabled by default.
+     * <p>
+     * When enabled, every registration is compiled while the provider is built into a node that is
+     * linked directly to the nodes of its constructor dependencies. {@code getService} then performs a
+     * single type lookup and walks that graph, with no descriptor search, lifetime dispatch or
+     * constructor selection at request time. Building the provider takes longer because every
+     * constructor is chosen (and, by default, a factory generated) up front.
+     * </p>
+     *
+     * @param compiledResolution {@code true} to compile registrations when the provider is built.
+     * @return These options.
+     */
+    public ServiceProviderOptions setCompiledResolution(boolean compiledResolution) {
+        this.compiledResolution = compiledResolution;
+        return this;
+    }
+
+    /**
+     * Returns whether the provider validates every registration while it is built.
+     *
+     * @return {@code true} if validation on build is enabled.
+     */
+    public boolean isValidateOnBuild() {
+        return validateOnBuild;
+    }
+
+    /**
+     * Enables or disables validation on build. Disabled by default.
+     * <p>
+     * When enabled, {@link ServiceCollection#buildServiceProvider(ServiceProviderOptions)} chooses the
+     * constructor of every registration and binds its parameters, then checks the resulting graph for
+     * circular dependencies and for singletons that capture scoped services (directly or through
+     * transients). Every problem found is reported together in one {@link IllegalStateException}
+     * thrown from the build. The construction plans built here are the ones used at request time, so
+     * a validated provider never discovers constructors, and never fails to, while serving requests.
+     * </p>
+     *
+     * @param validateOnBuild {@code true} to validate registrations when the provider is built.
+     * @return These options.
+     */
+    public ServiceProviderOptions setValidateOnBuild(boolean validateOnBuild) {
+        this.validateOnBuild = validateOnBuild;
+        return this;
+    }
+
+    /**
+     * Returns whether the provider creates all singletons while it is built.
+     *
+     * @return {@code true} if singleton warm-up is enabled.
+     */
+    public boolean isWarmUpSingletons() {
+        return warmUpSingletons;
+    }
+
+    /**
+     * Enables or disables singleton warm-up. Disabled by default.
+     * <p>
+     * When enabled, {@link ServiceCollection#buildServiceProvider(ServiceProviderOptions)} creates every
+     * singleton registration before returning, in dependency order: a singleton is built only after the
+     * singletons it depends on, and singletons that do not depend on each other are built in parallel
+     * on the {@linkplain #setWarmUpPool(ForkJoinPool) warm-up pool}. The first request for a singleton
+     * then never pays for its construction. The construction time of each singleton is available from
+     * {@link ServiceProvider#getWarmUpTimings()}. If any singleton fails to construct, the build fails
+     * with that exception.
+     * </p>
+     *
+     * @param warmUpSingletons {@code true} to create singletons when the provider is built.
+     * @return These options.
+     */
+    public ServiceProviderOptions setWarmUpSingletons(boolean warmUpSingletons) {
+        this.warmUpSingletons = warmUpSingletons;
+        return this;
+    }
+
+    /**
+     * Returns the pool singleton warm-up runs on.
+     *
+     * @return The pool set with {@link #setWarmUpPool(ForkJoinPool)}, or the common pool.
+     */
+    public ForkJoinPool getWarmUpPool() {
+        return warmUpPool != null ? warmUpPool : ForkJoinPool.commonPool();
+    }
+
+    /**
+     * Sets the pool singleton warm-up runs on. Defaults to {@link ForkJoinPool#commonPool()}.
+     *
+     * @param warmUpPool The pool.
+     * @return These options.
+     */
+    public ServiceProviderOptions setWarmUpPool(ForkJoinPool warmUpPool) {
+        this.warmUpPool = Objects.requireNonNull(warmUpPool, "warmUpPool");
+        return this;
+    }
+
+    /**
+     * Returns whether the provider records resolution metrics.
+     *
+     * @return {@code true} if metrics are enabled.
+     */
+    public boolean isMetricsEnabled() {
+        return metricsEnabled;
+    }
+
+    /**
+     * Enables or disables resolution metrics. Disabled by default.
+     * <p>
+     * When enabled, the provider counts, for every registration, how often it is resolved, how often
+     * it is constructed and how often a singleton or scoped instance is served from the cache, and it
+     * records how long each construction takes. {@link ServiceProvider#getMetrics()} and
+     * {@link Scope#getMetrics()} return a snapshot. Counters are striped, and recording a cached
+     * resolution allocates nothing, so metrics are cheap enough to leave on in production; the main
+     * cost is one {@link System#nanoTime()} pair per construction.
+     * </p>
+     *
+     * @param metricsEnabled {@code true} to record resolution metrics.
+     * @return These options.
+     */
+    public ServiceProviderOptions setMetricsEnabled(boolean metricsEnabled) {
+        this.metricsEnabled = metricsEnabled;
+        return this;
+    }
+
+    /**
+     * Returns whether the provider supports {@link Resolver#traceService(Class)}.
+     *
+     * @return {@code true} if resolution tracing is enabled.
+     */
+    public boolean isResolutionTracing() {
+        return resolutionTracing;
+    }
+
+    /**
+     * Enables or disables resolution tracing, a debug mode. Disabled by default.
+     * <p>
+     * When enabled, {@link Resolver#traceService(Class)} resolves a service while recording the tree of
+     * everything resolved for it, with the constructor chosen, the lifetime, cache hits and the time
+     * spent on each node. Every other resolution pays one thread-local read per resolved service. A
+     * tracing provider does not use {@linkplain #setCompiledResolution(boolean) compiled resolution},
+     * so traces always show the regular resolution path.
+     * </p>
+     *
+     * @param resolutionTracing {@code true} to allow tracing resolutions.
+     * @return These options.
+     */
+    public ServiceProviderOptions setResolutionTracing(boolean resolutionTracing) {
+        this.resolutionTracing = resolutionTracing;
+        return this;
+    }
+}
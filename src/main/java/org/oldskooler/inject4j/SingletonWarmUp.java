@@ -0,0 +1,122 @@
+package org.oldskooler.inject4j;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Creates every singleton of a provider up front, in dependency order, in parallel.
+ * <p>
+ * Each SINGLETON registration becomes a task that starts once the tasks of the singletons it depends
+ * on (directly, or through transient registrations) have finished, so a singleton's own construction
+ * never waits on another thread and independent subgraphs are built concurrently on the pool.
+ * Instances are created through the provider's regular resolution path, so they land in the same
+ * holders later requests read from.
+ * </p>
+ *
+ * @implNote This class is package-private and not intended for external use.
+ */
+final class SingletonWarmUp {
+    private final ServiceProvider provider;
+    private final ServiceIndex index;
+    private final ForkJoinPool pool;
+    /** Scheduled task per singleton descriptor (identity-keyed). */
+    private final Map<ServiceDescriptor<?>, CompletableFuture<Void>> tasks = new IdentityHashMap<>();
+    /** Position of each singleton descriptor in registration order (identity-keyed). */
+    private final Map<ServiceDescriptor<?>, Integer> positions = new IdentityHashMap<>();
+    /** Descriptors whose dependencies are being scheduled, to cut cycles (reported on creation). */
+    private final Set<ServiceDescriptor<?>> scheduling = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    private SingletonWarmUp(ServiceProvider provider, ServiceIndex index, ForkJoinPool pool) {
+        this.provider = provider;
+        this.index = index;
+        this.pool = pool;
+    }
+
+    /**
+     * Creates every singleton of {@code provider} and measures how long each construction took.
+     *
+     * @param provider The provider whose singletons to create.
+     * @param index    The provider's index.
+     * @param pool     The pool the constructions run on.
+     * @return Construction times per service type, one per registration of that type (keyed and
+     *         parameterized registrations included), in the order the singletons were registered.
+     * @throws RuntimeException the first failure of any singleton construction, unwrapped.
+     */
+    static Map<Class<?>, List<Duration>> run(ServiceProvider provider, ServiceIndex index, ForkJoinPool pool) {
+        return new SingletonWarmUp(provider, index, pool).run();
+    }
+
+    private Map<Class<?>, List<Duration>> run() {
+        List<ServiceDescriptor<?>> singletons = new ArrayList<>();
+        for (ServiceDescriptor<?> d : index.descriptors()) {
+            if (d.lifetime == ServiceLifetime.SINGLETON && d.instance == null && !d.isOpenGeneric()) {
+                positions.put(d, singletons.size());
+                singletons.add(d);
+            }
+        }
+
+        long[] nanos = new long[singletons.size()];
+        for (ServiceDescriptor<?> d : singletons) schedule(d, nanos);
+
+        try {
+            CompletableFuture.allOf(tasks.values().toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw e;
+        }
+
+        Map<Class<?>, List<Duration>> timings = new LinkedHashMap<>();
+        for (int i = 0; i < singletons.size(); i++) {
+            timings.computeIfAbsent(singletons.get(i).serviceType, k -> new ArrayList<>()).add(Duration.ofNanos(nanos[i]));
+        }
+        for (Map.Entry<Class<?>, List<Duration>> e : timings.entrySet()) {
+            e.setValue(Collections.unmodifiableList(e.getValue()));
+        }
+        return timings;
+    }
+
+    private CompletableFuture<Void> schedule(ServiceDescriptor<?> d, long[] nanos) {
+        CompletableFuture<Void> task = tasks.get(d);
+        if (task != null) return task;
+
+        scheduling.add(d);
+        List<CompletableFuture<Void>> dependencies = new ArrayList<>();
+        for (ServiceDescriptor<?> dep : singletonDependencies(d)) {
+            if (scheduling.contains(dep)) continue; // cycle: creation reports it
+            dependencies.add(schedule(dep, nanos));
+        }
+        scheduling.remove(d);
+
+        int slot = positions.get(d);
+        task = CompletableFuture.allOf(dependencies.toArray(new CompletableFuture<?>[0])).thenRunAsync(() -> {
+            long start = System.nanoTime();
+            provider.resolve(d);
+            nanos[slot] = System.nanoTime() - start;
+        }, pool);
+        tasks.put(d, task);
+        return task;
+    }
+
+    /** Singletons reachable from {@code d}'s constructor directly or through transient registrations. */
+    private List<ServiceDescriptor<?>> singletonDependencies(ServiceDescriptor<?> d) {
+        List<ServiceDescriptor<?>> out = new ArrayList<>();
+        collect(d, out, Collections.newSetFromMap(new IdentityHashMap<>()));
+        return out;
+    }
+
+    private void collect(ServiceDescriptor<?> d, List<ServiceDescriptor<?>> out, Set<ServiceDescriptor<?>> seen) {
+        if (d.implType == null || d.instance != null || d.factory != null || !seen.add(d)) return;
+        for (Binding b : index.plan(d).bindings) {
+            if (b.isDeferred()) continue;
+            for (ServiceDescriptor<?> dep : b.targets) {
+                if (dep.lifetime == ServiceLifetime.SINGLETON && dep.instance == null) out.add(dep);
+                else if (dep.lifetime == ServiceLifetime.TRANSIENT) collect(dep, out, seen);
+            }
+        }
+    }
+}
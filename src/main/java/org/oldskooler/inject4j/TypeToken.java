@@ -0,0 +1,121 @@
+package org.oldskooler.inject4j;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Objects;
+
+/**
+ * A full, possibly generic, service type such as {@code Repository<User>}, captured at runtime.
+ * <p>
+ * Class literals erase type arguments, so {@code Repository<User>} and {@code Repository<Order>}
+ * cannot be told apart by {@code Repository.class}. Capture the full type with an anonymous
+ * subclass, and use it to register and resolve services:
+ * </p>
+ * <pre>{@code
+ * TypeToken<Repository<User>> users = new TypeToken<Repository<User>>() {};
+ * services.addScoped(users, UserRepository.class);
+ * Repository<User> repo = scope.getService(users);
+ * }</pre>
+ *
+ * <p>Tokens are immutable and compare equal when their types are equal. The type is canonicalized
+ * once, when the token is created, so resolving with a token is a single hash lookup; create tokens
+ * once and reuse them on hot paths.</p>
+ *
+ * @param <T> The captured type.
+ */
+public abstract class TypeToken<T> {
+    private final Type type;
+    private final Class<? super T> rawType;
+
+    /**
+     * Captures the type argument of the anonymous subclass being created.
+     *
+     * @throws IllegalArgumentException if the subclass does not specify a type argument, or the type
+     *                                  still contains type variables.
+     */
+    protected TypeToken() {
+        Type superclass = getClass().getGenericSuperclass();
+        if (!(superclass instanceof ParameterizedType)) {
+            throw new IllegalArgumentException("TypeToken must be created with a type argument, e.g. new TypeToken<List<String>>() {}");
+        }
+        this.type = checked(((ParameterizedType) superclass).getActualTypeArguments()[0]);
+        this.rawType = raw(type);
+    }
+
+    private TypeToken(Type type) {
+        this.type = checked(type);
+        this.rawType = raw(type);
+    }
+
+    /**
+     * Returns a token for a non-generic class.
+     *
+     * @param <T>  The type.
+     * @param type The class.
+     * @return A token for {@code type}.
+     */
+    public static <T> TypeToken<T> of(Class<T> type) {
+        return new Of<>(Objects.requireNonNull(type, "type"));
+    }
+
+    /**
+     * Returns a token for a type obtained through reflection, such as a generic parameter type.
+     *
+     * @param type The type.
+     * @return A token for {@code type}.
+     * @throws IllegalArgumentException if the type contains type variables.
+     */
+    public static TypeToken<?> of(Type type) {
+        return new Of<>(Objects.requireNonNull(type, "type"));
+    }
+
+    /**
+     * Returns the captured type, in canonical form.
+     *
+     * @return The type.
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Returns the class the captured type erases to.
+     *
+     * @return The raw class.
+     */
+    public Class<? super T> getRawType() {
+        return rawType;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof TypeToken && type.equals(((TypeToken<?>) o).type);
+    }
+
+    @Override
+    public int hashCode() {
+        return type.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return type.getTypeName();
+    }
+
+    private static Type checked(Type type) {
+        if (Types.hasTypeVariable(type)) {
+            throw new IllegalArgumentException("TypeToken cannot capture a type variable: " + type.getTypeName());
+        }
+        return Types.canonicalize(type);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Class<? super T> raw(Type type) {
+        return (Class<? super T>) Types.rawType(type);
+    }
+
+    /** A token for a type that is already known, rather than captured from a subclass. */
+    private static final class Of<T> extends TypeToken<T> {
+        Of(Type type) { super(type); }
+    }
+}
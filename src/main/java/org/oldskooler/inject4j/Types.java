@@ -0,0 +1,344 @@
+package org.oldskooler.inject4j;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Canonical forms of {@link Type}s, used as keys of generic registrations.
+ * <p>
+ * {@link ParameterizedType}, {@link GenericArrayType} and {@link WildcardType} instances returned by
+ * reflection are replaced by immutable implementations whose hash is computed once. They compare
+ * equal to, and hash like, the JDK's own implementations, so a canonical key can be looked up with
+ * any structurally equal type. Generic arrays of non-generic components become array classes.
+ * Canonicalizing an already canonical type returns it unchanged, without allocating.
+ * </p>
+ *
+ * @implNote This class is package-private and not intended for external use.
+ */
+final class Types {
+    private static final Type[] NO_TYPES = new Type[0];
+
+    private Types() {}
+
+    /**
+     * Returns the canonical form of {@code type}.
+     *
+     * @param type A class, parameterized type, generic array type, wildcard or type variable.
+     * @return An equal type that is cheap to hash and compare.
+     */
+    static Type canonicalize(Type type) {
+        if (type instanceof Class || type instanceof TypeVariable || type instanceof Canonical) return type;
+        if (type instanceof ParameterizedType) {
+            ParameterizedType p = (ParameterizedType) type;
+            Type owner = p.getOwnerType();
+            return new ParameterizedTypeImpl(owner != null ? canonicalize(owner) : null,
+                    (Class<?>) p.getRawType(), canonicalize(p.getActualTypeArguments()));
+        }
+        if (type instanceof GenericArrayType) {
+            Type component = canonicalize(((GenericArrayType) type).getGenericComponentType());
+            return component instanceof Class ? Array.newInstance((Class<?>) component, 0).getClass()
+                    : new GenericArrayTypeImpl(component);
+        }
+        if (type instanceof WildcardType) {
+            WildcardType w = (WildcardType) type;
+            return new WildcardTypeImpl(canonicalize(w.getUpperBounds()), canonicalize(w.getLowerBounds()));
+        }
+        throw new IllegalArgumentException("Unsupported type: " + type);
+    }
+
+    private static Type[] canonicalize(Type[] types) {
+        if (types.length == 0) return NO_TYPES;
+        Type[] out = new Type[types.length];
+        for (int i = 0; i < types.length; i++) out[i] = canonicalize(types[i]);
+        return out;
+    }
+
+    /**
+     * Returns the class a type erases to.
+     *
+     * @param type The type.
+     * @return The raw class; {@code Object.class} for type variables and wildcards.
+     */
+    static Class<?> rawType(Type type) {
+        if (type instanceof Class) return (Class<?>) type;
+        if (type instanceof ParameterizedType) return (Class<?>) ((ParameterizedType) type).getRawType();
+        if (type instanceof GenericArrayType) {
+            return Array.newInstance(rawType(((GenericArrayType) type).getGenericComponentType()), 0).getClass();
+        }
+        return Object.class;
+    }
+
+    /**
+     * Indicates whether {@code type} mentions a type variable anywhere.
+     *
+     * @param type The type.
+     * @return {@code true} if the type is not fully specified.
+     */
+    static boolean hasTypeVariable(Type type) {
+        if (type instanceof TypeVariable) return true;
+        if (type instanceof ParameterizedType) {
+            for (Type a : ((ParameterizedType) type).getActualTypeArguments()) {
+                if (hasTypeVariable(a)) return true;
+            }
+            Type owner = ((ParameterizedType) type).getOwnerType();
+            return owner != null && hasTypeVariable(owner);
+        }
+        if (type instanceof GenericArrayType) return hasTypeVariable(((GenericArrayType) type).getGenericComponentType());
+        if (type instanceof WildcardType) {
+            WildcardType w = (WildcardType) type;
+            for (Type b : w.getUpperBounds()) if (hasTypeVariable(b)) return true;
+            for (Type b : w.getLowerBounds()) if (hasTypeVariable(b)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Indicates whether {@code type} is fully specified: no type variables and no wildcards.
+     *
+     * @param type The type.
+     * @return {@code true} if an open generic implementation can be closed over it.
+     */
+    static boolean isFullySpecified(Type type) {
+        if (type instanceof Class) return true;
+        if (type instanceof ParameterizedType) {
+            for (Type a : ((ParameterizedType) type).getActualTypeArguments()) {
+                if (!isFullySpecified(a)) return false;
+            }
+            Type owner = ((ParameterizedType) type).getOwnerType();
+            return owner == null || isFullySpecified(owner);
+        }
+        if (type instanceof GenericArrayType) return isFullySpecified(((GenericArrayType) type).getGenericComponentType());
+        return false;
+    }
+
+    /**
+     * Replaces type variables in {@code type} by their arguments.
+     *
+     * @param type      The type to substitute into.
+     * @param arguments The argument of each type variable; unmapped variables are kept.
+     * @return The canonical substituted type.
+     */
+    static Type substitute(Type type, Map<TypeVariable<?>, Type> arguments) {
+        if (type instanceof Class) return type;
+        if (type instanceof TypeVariable) {
+            Type arg = arguments.get(type);
+            return arg != null ? arg : type;
+        }
+        if (type instanceof ParameterizedType) {
+            ParameterizedType p = (ParameterizedType) type;
+            Type owner = p.getOwnerType();
+            return new ParameterizedTypeImpl(owner != null ? substitute(owner, arguments) : null,
+                    (Class<?>) p.getRawType(), substitute(p.getActualTypeArguments(), arguments));
+        }
+        if (type instanceof GenericArrayType) {
+            return canonicalize(new GenericArrayTypeImpl(substitute(((GenericArrayType) type).getGenericComponentType(), arguments)));
+        }
+        if (type instanceof WildcardType) {
+            WildcardType w = (WildcardType) type;
+            return new WildcardTypeImpl(substitute(w.getUpperBounds(), arguments), substitute(w.getLowerBounds(), arguments));
+        }
+        return type;
+    }
+
+    private static Type[] substitute(Type[] types, Map<TypeVariable<?>, Type> arguments) {
+        if (types.length == 0) return NO_TYPES;
+        Type[] out = new Type[types.length];
+        for (int i = 0; i < types.length; i++) out[i] = substitute(types[i], arguments);
+        return out;
+    }
+
+    /**
+     * Closes the generic class {@code impl} so that it implements the fully specified {@code requested}
+     * type: {@code closeOver(JpaRepository.class, Repository<Order>)} is {@code JpaRepository<Order>}.
+     *
+     * @param impl      A generic class.
+     * @param requested A fully specified parameterized type that {@code impl}'s raw class is assignable to.
+     * @return The closed implementation type, or {@code null} if not every type parameter of
+     *         {@code impl} is determined by {@code requested} or an argument is outside its bounds.
+     */
+    static ParameterizedType closeOver(Class<?> impl, ParameterizedType requested) {
+        Class<?> target = (Class<?>) requested.getRawType();
+        Type pattern = impl == target ? new ParameterizedTypeImpl(requested.getOwnerType(), impl, impl.getTypeParameters())
+                : supertype(impl, target, new HashMap<>());
+        Map<TypeVariable<?>, Type> arguments = new HashMap<>();
+        if (pattern == null || !unify(pattern, requested, impl, arguments)) return null;
+
+        TypeVariable<?>[] params = impl.getTypeParameters();
+        Type[] args = new Type[params.length];
+        for (int i = 0; i < params.length; i++) {
+            args[i] = arguments.get(params[i]);
+            if (args[i] == null) return null;
+            for (Type bound : params[i].getBounds()) {
+                if (!rawType(bound).isAssignableFrom(rawType(args[i]))) return null;
+            }
+        }
+        Class<?> enclosing = impl.getEnclosingClass();
+        Type owner = enclosing != null && !Modifier.isStatic(impl.getModifiers()) ? null : enclosing;
+        return new ParameterizedTypeImpl(owner, impl, args);
+    }
+
+    // The generic supertype of `type` whose raw class is `target`, expressed in the type variables of
+    // the class closeOver started from (arguments of intermediate supertypes are substituted).
+    private static Type supertype(Type type, Class<?> target, Map<TypeVariable<?>, Type> arguments) {
+        Class<?> raw = rawType(type);
+        if (raw == target) return substitute(type, arguments);
+        Map<TypeVariable<?>, Type> next = arguments;
+        if (type instanceof ParameterizedType) {
+            next = new HashMap<>();
+            TypeVariable<?>[] vars = raw.getTypeParameters();
+            Type[] args = ((ParameterizedType) type).getActualTypeArguments();
+            for (int i = 0; i < vars.length; i++) next.put(vars[i], substitute(args[i], arguments));
+        }
+        List<Type> supertypes = new ArrayList<>(Arrays.asList(raw.getGenericInterfaces()));
+        if (raw.getGenericSuperclass() != null) supertypes.add(raw.getGenericSuperclass());
+        for (Type s : supertypes) {
+            if (!target.isAssignableFrom(rawType(s))) continue;
+            Type found = supertype(s, target, next);
+            if (found != null) return found;
+        }
+        return null;
+    }
+
+    // Matches `pattern` (in terms of impl's type variables) against the fully specified `actual`,
+    // recording the argument of each of impl's variables.
+    private static boolean unify(Type pattern, Type actual, Class<?> impl, Map<TypeVariable<?>, Type> arguments) {
+        if (pattern instanceof TypeVariable && ((TypeVariable<?>) pattern).getGenericDeclaration() == impl) {
+            Type bound = arguments.putIfAbsent((TypeVariable<?>) pattern, actual);
+            return bound == null || bound.equals(actual);
+        }
+        if (pattern instanceof ParameterizedType && actual instanceof ParameterizedType) {
+            ParameterizedType p = (ParameterizedType) pattern;
+            ParameterizedType a = (ParameterizedType) actual;
+            if (p.getRawType() != a.getRawType()) return false;
+            Type[] ps = p.getActualTypeArguments();
+            Type[] as = a.getActualTypeArguments();
+            for (int i = 0; i < ps.length; i++) {
+                if (!unify(ps[i], as[i], impl, arguments)) return false;
+            }
+            return true;
+        }
+        if (pattern instanceof GenericArrayType) {
+            Type component = actual instanceof GenericArrayType ? ((GenericArrayType) actual).getGenericComponentType()
+                    : actual instanceof Class ? ((Class<?>) actual).getComponentType() : null;
+            return component != null && unify(((GenericArrayType) pattern).getGenericComponentType(), component, impl, arguments);
+        }
+        return canonicalize(pattern).equals(actual);
+    }
+
+    /** Marker of the canonical implementations. */
+    private interface Canonical {}
+
+    private static final class ParameterizedTypeImpl implements ParameterizedType, Canonical {
+        private final Type owner;
+        private final Class<?> raw;
+        private final Type[] args;
+        private final int hash;
+
+        ParameterizedTypeImpl(Type owner, Class<?> raw, Type[] args) {
+            this.owner = owner;
+            this.raw = raw;
+            this.args = args;
+            this.hash = Arrays.hashCode(args) ^ Objects.hashCode(owner) ^ raw.hashCode(); // as the JDK's
+        }
+
+        @Override public Type[] getActualTypeArguments() { return args.clone(); }
+        @Override public Type getRawType() { return raw; }
+        @Override public Type getOwnerType() { return owner; }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof ParameterizedType)) return false;
+            if (o instanceof ParameterizedTypeImpl) {
+                ParameterizedTypeImpl p = (ParameterizedTypeImpl) o;
+                return hash == p.hash && raw == p.raw && Objects.equals(owner, p.owner) && Arrays.equals(args, p.args);
+            }
+            ParameterizedType p = (ParameterizedType) o;
+            return raw == p.getRawType() && Objects.equals(owner, p.getOwnerType())
+                    && Arrays.equals(args, p.getActualTypeArguments());
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(raw.getName()).append('<');
+            for (int i = 0; i < args.length; i++) {
+                if (i > 0) sb.append(", ");
+                sb.append(args[i].getTypeName());
+            }
+            return sb.append('>').toString();
+        }
+    }
+
+    private static final class GenericArrayTypeImpl implements GenericArrayType, Canonical {
+        private final Type component;
+
+        GenericArrayTypeImpl(Type component) {
+            this.component = component;
+        }
+
+        @Override public Type getGenericComponentType() { return component; }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof GenericArrayType && component.equals(((GenericArrayType) o).getGenericComponentType());
+        }
+
+        @Override
+        public int hashCode() {
+            return component.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return component.getTypeName() + "[]";
+        }
+    }
+
+    private static final class WildcardTypeImpl implements WildcardType, Canonical {
+        private final Type[] upper;
+        private final Type[] lower;
+
+        WildcardTypeImpl(Type[] upper, Type[] lower) {
+            this.upper = upper;
+            this.lower = lower;
+        }
+
+        @Override public Type[] getUpperBounds() { return upper.clone(); }
+        @Override public Type[] getLowerBounds() { return lower.clone(); }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof WildcardType)) return false;
+            WildcardType w = (WildcardType) o;
+            return Arrays.equals(upper, w.getUpperBounds()) && Arrays.equals(lower, w.getLowerBounds());
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(upper) ^ Arrays.hashCode(lower);
+        }
+
+        @Override
+        public String toString() {
+            if (lower.length > 0) return "? super " + lower[0].getTypeName();
+            if (upper.length == 0 || upper[0] == Object.class) return "?";
+            return "? extends " + upper[0].getTypeName();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package org.oldskooler.inject4j;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CompiledResolutionTest {
+    public static class Clock {}
+
+    public static class Session {
+        final Clock clock;
+
+        public Session(Clock clock) {
+            this.clock = clock;
+        }
+    }
+
+    public static class Handler {
+        final Session session;
+        final Clock clock;
+
+        public Handler(Session session, Clock clock) {
+            this.session = session;
+            this.clock = clock;
+        }
+    }
+
+    public interface Missing {}
+
+    public static class Broken {
+        public Broken(Missing missing) {}
+    }
+
+    public static class Ping {
+        public Ping(Pong pong) {}
+    }
+
+    public static class Pong {
+        public Pong(Ping ping) {}
+    }
+
+    private static ServiceProvider provider(boolean compiled) {
+        ServiceCollection services = new ServiceCollection();
+        services.addSingleton(Clock.class);
+        services.addScoped(Session.class);
+        services.addTransient(Handler.class);
+        services.addTransient(Broken.class);
+        services.addTransient(Ping.class);
+        services.addTransient(Pong.class);
+        return services.buildServiceProvider(new ServiceProviderOptions().setCompiledResolution(compiled));
+    }
+
+    @Test
+    public void compiledGraphKeepsTheLifetimesOfTheRegularPath() {
+        for (boolean compiled : new boolean[] {false, true}) {
+            ServiceProvider provider = provider(compiled);
+            assertEquals(compiled, provider.index().isCompiled());
+            Clock clock = provider.getService(Clock.class);
+
+            Scope first = provider.createScope();
+            Handler a = first.getService(Handler.class);
+            Handler b = first.getService(Handler.class);
+            assertNotSame(a, b);
+            assertSame(a.session, b.session);
+            assertSame(a.session, first.getService(Session.class));
+            assertSame(clock, a.clock);
+            assertSame(clock, a.session.clock);
+
+            Scope second = provider.createScope();
+            Handler c = second.getService(Handler.class);
+            assertNotSame(a.session, c.session);
+            assertSame(c.session, second.getService(Session.class));
+            assertSame(clock, c.clock);
+        }
+    }
+
+    @Test
+    public void unsatisfiableRegistrationsReportTheRegularError() {
+        ServiceProvider regular = provider(false);
+        ServiceProvider compiled = provider(true);
+        assertFalse(compiled.index().findCompiled(Handler.class) instanceof CompiledService.Deferred);
+
+        for (Class<?> type : new Class<?>[] {Broken.class, Ping.class}) {
+            assertTrue(compiled.index().findCompiled(type) instanceof CompiledService.Deferred);
+            String expected = failure(regular.createScope(), type);
+            assertNotNull(expected);
+            assertEquals(expected, failure(compiled.createScope(), type));
+        }
+    }
+
+    private static String failure(Scope scope, Class<?> type) {
+        try {
+            scope.getService(type);
+            fail("expected " + type.getSimpleName() + " to fail");
+            return null;
+        } catch (IllegalStateException e) {
+            return e.getMessage();
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package org.oldskooler.inject4j;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ConstructorFactoryTest {
+    /** Calls its supplier while being constructed, so every activation activates another one. */
+    public static class Eager {
+        public Eager(Supplier<Eager> next) {
+            next.get();
+        }
+    }
+
+    public static class Chicken {
+        public Chicken(Egg egg) {}
+    }
+
+    public static class Egg {
+        public Egg(Chicken chicken) {}
+    }
+
+    public static class Clock {}
+
+    public static class Ticker {
+        final Supplier<Clock> clocks;
+
+        public Ticker(Supplier<Clock> clocks) {
+            this.clocks = clocks;
+        }
+    }
+
+    public interface Filter {}
+    public static class Auth implements Filter {}
+    public static class Audit implements Filter {}
+    public static class Compress implements Filter {}
+
+    public interface Plugin {}
+
+    public static class Pipeline {
+        final List<Filter> list;
+        final Filter[] array;
+
+        public Pipeline(List<Filter> list, Filter[] array) {
+            this.list = list;
+            this.array = array;
+        }
+    }
+
+    public static class Host {
+        final List<Plugin> list;
+        final Plugin[] array;
+
+        public Host(List<Plugin> list, Plugin[] array) {
+            this.list = list;
+            this.array = array;
+        }
+    }
+
+    private static ServiceProvider provider(ServiceCollection services, boolean compiled) {
+        return services.buildServiceProvider(new ServiceProviderOptions().setCompiledResolution(compiled));
+    }
+
+    @Test
+    public void supplierActivationIsDepthGuarded() {
+        for (boolean compiled : new boolean[] {false, true}) {
+            ServiceCollection services = new ServiceCollection();
+            services.addTransient(Eager.class);
+            ServiceProvider provider = provider(services, compiled);
+            assertCircular(() -> provider.getService(Eager.class));
+        }
+    }
+
+    @Test
+    public void transientConstructorCycleIsDetected() {
+        for (boolean compiled : new boolean[] {false, true}) {
+            ServiceCollection services = new ServiceCollection();
+            services.addTransient(Chicken.class);
+            services.addTransient(Egg.class);
+            ServiceProvider provider = provider(services, compiled);
+            assertCircular(() -> provider.getService(Chicken.class));
+            assertCircular(() -> provider.getService(Egg.class));
+        }
+    }
+
+    @Test
+    public void scopedConstructorCycleIsDetected() {
+        for (boolean compiled : new boolean[] {false, true}) {
+            ServiceCollection services = new ServiceCollection();
+            services.addScoped(Chicken.class);
+            services.addTransient(Egg.class);
+            try (Scope scope = provider(services, compiled).createScope()) {
+                assertCircular(() -> scope.getService(Chicken.class));
+            }
+        }
+    }
+
+    @Test
+    public void validationReportsConstructorCycle() {
+        for (boolean compiled : new boolean[] {false, true}) {
+            ServiceCollection services = new ServiceCollection();
+            services.addTransient(Chicken.class);
+            services.addTransient(Egg.class);
+            try {
+                services.buildServiceProvider(new ServiceProviderOptions()
+                        .setCompiledResolution(compiled).setValidateOnBuild(true));
+                fail("expected a validation error");
+            } catch (IllegalStateException expected) {
+                assertTrue(expected.getMessage(), expected.getMessage().contains("Circular dependency"));
+            }
+        }
+    }
+
+    @Test
+    public void supplierOfTransientCreatesOnEveryGet() {
+        for (boolean compiled : new boolean[] {false, true}) {
+            ServiceCollection services = new ServiceCollection();
+            services.addTransient(Clock.class);
+            services.addSingleton(Ticker.class);
+            Supplier<Clock> clocks = provider(services, compiled).getService(Ticker.class).clocks;
+
+            assertNotSame(clocks.get(), clocks.get());
+        }
+    }
+
+    @Test
+    public void supplierOfScopedReturnsTheInstanceOfItsOwnersScope() {
+        for (boolean compiled : new boolean[] {false, true}) {
+            ServiceCollection services = new ServiceCollection();
+            services.addScoped(Clock.class);
+            services.addTransient(Ticker.class);
+            ServiceProvider provider = provider(services, compiled);
+            try (Scope first = provider.createScope(); Scope second = provider.createScope()) {
+                Supplier<Clock> clocks = first.getService(Ticker.class).clocks;
+
+                assertSame(first.getService(Clock.class), clocks.get());
+                assertSame(clocks.get(), clocks.get());
+                assertNotSame(second.getService(Clock.class), clocks.get());
+            }
+        }
+    }
+
+    @Test
+    public void supplierOfSingletonReturnsTheSingleton() {
+        for (boolean compiled : new boolean[] {false, true}) {
+            ServiceCollection services = new ServiceCollection();
+            services.addSingleton(Clock.class);
+            services.addTransient(Ticker.class);
+            ServiceProvider provider = provider(services, compiled);
+
+            assertSame(provider.getService(Clock.class), provider.getService(Ticker.class).clocks.get());
+        }
+    }
+
+    @Test
+    public void listAndArrayParametersReceiveEveryRegistrationInOrder() {
+        for (boolean compiled : new boolean[] {false, true}) {
+            ServiceCollection services = new ServiceCollection();
+            services.addSingleton(Filter.class, Audit.class);
+            services.addScoped(Filter.class, Auth.class);
+            services.addTransient(Filter.class, Compress.class);
+            services.addScoped(Pipeline.class);
+            try (Scope scope = provider(services, compiled).createScope()) {
+                Pipeline pipeline = scope.getService(Pipeline.class);
+                List<Class<?>> order = Arrays.asList(Audit.class, Auth.class, Compress.class);
+
+                assertEquals(order, classes(pipeline.list));
+                assertEquals(order, classes(Arrays.asList(pipeline.array)));
+                assertSame(Filter[].class, pipeline.array.getClass());
+                assertSame(pipeline.list.get(0), pipeline.array[0]); // singleton
+                assertSame(pipeline.list.get(1), pipeline.array[1]); // same scope
+                assertTrue(pipeline.list.get(2) != pipeline.array[2]); // transient
+                assertSame(scope.getService(Filter.class), pipeline.list.get(0)); // first registration wins
+                try {
+                    pipeline.list.add(new Auth());
+                    fail("expected an unmodifiable list");
+                } catch (UnsupportedOperationException expected) {
+                    // injected lists are read-only
+                }
+            }
+        }
+    }
+
+    @Test
+    public void collectionParametersAreEmptyWhenNothingIsRegistered() {
+        for (boolean compiled : new boolean[] {false, true}) {
+            ServiceCollection services = new ServiceCollection();
+            services.addTransient(Host.class);
+            Host host = provider(services, compiled).getService(Host.class);
+
+            assertEquals(Collections.emptyList(), host.list);
+            assertEquals(0, host.array.length);
+            assertSame(Plugin[].class, host.array.getClass());
+        }
+    }
+
+    private static List<Class<?>> classes(List<?> instances) {
+        List<Class<?>> out = new ArrayList<>();
+        for (Object o : instances) out.add(o.getClass());
+        return out;
+    }
+
+    /** Asserts that {@code request} fails with a cycle error, possibly wrapped by the constructors it ran through. */
+    static void assertCircular(Runnable request) {
+        try {
+            request.run();
+        } catch (RuntimeException e) {
+            Throwable root = e;
+            while (root.getCause() != null) root = root.getCause();
+            assertTrue(String.valueOf(root), root instanceof IllegalStateException
+                    && root.getMessage().startsWith("Circular dependency detected"));
+            return;
+        } catch (StackOverflowError e) {
+            fail("cycle overflowed the stack instead of being detected");
+        }
+        fail("expected a circular dependency error");
+    }
+}
@@ -0,0 +1,96 @@
+package org.oldskooler.inject4j;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class InstanceHolderTest {
+    static class Service {}
+
+    private static InstanceHolder<Service> holder() {
+        return new InstanceHolder<>(ServiceDescriptor.implementedBy(Service.class, Service.class, ServiceLifetime.SINGLETON));
+    }
+
+    @Test
+    public void concurrentFirstRequestsCreateExactlyOneInstance() throws Exception {
+        InstanceHolder<Service> holder = holder();
+        AtomicInteger created = new AtomicInteger();
+        int threads = 16;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Service>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    return holder.getOrCreate(null, r -> {
+                        created.incrementAndGet();
+                        try {
+                            Thread.sleep(50); // keep the creation in flight while the others arrive
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        return new Service();
+                    });
+                }));
+            }
+            start.countDown();
+
+            Service first = results.get(0).get(10, TimeUnit.SECONDS);
+            for (Future<Service> f : results) assertSame(first, f.get(10, TimeUnit.SECONDS));
+            assertEquals(1, created.get());
+            assertSame(first, holder.peek());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void failedCreationIsRetriedByTheNextRequest() {
+        InstanceHolder<Service> holder = holder();
+        try {
+            holder.getOrCreate(null, r -> { throw new IllegalStateException("boom"); });
+            fail("expected the factory's exception");
+        } catch (IllegalStateException expected) {
+            assertEquals("boom", expected.getMessage());
+        }
+        assertNull(holder.peek());
+
+        Service s = holder.getOrCreate(null, r -> new Service());
+        assertSame(s, holder.getOrCreate(null, r -> new Service()));
+    }
+
+    @Test
+    public void nullIsNotCached() {
+        InstanceHolder<Service> holder = holder();
+        assertNull(holder.getOrCreate(null, r -> null));
+        assertNull(holder.peek());
+        Service s = holder.getOrCreate(null, r -> new Service());
+        assertSame(s, holder.peek());
+    }
+
+    @Test
+    public void reentrantRequestIsReportedAsCycle() {
+        InstanceHolder<Service> holder = holder();
+        try {
+            holder.getOrCreate(null, r -> holder.getOrCreate(null, r2 -> new Service()));
+            fail("expected a circular dependency error");
+        } catch (IllegalStateException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().startsWith("Circular dependency detected"));
+        }
+        assertNull(holder.peek());
+    }
+}
@@ -0,0 +1,139 @@
+package org.oldskooler.inject4j;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class KeyedServicesTest {
+    public interface DataSource {
+        String name();
+    }
+
+    public static class Primary implements DataSource {
+        public String name() { return "primary"; }
+    }
+
+    public static class Replica implements DataSource {
+        public String name() { return "replica"; }
+    }
+
+    public static class Archive implements DataSource {
+        public String name() { return "archive"; }
+    }
+
+    public static class Rebalancer {
+        final DataSource source;
+        final DataSource target;
+
+        public Rebalancer(@FromKeyedServices("primary") DataSource source,
+                          @FromKeyedServices("replica") DataSource target) {
+            this.source = source;
+            this.target = target;
+        }
+    }
+
+    public static class Backup {
+        final List<DataSource> sources;
+
+        public Backup(@FromKeyedServices("replica") List<DataSource> sources) {
+            this.sources = sources;
+        }
+    }
+
+    public static class Orphan {
+        public Orphan(@FromKeyedServices("missing") DataSource source) {}
+    }
+
+    private static ServiceCollection services() {
+        ServiceCollection services = new ServiceCollection();
+        services.addKeyedSingleton(DataSource.class, "primary", Primary.class);
+        services.addKeyedSingleton(DataSource.class, "replica", Replica.class);
+        services.addKeyedScoped(DataSource.class, "replica", Archive.class);
+        services.addTransient(Rebalancer.class);
+        return services;
+    }
+
+    @Test
+    public void keyedRegistrationsAreFoundOnlyThroughTheirKey() {
+        for (boolean compiled : new boolean[] {false, true}) {
+            ServiceProvider provider = services().buildServiceProvider(new ServiceProviderOptions().setCompiledResolution(compiled));
+
+            DataSource primary = provider.getKeyedService(DataSource.class, "primary");
+            assertTrue(primary instanceof Primary);
+            assertSame(primary, provider.getKeyedService(DataSource.class, "primary"));
+            assertTrue(provider.getKeyedService(DataSource.class, "replica") instanceof Replica); // first wins
+            assertNull(provider.getKeyedService(DataSource.class, "unknown"));
+            assertNull(provider.getService(DataSource.class));
+            assertEquals(Collections.emptyList(), provider.getServices(DataSource.class));
+        }
+    }
+
+    @Test
+    public void getKeyedServicesReturnsEveryRegistrationUnderTheKey() {
+        try (Scope scope = services().buildServiceProvider().createScope()) {
+            List<DataSource> replicas = scope.getKeyedServices(DataSource.class, "replica");
+            assertEquals(2, replicas.size());
+            assertTrue(replicas.get(0) instanceof Replica);
+            assertTrue(replicas.get(1) instanceof Archive);
+            assertSame(replicas.get(1), scope.getKeyedServices(DataSource.class, "replica").get(1));
+            assertEquals(Collections.emptyList(), scope.getKeyedServices(DataSource.class, "unknown"));
+        }
+    }
+
+    @Test
+    public void requiredKeyedServiceNamesTheMissingKey() {
+        try {
+            services().buildServiceProvider().getRequiredKeyedService(DataSource.class, "unknown");
+            fail("expected a missing service");
+        } catch (ServiceNotFoundException expected) {
+            assertEquals("No service registered for: " + DataSource.class.getName() + " with key: unknown",
+                    expected.getMessage());
+        }
+    }
+
+    @Test
+    public void fromKeyedServicesSelectsTheKeyedRegistration() {
+        for (boolean compiled : new boolean[] {false, true}) {
+            ServiceCollection services = services();
+            services.addScoped(Backup.class);
+            ServiceProvider provider = services.buildServiceProvider(new ServiceProviderOptions().setCompiledResolution(compiled));
+
+            Rebalancer rebalancer = provider.getService(Rebalancer.class);
+            assertSame(provider.getKeyedService(DataSource.class, "primary"), rebalancer.source);
+            assertSame(provider.getKeyedService(DataSource.class, "replica"), rebalancer.target);
+            assertNotSame(rebalancer.source, rebalancer.target);
+
+            try (Scope scope = provider.createScope()) {
+                List<DataSource> sources = scope.getService(Backup.class).sources;
+                assertEquals(Arrays.asList("replica", "archive"), Arrays.asList(sources.get(0).name(), sources.get(1).name()));
+            }
+        }
+    }
+
+    @Test
+    public void missingKeyIsReportedAsAMissingDependency() {
+        ServiceCollection services = services();
+        services.addTransient(Orphan.class);
+        try {
+            services.buildServiceProvider(new ServiceProviderOptions().setValidateOnBuild(true));
+            fail("expected a validation error");
+        } catch (IllegalStateException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().contains("No resolvable constructor for " + Orphan.class.getName()));
+        }
+        try {
+            services.buildServiceProvider().getService(Orphan.class);
+            fail("expected a missing dependency");
+        } catch (IllegalStateException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().contains("No resolvable constructor for " + Orphan.class.getName()));
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package org.oldskooler.inject4j;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class LazyTest {
+    public static class Renderer {
+        static final AtomicInteger CREATED = new AtomicInteger();
+
+        public Renderer() {
+            CREATED.incrementAndGet();
+        }
+    }
+
+    public static class Report {
+        final Lazy<Renderer> renderer;
+
+        public Report(Lazy<Renderer> renderer) {
+            this.renderer = renderer;
+        }
+    }
+
+    private static ServiceProvider provider(ServiceLifetime rendererLifetime, boolean compiled) {
+        ServiceCollection services = new ServiceCollection();
+        if (rendererLifetime == ServiceLifetime.SCOPED) services.addScoped(Renderer.class);
+        else services.addTransient(Renderer.class);
+        services.addTransient(Report.class);
+        return services.buildServiceProvider(new ServiceProviderOptions().setCompiledResolution(compiled));
+    }
+
+    @Test
+    public void untouchedLazyConstructsNothing() {
+        for (boolean compiled : new boolean[] {false, true}) {
+            Renderer.CREATED.set(0);
+            Report report = provider(ServiceLifetime.TRANSIENT, compiled).getService(Report.class);
+
+            assertFalse(report.renderer.isValueCreated());
+            assertEquals(0, Renderer.CREATED.get());
+        }
+    }
+
+    @Test
+    public void lazyConstructsOnceOnFirstGet() {
+        for (boolean compiled : new boolean[] {false, true}) {
+            Renderer.CREATED.set(0);
+            Report report = provider(ServiceLifetime.TRANSIENT, compiled).getService(Report.class);
+
+            Renderer first = report.renderer.get();
+            assertTrue(report.renderer.isValueCreated());
+            assertSame(first, report.renderer.get());
+            assertEquals(1, Renderer.CREATED.get());
+        }
+    }
+
+    @Test
+    public void lazyResolvesThroughTheScopeOfItsOwner() {
+        for (boolean compiled : new boolean[] {false, true}) {
+            try (Scope scope = provider(ServiceLifetime.SCOPED, compiled).createScope()) {
+                Report report = scope.getService(Report.class);
+                assertSame(scope.getService(Renderer.class), report.renderer.get());
+            }
+        }
+    }
+
+    @Test
+    public void concurrentGetsRunTheFactoryOnce() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        Lazy<Object> lazy = new Lazy<>(() -> {
+            calls.incrementAndGet();
+            return new Object();
+        });
+        int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Object>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    return lazy.get();
+                }));
+            }
+            start.countDown();
+
+            Object first = results.get(0).get(10, TimeUnit.SECONDS);
+            for (Future<Object> f : results) assertSame(first, f.get(10, TimeUnit.SECONDS));
+            assertEquals(1, calls.get());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void nullValueIsCreatedOnce() {
+        AtomicInteger calls = new AtomicInteger();
+        Lazy<Object> lazy = new Lazy<>(() -> {
+            calls.incrementAndGet();
+            return null;
+        });
+
+        assertNull(lazy.get());
+        assertNull(lazy.get());
+        assertTrue(lazy.isValueCreated());
+        assertEquals(1, calls.get());
+    }
+}
@@ -0,0 +1,97 @@
+package org.oldskooler.inject4j;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class OpenGenericTest {
+    public static class Order {}
+    public static class User {}
+
+    public interface Codec<T> {}
+    public static class OrderCodec implements Codec<Order> {}
+    public static class UserCodec implements Codec<User> {}
+
+    public interface Repository<T> {}
+
+    public static class JpaRepository<T> implements Repository<T> {
+        final Codec<T> codec;
+
+        public JpaRepository(Codec<T> codec) {
+            this.codec = codec;
+        }
+    }
+
+    private static final TypeToken<Repository<Order>> ORDERS = new TypeToken<Repository<Order>>() {};
+    private static final TypeToken<Repository<User>> USERS = new TypeToken<Repository<User>>() {};
+
+    private static ServiceProvider provider() {
+        ServiceCollection services = new ServiceCollection();
+        services.addSingleton(new TypeToken<Codec<Order>>() {}, OrderCodec.class);
+        services.addSingleton(new TypeToken<Codec<User>>() {}, UserCodec.class);
+        services.addSingleton(Repository.class, JpaRepository.class);
+        return services.buildServiceProvider();
+    }
+
+    @Test
+    public void openRegistrationIsClosedOverTheRequestedType() {
+        ServiceProvider provider = provider();
+        JpaRepository<?> orders = (JpaRepository<?>) provider.getService(ORDERS);
+        JpaRepository<?> users = (JpaRepository<?>) provider.getService(USERS);
+
+        assertTrue(orders.codec instanceof OrderCodec);
+        assertTrue(users.codec instanceof UserCodec);
+        assertNotSame(orders, users); // each closed type is its own singleton
+        assertSame(orders, provider.getService(ORDERS));
+        assertSame(orders, provider.createScope().getService(ORDERS));
+    }
+
+    @Test
+    public void closedTypeKeepsOneDescriptorAndPlan() {
+        ServiceProvider provider = provider();
+        assertNull(provider.index().findByType(ORDERS.getType()).closedPlan());
+        provider.getService(ORDERS);
+
+        ServiceDescriptor<?> closed = provider.index().findByType(ORDERS.getType());
+        ConstructorPlan<?> plan = closed.closedPlan();
+        assertSame(closed, provider.index().findByType(new TypeToken<Repository<Order>>() {}.getType()));
+        assertSame(plan, provider.index().plan(closed));
+        assertNotSame(plan, provider.index().plan(provider.index().findByType(USERS.getType())));
+    }
+
+    @Test
+    public void concurrentFirstRequestsShareOnePlanAndInstance() throws Exception {
+        ServiceProvider provider = provider();
+        int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Repository<Order>>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    return provider.getService(ORDERS);
+                }));
+            }
+            start.countDown();
+
+            Repository<Order> first = results.get(0).get(10, TimeUnit.SECONDS);
+            for (Future<Repository<Order>> f : results) assertSame(first, f.get(10, TimeUnit.SECONDS));
+            ServiceDescriptor<?> closed = provider.index().findByType(ORDERS.getType());
+            assertSame(closed.closedPlan(), provider.index().plan(closed));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
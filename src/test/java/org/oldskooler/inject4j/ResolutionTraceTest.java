@@ -0,0 +1,118 @@
+package org.oldskooler.inject4j;
+
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class ResolutionTraceTest {
+    public static class Order {}
+    public static class Cart {}
+    public static class Region {}
+    public static class Rates {}
+
+    public interface Repository<T> {}
+
+    public static class PriceService {
+        public PriceService(Rates rates) {}
+    }
+
+    public static class Checkout {
+        public Checkout(Cart cart, Repository<Map<String, Order>> orders, PriceService prices,
+                        @FromKeyedServices("eu\"west\\1") Region region) {}
+    }
+
+    public static class Branch {
+        public Branch(@FromKeyedServices("tab\there\nnew\u0001line") Region region) {}
+    }
+
+    private static final String PREFIX = ResolutionTraceTest.class.getName() + "$";
+
+    private static Scope scope() {
+        ServiceCollection services = new ServiceCollection();
+        services.addTransient(Checkout.class);
+        services.addScoped(Cart.class);
+        services.addSingletonFactory(new TypeToken<Repository<Map<String, Order>>>() {},
+                provider -> new Repository<Map<String, Order>>() {});
+        services.addTransient(PriceService.class);
+        services.addSingleton(Rates.class, Rates::new);
+        services.addKeyedSingleton(Region.class, "eu\"west\\1", Region.class);
+        Scope scope = services.buildServiceProvider(new ServiceProviderOptions().setResolutionTracing(true))
+                .createScope();
+        scope.getService(Cart.class); // so the trace shows a cache hit
+        return scope;
+    }
+
+    /** Drops the timings and the test's class name, which would make the output differ between runs. */
+    private static String normalize(String s) {
+        return s.replaceAll("\\d+ ns", "N ns").replaceAll("\"(self)?(nanos|Nanos)\":\\d+", "\"$1$2\":N").replace(PREFIX, "");
+    }
+
+    @Test
+    public void rendersTheTreeAsText() {
+        ResolutionTrace<Checkout> trace = scope().traceService(Checkout.class);
+
+        assertEquals(""
+                + "Checkout (TRANSIENT) new Checkout(Cart, Repository, PriceService, Region) N ns (self N ns)\n"
+                + "+-- Cart (SCOPED) cache hit N ns (self N ns)\n"
+                + "+-- Repository<java.util.Map<java.lang.String, Order>> (SINGLETON) factory N ns (self N ns)\n"
+                + "+-- PriceService (TRANSIENT) new PriceService(Rates) N ns (self N ns)\n"
+                + "|   `-- Rates (SINGLETON) instance N ns (self N ns)\n"
+                + "`-- Region [key: eu\"west\\1] (SINGLETON) new Region() N ns (self N ns)\n",
+                normalize(trace.toText()));
+    }
+
+    @Test
+    public void rendersTheTreeAsJson() {
+        ResolutionTrace<Checkout> trace = scope().traceService(Checkout.class);
+
+        assertEquals(""
+                + "{\"requested\":\"Checkout\",\"root\":"
+                + "{\"service\":\"Checkout\",\"key\":null,\"lifetime\":\"TRANSIENT\",\"source\":\"CONSTRUCTOR\","
+                + "\"constructor\":\"Checkout(Cart, Repository, PriceService, Region)\","
+                + "\"cacheHit\":false,\"nanos\":N,\"selfNanos\":N,\"dependencies\":["
+                + "{\"service\":\"Cart\",\"key\":null,\"lifetime\":\"SCOPED\",\"source\":\"CACHE\",\"constructor\":null,"
+                + "\"cacheHit\":true,\"nanos\":N,\"selfNanos\":N,\"dependencies\":[]},"
+                + "{\"service\":\"Repository<java.util.Map<java.lang.String, Order>>\",\"key\":null,"
+                + "\"lifetime\":\"SINGLETON\",\"source\":\"FACTORY\",\"constructor\":null,"
+                + "\"cacheHit\":false,\"nanos\":N,\"selfNanos\":N,\"dependencies\":[]},"
+                + "{\"service\":\"PriceService\",\"key\":null,\"lifetime\":\"TRANSIENT\",\"source\":\"CONSTRUCTOR\","
+                + "\"constructor\":\"PriceService(Rates)\",\"cacheHit\":false,\"nanos\":N,\"selfNanos\":N,\"dependencies\":["
+                + "{\"service\":\"Rates\",\"key\":null,\"lifetime\":\"SINGLETON\",\"source\":\"INSTANCE\",\"constructor\":null,"
+                + "\"cacheHit\":false,\"nanos\":N,\"selfNanos\":N,\"dependencies\":[]}]},"
+                + "{\"service\":\"Region\",\"key\":\"eu\\\"west\\\\1\",\"lifetime\":\"SINGLETON\",\"source\":\"CONSTRUCTOR\","
+                + "\"constructor\":\"Region()\",\"cacheHit\":false,\"nanos\":N,\"selfNanos\":N,\"dependencies\":[]}]}}",
+                normalize(trace.toJson()));
+    }
+
+    @Test
+    public void escapesControlCharactersInJsonStrings() {
+        ServiceCollection services = new ServiceCollection();
+        services.addTransient(Branch.class);
+        services.addKeyedSingletonFactory(Region.class, "tab\there\nnew\u0001line", provider -> new Region());
+        ResolutionTrace<Branch> trace = services.buildServiceProvider(new ServiceProviderOptions().setResolutionTracing(true))
+                .traceService(Branch.class);
+
+        assertEquals("{\"requested\":\"Branch\",\"root\":{\"service\":\"Branch\",\"key\":null,"
+                + "\"lifetime\":\"TRANSIENT\",\"source\":\"CONSTRUCTOR\",\"constructor\":\"Branch(Region)\","
+                + "\"cacheHit\":false,\"nanos\":N,\"selfNanos\":N,\"dependencies\":["
+                + "{\"service\":\"Region\",\"key\":\"tab\\there\\nnew\\u0001line\","
+                + "\"lifetime\":\"SINGLETON\",\"source\":\"FACTORY\",\"constructor\":null,"
+                + "\"cacheHit\":false,\"nanos\":N,\"selfNanos\":N,\"dependencies\":[]}]}}",
+                normalize(trace.toJson()));
+    }
+
+    @Test
+    public void unresolvedRequestHasNoRoot() {
+        ResolutionTrace<Order> trace = scope().traceService(Order.class);
+
+        assertNull(trace.getRoot());
+        assertNull(trace.getInstance());
+        assertSame(Order.class, trace.getRequestedType());
+        assertEquals("Order (not resolved)\n", normalize(trace.toText()));
+        assertEquals("{\"requested\":\"Order\",\"root\":null}", normalize(trace.toJson()));
+    }
+}
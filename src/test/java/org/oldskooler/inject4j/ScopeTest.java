@@ -0,0 +1,249 @@
+package org.oldskooler.inject4j;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ScopeTest {
+    public static class Clock {}
+
+    public static class Log {
+        final List<String> closed = Collections.synchronizedList(new ArrayList<>());
+    }
+
+    public static class Connection implements AutoCloseable {
+        private final Log log;
+
+        public Connection(Log log) {
+            this.log = log;
+        }
+
+        @Override
+        public void close() {
+            log.closed.add("Connection");
+        }
+    }
+
+    public static class Repository implements AutoCloseable {
+        final Connection connection;
+        private final Log log;
+
+        public Repository(Connection connection, Log log) {
+            this.connection = connection;
+            this.log = log;
+        }
+
+        @Override
+        public void close() {
+            log.closed.add("Repository");
+        }
+    }
+
+    public static class Counter {
+        static final AtomicInteger CREATED = new AtomicInteger();
+
+        public Counter() throws InterruptedException {
+            CREATED.incrementAndGet();
+            Thread.sleep(50); // keep the creation in flight while the others arrive
+        }
+    }
+
+    public static class Handler {
+        final Repository repository;
+        final Clock clock;
+
+        public Handler(Repository repository, Clock clock) {
+            this.repository = repository;
+            this.clock = clock;
+        }
+    }
+
+    public static class ConnectionCache {
+        final Connection connection;
+
+        public ConnectionCache(Connection connection) {
+            this.connection = connection;
+        }
+    }
+
+    private static ServiceProvider provider(Log log, boolean compiled) {
+        ServiceCollection services = new ServiceCollection();
+        services.addSingleton(Log.class, () -> log);
+        // registered before its dependent, so registration order is the wrong disposal order
+        services.addScoped(Connection.class);
+        services.addScoped(Repository.class);
+        services.addScoped(Clock.class);
+        services.addScoped(Counter.class);
+        services.addTransient(Handler.class);
+        return services.buildServiceProvider(new ServiceProviderOptions().setCompiledResolution(compiled));
+    }
+
+    @Test
+    public void scopedInstancesAreSharedWithinAScopeOnly() {
+        for (boolean compiled : new boolean[] {false, true}) {
+            ServiceProvider provider = provider(new Log(), compiled);
+            try (Scope first = provider.createScope(); Scope second = provider.createScope()) {
+                Handler a = first.getService(Handler.class);
+                Handler b = first.getService(Handler.class);
+                Handler c = second.getService(Handler.class);
+
+                assertNotSame(a, b);
+                assertSame(a.repository, b.repository);
+                assertSame(a.clock, b.clock);
+                assertSame(a.repository.connection, first.getService(Connection.class));
+                assertNotSame(a.repository, c.repository);
+                assertNotSame(a.repository.connection, c.repository.connection);
+                assertNotSame(a.clock, c.clock);
+            }
+        }
+    }
+
+    @Test
+    public void concurrentFirstRequestsInAScopeCreateOneInstance() throws Exception {
+        for (boolean compiled : new boolean[] {false, true}) {
+            ServiceProvider provider = provider(new Log(), compiled);
+            Counter.CREATED.set(0);
+            int threads = 8;
+            CountDownLatch start = new CountDownLatch(1);
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            try (Scope scope = provider.createScope()) {
+                List<Future<Counter>> results = new ArrayList<>();
+                for (int i = 0; i < threads; i++) {
+                    results.add(pool.submit(() -> {
+                        start.await();
+                        return scope.getService(Counter.class);
+                    }));
+                }
+                start.countDown();
+
+                Counter first = results.get(0).get(10, TimeUnit.SECONDS);
+                for (Future<Counter> f : results) assertSame(first, f.get(10, TimeUnit.SECONDS));
+                assertEquals(1, Counter.CREATED.get());
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    @Test
+    public void closeDisposesInReverseCreationOrder() {
+        for (boolean compiled : new boolean[] {false, true}) {
+            Log log = new Log();
+            Scope scope = provider(log, compiled).createScope();
+            scope.getService(Repository.class);
+            scope.close();
+
+            assertEquals(Arrays.asList("Repository", "Connection"), log.closed);
+        }
+    }
+
+    @Test
+    public void closingTwiceDisposesOnce() {
+        for (boolean compiled : new boolean[] {false, true}) {
+            Log log = new Log();
+            Scope scope = provider(log, compiled).createScope();
+            Connection before = scope.getService(Connection.class);
+            scope.close();
+            scope.close();
+
+            assertEquals(Collections.singletonList("Connection"), log.closed);
+            assertNotSame(before, scope.getService(Connection.class));
+        }
+    }
+
+    @Test
+    public void singletonFirstRequestedInAScopeIsBuiltWithThatScope() {
+        for (boolean compiled : new boolean[] {false, true}) {
+            ServiceCollection services = new ServiceCollection();
+            services.addSingleton(Log.class, Log::new);
+            services.addScoped(Connection.class);
+            services.addSingleton(ConnectionCache.class);
+            ServiceProvider provider = services.buildServiceProvider(new ServiceProviderOptions().setCompiledResolution(compiled));
+
+            try (Scope scope = provider.createScope()) {
+                ConnectionCache cache = scope.getService(ConnectionCache.class);
+                assertSame(scope.getService(Connection.class), cache.connection);
+                assertSame(cache, provider.getService(ConnectionCache.class));
+            }
+        }
+    }
+
+    @Test
+    public void validationRejectsSingletonsCapturingScopedServices() {
+        ServiceCollection services = new ServiceCollection();
+        services.addSingleton(Log.class, Log::new);
+        services.addScoped(Connection.class);
+        services.addSingleton(ConnectionCache.class);
+        try {
+            services.buildServiceProvider(new ServiceProviderOptions().setValidateOnBuild(true));
+            fail("expected a validation error");
+        } catch (IllegalStateException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().contains("Cannot consume scoped service"));
+        }
+    }
+
+    @Test
+    public void getServicesResolvesEveryRegistrationWithItsOwnLifetime() {
+        for (boolean compiled : new boolean[] {false, true}) {
+            ServiceCollection services = new ServiceCollection();
+            services.addSingleton(Object.class, Clock.class);
+            services.addScoped(Object.class, Clock.class);
+            services.addTransient(Object.class, Clock.class);
+            ServiceProvider provider = services.buildServiceProvider(new ServiceProviderOptions().setCompiledResolution(compiled));
+
+            try (Scope scope = provider.createScope()) {
+                List<Object> first = scope.getServices(Object.class);
+                List<Object> second = scope.getServices(Object.class);
+
+                assertEquals(3, first.size());
+                assertSame(scope.getService(Object.class), first.get(0));
+                assertSame(first.get(0), second.get(0));
+                assertSame(first.get(1), second.get(1));
+                assertNotSame(first.get(2), second.get(2));
+                assertNotSame(first.get(1), provider.createScope().getServices(Object.class).get(1));
+                assertEquals(Collections.emptyList(), scope.getServices(Clock.class));
+            }
+            try {
+                provider.getServices(Object.class);
+                fail("expected the scoped registration to be rejected at the root");
+            } catch (IllegalStateException expected) {
+                assertTrue(expected.getMessage(), expected.getMessage().contains("Scoped service requested from root provider"));
+            }
+        }
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void deprecatedConstructorSharesSingletonsThroughItsMap() {
+        List<ServiceDescriptor<?>> descriptors = Collections.singletonList(
+                ServiceDescriptor.implementedBy(Clock.class, Clock.class, ServiceLifetime.SINGLETON));
+        Map<Class<?>, Object> cache = new ConcurrentHashMap<>();
+
+        Clock created = new Scope(descriptors, cache).getService(Clock.class);
+        assertSame(created, cache.get(Clock.class));
+        assertSame(created, new Scope(descriptors, cache).getService(Clock.class));
+        assertNotSame(created, new Scope(descriptors, new ConcurrentHashMap<>()).getService(Clock.class));
+
+        Clock existing = new Clock();
+        Map<Class<?>, Object> seeded = new ConcurrentHashMap<>();
+        seeded.put(Clock.class, existing);
+        assertSame(existing, new Scope(descriptors, seeded).getService(Clock.class));
+    }
+}
@@ -0,0 +1,78 @@
+package org.oldskooler.inject4j;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class ServiceCollectionTest {
+    public static class Clock {}
+
+    /** Overloaded constructors make {@code Widget::new} an inexact method reference. */
+    public static class Widget {
+        final Clock clock;
+
+        public Widget() {
+            this(null);
+        }
+
+        public Widget(Clock clock) {
+            this.clock = clock;
+        }
+    }
+
+    @Test
+    public void singletonConstructorReferenceIsNotAmbiguous() {
+        ServiceCollection services = new ServiceCollection();
+        services.addSingleton(Widget.class, Widget::new); // Supplier: built now, with the no-arg constructor
+        Widget widget = services.buildServiceProvider().getService(Widget.class);
+        assertEquals(null, widget.clock);
+    }
+
+    @Test
+    public void singletonFactoryRunsOnceOnFirstResolution() {
+        AtomicInteger calls = new AtomicInteger();
+        ServiceCollection services = new ServiceCollection();
+        services.addSingleton(Clock.class);
+        services.addSingletonFactory(Widget.class, provider -> {
+            calls.incrementAndGet();
+            return new Widget(provider.getService(Clock.class));
+        });
+        ServiceProvider provider = services.buildServiceProvider();
+        assertEquals(0, calls.get());
+
+        Widget widget = provider.getService(Widget.class);
+        assertSame(provider.getService(Clock.class), widget.clock);
+        assertSame(widget, provider.createScope().getService(Widget.class));
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void scopedAndTransientConstructorReferencesAreNotAmbiguous() {
+        ServiceCollection services = new ServiceCollection();
+        services.addScoped(Widget.class, Widget::new);
+        services.addTransient(Clock.class, Clock::new);
+        try (Scope scope = services.buildServiceProvider().createScope()) {
+            assertSame(scope.getService(Widget.class), scope.getService(Widget.class));
+            assertNotSame(scope.getService(Clock.class), scope.getService(Clock.class));
+        }
+    }
+
+    @Test
+    public void scopedAndTransientFactoriesReceiveTheRequestingResolver() {
+        ServiceCollection services = new ServiceCollection();
+        services.addScoped(Clock.class);
+        services.addScopedFactory(Widget.class, scope -> new Widget(scope.getService(Clock.class)));
+        services.addTransientFactory(Object.class, resolver -> resolver);
+        ServiceProvider provider = services.buildServiceProvider();
+
+        try (Scope scope = provider.createScope()) {
+            assertSame(scope.getService(Clock.class), scope.getService(Widget.class).clock);
+            assertSame(scope, scope.getService(Object.class));
+        }
+        assertSame(provider, provider.getService(Object.class));
+    }
+}
@@ -0,0 +1,126 @@
+package org.oldskooler.inject4j;
+
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ServiceMetricsTest {
+    public static class Clock {}
+    public static class Session {}
+
+    public static class Handler {
+        public Handler(Clock clock, Session session) {}
+    }
+
+    @Test
+    public void countsResolutionsCacheHitsAndConstructions() {
+        for (boolean compiled : new boolean[] {false, true}) {
+            ServiceCollection services = new ServiceCollection();
+            services.addSingleton(Clock.class);
+            services.addScoped(Session.class);
+            services.addTransient(Handler.class);
+            ServiceProvider provider = services.buildServiceProvider(new ServiceProviderOptions()
+                    .setMetricsEnabled(true).setCompiledResolution(compiled));
+
+            try (Scope scope = provider.createScope()) {
+                scope.getService(Handler.class);
+                scope.getService(Handler.class);
+            }
+            try (Scope scope = provider.createScope()) {
+                scope.getService(Handler.class);
+            }
+
+            List<ServiceMetrics> metrics = provider.getMetrics();
+            assertEquals(3, metrics.size());
+            assertCounts(metrics.get(0), Clock.class, 3, 2, 1);
+            assertCounts(metrics.get(1), Session.class, 3, 1, 2);
+            assertCounts(metrics.get(2), Handler.class, 3, 0, 3);
+            assertEquals(2.0 / 3, metrics.get(0).getCacheHitRatio(), 1e-9);
+            assertTrue(metrics.get(2).getConstructionTimePercentile(100).compareTo(Duration.ZERO) > 0);
+        }
+    }
+
+    @Test
+    public void metricsAreEmptyUnlessEnabled() {
+        ServiceCollection services = new ServiceCollection();
+        services.addSingleton(Clock.class);
+        ServiceProvider provider = services.buildServiceProvider();
+        provider.getService(Clock.class);
+
+        assertTrue(provider.getMetrics().isEmpty());
+    }
+
+    private static void assertCounts(ServiceMetrics m, Class<?> type, long resolves, long hits, long constructions) {
+        assertSame(type, m.getServiceType());
+        assertEquals(m.toString(), resolves, m.getResolveCount());
+        assertEquals(m.toString(), hits, m.getCacheHitCount());
+        assertEquals(m.toString(), constructions, m.getConstructionCount());
+    }
+
+    @Test
+    public void bucketsCoverEveryDurationContiguously() {
+        for (long nanos = -1; nanos < 4; nanos++) assertEquals(Math.max(nanos, 0), ServiceCounters.bucket(nanos));
+        for (int b = 0; b < ServiceCounters.BUCKETS - 1; b++) {
+            long upper = ServiceCounters.upperBound(b);
+            assertEquals("upper bound of bucket " + b, b, ServiceCounters.bucket(upper));
+            assertEquals("first value after bucket " + b, b + 1, ServiceCounters.bucket(upper + 1));
+        }
+        assertEquals(ServiceCounters.BUCKETS - 1, ServiceCounters.bucket(Long.MAX_VALUE));
+        assertEquals(Long.MAX_VALUE, ServiceCounters.upperBound(ServiceCounters.BUCKETS - 1));
+    }
+
+    @Test
+    public void bucketsAreAtMostAQuarterWide() {
+        for (int b = 4; b < ServiceCounters.BUCKETS; b++) {
+            long lower = ServiceCounters.upperBound(b - 1) + 1;
+            long width = ServiceCounters.upperBound(b) - lower + 1;
+            assertTrue("bucket " + b, width <= lower / 4);
+        }
+    }
+
+    @Test
+    public void percentilesReturnTheUpperBoundOfTheirBucket() {
+        long[] histogram = new long[ServiceCounters.BUCKETS];
+        histogram[ServiceCounters.bucket(1_000)] = 99;
+        histogram[ServiceCounters.bucket(1_000_000)] = 1;
+        ServiceMetrics m = metrics(histogram);
+
+        Duration fast = Duration.ofNanos(ServiceCounters.upperBound(ServiceCounters.bucket(1_000)));
+        Duration slow = Duration.ofNanos(ServiceCounters.upperBound(ServiceCounters.bucket(1_000_000)));
+        assertTrue(fast.toNanos() >= 1_000 && fast.toNanos() < 1_250);
+        assertTrue(slow.toNanos() >= 1_000_000 && slow.toNanos() < 1_250_000);
+        for (double p : new double[] {0.001, 50, 99}) assertEquals("p" + p, fast, m.getConstructionTimePercentile(p));
+        for (double p : new double[] {99.01, 99.9, 100}) assertEquals("p" + p, slow, m.getConstructionTimePercentile(p));
+    }
+
+    @Test
+    public void percentileOfNoConstructionsIsZero() {
+        assertEquals(Duration.ZERO, metrics(new long[ServiceCounters.BUCKETS]).getConstructionTimePercentile(99));
+    }
+
+    @Test
+    public void percentileMustBeInRange() {
+        ServiceMetrics m = metrics(new long[ServiceCounters.BUCKETS]);
+        for (double p : new double[] {0, -1, 100.5, Double.NaN}) {
+            try {
+                m.getConstructionTimePercentile(p);
+                fail("expected percentile " + p + " to be rejected");
+            } catch (IllegalArgumentException expected) {
+                // out of (0, 100]
+            }
+        }
+    }
+
+    private static ServiceMetrics metrics(long[] histogram) {
+        long count = 0;
+        for (long c : histogram) count += c;
+        return new ServiceMetrics(Clock.class, Clock.class.getName(), null, ServiceLifetime.TRANSIENT,
+                count, 0, count, 0, histogram);
+    }
+}
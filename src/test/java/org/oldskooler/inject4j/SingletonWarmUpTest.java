@@ -0,0 +1,126 @@
+package org.oldskooler.inject4j;
+
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SingletonWarmUpTest {
+    static final List<String> BUILT = Collections.synchronizedList(new ArrayList<>());
+
+    public static class Config {
+        public Config() throws InterruptedException {
+            Thread.sleep(100); // slow enough to show up in the time of anything that built it
+            BUILT.add("Config");
+        }
+    }
+
+    /** Transient between two singletons: its singleton dependency must still be built first. */
+    public static class Connection {
+        public Connection(Config config) {}
+    }
+
+    public static class Pool {
+        public Pool(Connection connection) {
+            BUILT.add("Pool");
+        }
+    }
+
+    public static class Cache {
+        public Cache(Pool pool, Config config) {
+            BUILT.add("Cache");
+        }
+    }
+
+    public static class Broken {
+        public Broken() {
+            throw new IllegalArgumentException("broken on purpose");
+        }
+    }
+
+    private static ServiceProviderOptions warmUp(ForkJoinPool pool) {
+        return new ServiceProviderOptions().setWarmUpSingletons(true).setWarmUpPool(pool);
+    }
+
+    @Test
+    public void buildsSingletonsInDependencyOrderBeforeReturning() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            BUILT.clear();
+            ServiceCollection services = new ServiceCollection();
+            services.addSingleton(Cache.class); // registered before what it depends on
+            services.addSingleton(Pool.class);
+            services.addTransient(Connection.class);
+            services.addSingleton(Config.class);
+            ServiceProvider provider = services.buildServiceProvider(warmUp(pool));
+
+            assertEquals(Arrays.asList("Config", "Pool", "Cache"), BUILT);
+            Map<Class<?>, List<Duration>> timings = provider.getWarmUpTimings();
+            assertEquals(Arrays.asList(Cache.class, Pool.class, Config.class), new ArrayList<>(timings.keySet()));
+            // dependents were scheduled after Config, so their times exclude its construction
+            Duration config = timings.get(Config.class).get(0);
+            assertTrue(timings.get(Pool.class).get(0).compareTo(config) < 0);
+            assertTrue(timings.get(Cache.class).get(0).compareTo(config) < 0);
+            provider.getService(Cache.class);
+            assertEquals(3, BUILT.size());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void keepsOneTimingPerRegistrationOfAType() {
+        ServiceCollection services = new ServiceCollection();
+        services.addSingleton(Config.class);
+        services.addSingleton(Config.class);
+        services.addKeyedSingleton(Config.class, "primary", Config.class);
+        services.addKeyedSingleton(Config.class, "replica", Config.class);
+        Map<Class<?>, List<Duration>> timings = services.buildServiceProvider(warmUp(ForkJoinPool.commonPool()))
+                .getWarmUpTimings();
+
+        assertEquals(Collections.singleton(Config.class), timings.keySet());
+        assertEquals(4, timings.get(Config.class).size());
+    }
+
+    @Test
+    public void factoryFailureFailsTheBuildWithTheOriginalException() {
+        IllegalStateException failure = new IllegalStateException("no database");
+        ServiceCollection services = new ServiceCollection();
+        services.addSingleton(Config.class);
+        services.addSingletonFactory(Pool.class, provider -> {
+            throw failure;
+        });
+        try {
+            services.buildServiceProvider(warmUp(ForkJoinPool.commonPool()));
+            fail("expected the warm-up to fail");
+        } catch (IllegalStateException e) {
+            assertSame(failure, e);
+        }
+    }
+
+    @Test
+    public void constructorFailureFailsTheBuildUnwrapped() {
+        ServiceCollection services = new ServiceCollection();
+        services.addSingleton(Broken.class);
+        try {
+            services.buildServiceProvider(warmUp(ForkJoinPool.commonPool()));
+            fail("expected the warm-up to fail");
+        } catch (RuntimeException e) {
+            // the same exception a first request would throw, not the pool's CompletionException
+            Throwable root = e;
+            while (root.getCause() != null) root = root.getCause();
+            assertTrue(String.valueOf(e), e.getMessage().startsWith("Failed to construct"));
+            assertTrue(String.valueOf(root), root instanceof IllegalArgumentException);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package org.oldskooler.inject4j;
+
+import org.junit.Test;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TypeTokenTest {
+    public static class User {}
+    public static class Order {}
+
+    public interface Repository<T> {}
+    public static class UserRepository implements Repository<User> {}
+    public static class OrderRepository implements Repository<Order> {}
+
+    public static class Checkout {
+        final Repository<User> users;
+        final Repository<Order> orders;
+
+        public Checkout(Repository<User> users, Repository<Order> orders) {
+            this.users = users;
+            this.orders = orders;
+        }
+    }
+
+    private static final TypeToken<Repository<User>> USERS = new TypeToken<Repository<User>>() {};
+    private static final TypeToken<Repository<Order>> ORDERS = new TypeToken<Repository<Order>>() {};
+
+    // Reflected declarations: the JDK's own Type implementations to compare canonical forms against.
+    Map<String, List<Integer>> nested;
+    List<? extends Number> wildcard;
+    Repository<User> users;
+
+    private static Type reflected(String field) throws NoSuchFieldException {
+        return TypeTokenTest.class.getDeclaredField(field).getGenericType();
+    }
+
+    @Test
+    public void canonicalTypesEqualAndHashLikeTheJdksOwn() throws Exception {
+        for (String field : new String[] {"nested", "wildcard", "users"}) {
+            Type jdk = reflected(field);
+            Type canonical = Types.canonicalize(jdk);
+
+            assertTrue(canonical instanceof ParameterizedType);
+            assertEquals(jdk, canonical);
+            assertEquals(canonical, jdk);
+            assertEquals(jdk.hashCode(), canonical.hashCode());
+            assertSame(canonical, Types.canonicalize(canonical));
+        }
+        assertEquals(reflected("nested").getTypeName(), Types.canonicalize(reflected("nested")).getTypeName());
+        assertNotEquals(Types.canonicalize(reflected("users")), ORDERS.getType());
+    }
+
+    @Test
+    public void tokensOfTheSameTypeAreEqual() throws Exception {
+        TypeToken<?> reflected = TypeToken.of(reflected("users"));
+
+        assertEquals(USERS, reflected);
+        assertEquals(USERS.hashCode(), reflected.hashCode());
+        assertEquals(USERS, new TypeToken<Repository<User>>() {});
+        assertNotEquals(USERS, ORDERS);
+        assertSame(Repository.class, USERS.getRawType());
+        assertEquals(TypeToken.of(User.class), new TypeToken<User>() {});
+    }
+
+    @Test
+    @SuppressWarnings("rawtypes")
+    public void tokensMustCaptureAFullySpecifiedType() {
+        try {
+            new TypeToken() {};
+            fail("expected a missing type argument");
+        } catch (IllegalArgumentException expected) {
+            // raw anonymous subclass
+        }
+        try {
+            capture();
+            fail("expected a type variable");
+        } catch (IllegalArgumentException expected) {
+            // List<T> cannot be resolved
+        }
+    }
+
+    private static <T> TypeToken<List<T>> capture() {
+        return new TypeToken<List<T>>() {};
+    }
+
+    @Test
+    public void parameterizedRegistrationsResolveByTheirFullType() {
+        for (boolean compiled : new boolean[] {false, true}) {
+            ServiceCollection services = new ServiceCollection();
+            services.addSingleton(USERS, UserRepository.class);
+            services.addScoped(ORDERS, OrderRepository.class);
+            services.addTransient(Checkout.class);
+            ServiceProvider provider = services.buildServiceProvider(new ServiceProviderOptions().setCompiledResolution(compiled));
+
+            try (Scope scope = provider.createScope()) {
+                Checkout checkout = scope.getService(Checkout.class);
+                assertTrue(checkout.users instanceof UserRepository);
+                assertTrue(checkout.orders instanceof OrderRepository);
+                assertSame(scope.getService(USERS), checkout.users);
+                assertSame(scope.getService(new TypeToken<Repository<Order>>() {}), checkout.orders);
+                assertEquals(1, scope.getServices(ORDERS).size());
+                assertNull(scope.getService(Repository.class)); // not found through the raw class alone
+            }
+        }
+    }
+
+    @Test
+    public void parameterizedFactoriesReceiveTheirResolver() {
+        ServiceCollection services = new ServiceCollection();
+        services.addSingletonFactory(USERS, provider -> new UserRepository());
+        services.addScopedFactory(ORDERS, scope -> new OrderRepository());
+        services.addTransientFactory(new TypeToken<List<Resolver>>() {}, resolver -> Collections.singletonList(resolver));
+        ServiceProvider provider = services.buildServiceProvider();
+
+        try (Scope scope = provider.createScope()) {
+            assertSame(provider.getService(USERS), scope.getService(USERS));
+            assertSame(scope.getService(ORDERS), scope.getService(ORDERS));
+            assertSame(scope, scope.getService(new TypeToken<List<Resolver>>() {}).get(0));
+        }
+    }
+}
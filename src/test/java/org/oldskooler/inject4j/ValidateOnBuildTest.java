@@ -0,0 +1,108 @@
+package org.oldskooler.inject4j;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ValidateOnBuildTest {
+    public interface Missing {}
+    public interface Absent {}
+
+    public static class NeedsMissing {
+        public NeedsMissing(Missing missing) {}
+    }
+
+    public static class NeedsAbsent {
+        public NeedsAbsent(Absent absent) {}
+    }
+
+    public static class Ping {
+        public Ping(Pong pong) {}
+    }
+
+    public static class Pong {
+        public Pong(Ping ping) {}
+    }
+
+    public static class Tick {
+        public Tick(Tock tock) {}
+    }
+
+    public static class Tock {
+        public Tock(Tick tick) {}
+    }
+
+    public static class Session {}
+
+    public static class Cache {
+        public Cache(Session session) {}
+    }
+
+    public static class Handler {
+        public Handler(Session session) {}
+    }
+
+    /** Reaches the scoped Session through a transient. */
+    public static class Audit {
+        public Audit(Handler handler) {}
+    }
+
+    private static String[] problems(ServiceCollection services) {
+        try {
+            services.buildServiceProvider(new ServiceProviderOptions().setValidateOnBuild(true));
+            fail("expected validation to fail");
+            return null;
+        } catch (IllegalStateException e) {
+            String prefix = "Some services are not able to be constructed:\n\n";
+            assertTrue(e.getMessage(), e.getMessage().startsWith(prefix));
+            return e.getMessage().substring(prefix.length()).split("\n\n(?=\\S+ \\(|\\S+ -> )");
+        }
+    }
+
+    @Test
+    public void reportsEveryUnsatisfiableRegistrationInOneException() {
+        ServiceCollection services = new ServiceCollection();
+        services.addTransient(NeedsMissing.class);
+        services.addSingleton(Session.class);
+        services.addScoped(NeedsAbsent.class);
+
+        String[] problems = problems(services);
+        assertEquals(String.join("\n---\n", problems), 2, problems.length);
+        assertTrue(problems[0], problems[0].startsWith(NeedsMissing.class.getName() + " (TRANSIENT): "));
+        assertTrue(problems[0], problems[0].contains("Missing"));
+        assertTrue(problems[1], problems[1].startsWith(NeedsAbsent.class.getName() + " (SCOPED): "));
+        assertTrue(problems[1], problems[1].contains("Absent"));
+    }
+
+    @Test
+    public void reportsEveryCycleInOneException() {
+        ServiceCollection services = new ServiceCollection();
+        services.addTransient(Ping.class);
+        services.addTransient(Pong.class);
+        services.addTransient(Tick.class);
+        services.addTransient(Tock.class);
+
+        String[] problems = problems(services);
+        assertEquals(2, problems.length);
+        assertEquals(Ping.class.getName() + " (TRANSIENT): Circular dependency detected: Ping -> Pong -> Ping", problems[0]);
+        assertEquals(Tick.class.getName() + " (TRANSIENT): Circular dependency detected: Tick -> Tock -> Tick", problems[1]);
+    }
+
+    @Test
+    public void reportsEverySingletonThatCapturesAScopedService() {
+        ServiceCollection services = new ServiceCollection();
+        services.addScoped(Session.class);
+        services.addTransient(Handler.class);
+        services.addSingleton(Cache.class);
+        services.addSingleton(Audit.class);
+
+        String[] problems = problems(services);
+        assertEquals(2, problems.length);
+        assertEquals(Cache.class.getName() + " (SINGLETON): Cannot consume scoped service " + Session.class.getName()
+                + " from singleton " + Cache.class.getName() + ".", problems[0]);
+        assertEquals(Audit.class.getName() + " (SINGLETON): Cannot consume scoped service " + Session.class.getName()
+                + " from singleton " + Audit.class.getName() + ".", problems[1]);
+    }
+}